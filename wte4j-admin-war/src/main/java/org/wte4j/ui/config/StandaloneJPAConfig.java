@@ -36,6 +36,9 @@ import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.Lazy;
 import org.springframework.core.env.Environment;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.datasource.init.DataSourceInitializer;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
 import org.springframework.jdbc.datasource.lookup.JndiDataSourceLookup;
 import org.springframework.orm.jpa.JpaTransactionManager;
 import org.springframework.orm.jpa.LocalContainerEntityManagerFactoryBean;
@@ -45,6 +48,8 @@ import org.springframework.transaction.PlatformTransactionManager;
 @Configuration
 public class StandaloneJPAConfig {
 
+	private static final String INDEX_SCRIPT = "org/wte4j/sql/wte4j-indexes.sql";
+
 	private final Logger logger = LoggerFactory.getLogger(getClass());
 
 	@Autowired
@@ -73,6 +78,22 @@ public class StandaloneJPAConfig {
 		return map;
 	}
 
+	/**
+	 * Creates the indexes OpenJPA does not build from the mapping. The schema
+	 * is built with the first entity manager, an existing index is kept.
+	 */
+	@Bean
+	public DataSourceInitializer wteIndexInitializer(@Qualifier("wte4j") EntityManagerFactory emf) {
+		emf.createEntityManager().close();
+		ResourceDatabasePopulator populator = new ResourceDatabasePopulator();
+		populator.addScript(new ClassPathResource(INDEX_SCRIPT));
+		populator.setContinueOnError(true);
+		DataSourceInitializer initializer = new DataSourceInitializer();
+		initializer.setDataSource(lookUpDataSource());
+		initializer.setDatabasePopulator(populator);
+		return initializer;
+	}
+
 	private DataSource lookUpDataSource() {
 		if (externalDataSource != null) {
 			logger.info("external datasource found with qualifier \"wte4j\" using this DataSource for wte4j");
@@ -18,6 +18,7 @@ package org.wte4j.ui.client.templates;
 import org.wte4j.ui.client.templates.mapping.MappingDisplay;
 import org.wte4j.ui.client.templates.upload.TemplateUploadDisplay;
 import org.wte4j.ui.shared.TemplateDto;
+import org.wte4j.ui.shared.TemplateSortKey;
 
 import com.google.gwt.event.dom.client.ClickHandler;
 import com.google.gwt.event.logical.shared.CloseHandler;
@@ -29,6 +30,13 @@ public interface TemplateListDisplay extends IsWidget {
 
 	HasData<TemplateDto> getDataContainer();
 
+	/**
+	 * @return the key of the column the list is sorted by
+	 */
+	TemplateSortKey getSortKey();
+
+	boolean isSortAscending();
+
 	void setDowndLoadCommand(ClickHandler command);
 
 	void setUpdateCommand(ClickHandler command);
@@ -18,6 +18,8 @@ package org.wte4j.ui.client.templates;
 import static org.wte4j.ui.client.Application.LABELS;
 
 import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
 
 import org.gwtbootstrap3.client.ui.Modal;
 import org.gwtbootstrap3.client.ui.ModalBody;
@@ -34,6 +36,7 @@ import org.wte4j.ui.client.templates.mapping.MappingPanel;
 import org.wte4j.ui.client.templates.upload.TemplateUploadDisplay;
 import org.wte4j.ui.client.templates.upload.TemplateUploadFormPanel;
 import org.wte4j.ui.shared.TemplateDto;
+import org.wte4j.ui.shared.TemplateSortKey;
 
 import com.google.gwt.cell.client.DateCell;
 import com.google.gwt.core.client.GWT;
@@ -47,6 +50,9 @@ import com.google.gwt.uibinder.client.UiBinder;
 import com.google.gwt.uibinder.client.UiField;
 import com.google.gwt.user.cellview.client.CellTable;
 import com.google.gwt.user.cellview.client.Column;
+import com.google.gwt.user.cellview.client.ColumnSortEvent;
+import com.google.gwt.user.cellview.client.ColumnSortList;
+import com.google.gwt.user.cellview.client.ColumnSortList.ColumnSortInfo;
 import com.google.gwt.user.cellview.client.Header;
 import com.google.gwt.user.cellview.client.SimplePager;
 import com.google.gwt.user.cellview.client.TextColumn;
@@ -75,6 +81,7 @@ public class TemplateListPanel extends Composite implements
 	private Column<TemplateDto, String> editorColumn;
 	private TextColumn<TemplateDto> statusColumn;
 	private Column<TemplateDto, ?> actionColumn;
+	private Map<Column<TemplateDto, ?>, TemplateSortKey> sortKeys = new HashMap<Column<TemplateDto, ?>, TemplateSortKey>();
 
 	@UiField
 	Pagination templateTablePagination;
@@ -130,6 +137,9 @@ public class TemplateListPanel extends Composite implements
 		initStatusColumn();
 		initActionColumn();
 
+		templateTable.addColumnSortHandler(new ColumnSortEvent.AsyncHandler(templateTable));
+		templateTable.getColumnSortList().push(nameColumn);
+
 		templateTable.addRowCountChangeHandler(new RowCountChangeEvent.Handler() {
 
 			@Override
@@ -156,6 +166,7 @@ public class TemplateListPanel extends Composite implements
 
 		};
 		nameColumn.setCellStyleNames("templates-name-cell");
+		setSortable(nameColumn, TemplateSortKey.DOCUMENT_NAME);
 		addColumntoTemplateTable(nameColumn, LABELS.templateDocumentName());
 	}
 
@@ -170,6 +181,7 @@ public class TemplateListPanel extends Composite implements
 		};
 		editedAtColumn.setCellStyleNames("templates-editedAt-cell");
 		editedAtColumn.setHorizontalAlignment(Column.ALIGN_LEFT);
+		setSortable(editedAtColumn, TemplateSortKey.EDITED_AT);
 		addColumntoTemplateTable(editedAtColumn, LABELS.templateEditedAt());
 
 	}
@@ -184,6 +196,7 @@ public class TemplateListPanel extends Composite implements
 		};
 		editorColumn.setCellStyleNames("templates-editor-cell");
 		editorColumn.setHorizontalAlignment(Column.ALIGN_LEFT);
+		setSortable(editorColumn, TemplateSortKey.EDITOR);
 		addColumntoTemplateTable(editorColumn, LABELS.templateEditor());
 	}
 
@@ -218,6 +231,11 @@ public class TemplateListPanel extends Composite implements
 		addColumntoTemplateTable(statusColumn, LABELS.templateLockingUser());
 	}
 
+	private void setSortable(Column<TemplateDto, ?> column, TemplateSortKey sortKey) {
+		column.setSortable(true);
+		sortKeys.put(column, sortKey);
+	}
+
 	private void addColumntoTemplateTable(Column<TemplateDto, ?> column, String headerText) {
 		Header<String> header = new TextHeader(headerText);
 		templateTable.addColumn(column, header);
@@ -228,6 +246,23 @@ public class TemplateListPanel extends Composite implements
 		return templateTable;
 	}
 
+	@Override
+	public TemplateSortKey getSortKey() {
+		ColumnSortInfo sortInfo = getColumnSortInfo();
+		return sortInfo != null ? sortKeys.get(sortInfo.getColumn()) : null;
+	}
+
+	@Override
+	public boolean isSortAscending() {
+		ColumnSortInfo sortInfo = getColumnSortInfo();
+		return sortInfo == null || sortInfo.isAscending();
+	}
+
+	private ColumnSortInfo getColumnSortInfo() {
+		ColumnSortList sortList = templateTable.getColumnSortList();
+		return sortList.size() > 0 ? sortList.get(0) : null;
+	}
+
 	@Override
 	public void setDowndLoadCommand(final ClickHandler command) {
 		templateContextMenu.getDownloadAction().addClickHandler(wrapClickHandler(command));
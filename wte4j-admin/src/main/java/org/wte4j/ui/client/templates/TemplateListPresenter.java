@@ -17,7 +17,7 @@ package org.wte4j.ui.client.templates;
 
 import static org.wte4j.ui.client.Application.LABELS;
 
-import java.util.List;
+import java.util.Collections;
 import java.util.logging.Logger;
 
 import org.wte4j.ui.client.Application;
@@ -29,6 +29,7 @@ import org.wte4j.ui.client.templates.upload.TemplateUploadPresenter;
 import org.wte4j.ui.client.templates.upload.TemplateUploadPresenter.FileUploadedHandler;
 import org.wte4j.ui.shared.InvalidTemplateServiceException;
 import org.wte4j.ui.shared.TemplateDto;
+import org.wte4j.ui.shared.TemplatePageDto;
 import org.wte4j.ui.shared.TemplateServiceAsync;
 
 import com.google.gwt.event.dom.client.ClickEvent;
@@ -38,7 +39,9 @@ import com.google.gwt.event.logical.shared.CloseHandler;
 import com.google.gwt.user.client.Window;
 import com.google.gwt.user.client.rpc.AsyncCallback;
 import com.google.gwt.user.client.ui.PopupPanel;
-import com.google.gwt.view.client.ListDataProvider;
+import com.google.gwt.view.client.AsyncDataProvider;
+import com.google.gwt.view.client.HasData;
+import com.google.gwt.view.client.Range;
 import com.google.gwt.view.client.SelectionChangeEvent;
 import com.google.gwt.view.client.SelectionChangeEvent.Handler;
 import com.google.gwt.view.client.SingleSelectionModel;
@@ -54,7 +57,7 @@ public class TemplateListPresenter {
 	private String uploadedFile;
 
 	private SingleSelectionModel<TemplateDto> selectionModel;
-	private ListDataProvider<TemplateDto> dataProvider;
+	private TemplateDataProvider dataProvider;
 
 	private TemplateUploadPresenter uploadPresenter;
 	private MappingPresenter mappingPresenter;
@@ -63,7 +66,7 @@ public class TemplateListPresenter {
 
 		selectionModel = new SingleSelectionModel<TemplateDto>();
 		selectionModel.addSelectionChangeHandler(createSelectionChangeHandler());
-		dataProvider = new ListDataProvider<TemplateDto>();
+		dataProvider = new TemplateDataProvider();
 
 		uploadPresenter = new TemplateUploadPresenter();
 		uploadPresenter.addFileUploadedHandler(getFileUploadedHandler());
@@ -80,7 +83,6 @@ public class TemplateListPresenter {
 
 		display = aDisplay;
 		display.getDataContainer().setSelectionModel(selectionModel);
-		dataProvider.addDataDisplay(display.getDataContainer());
 
 		display.setDowndLoadCommand(new ClickHandler() {
 
@@ -138,20 +140,12 @@ public class TemplateListPresenter {
 	}
 
 	public void loadData() {
-
-		templateService.getTemplates(new AsyncCallback<List<TemplateDto>>() {
-
-			@Override
-			public void onSuccess(List<TemplateDto> result) {
-				dataProvider.setList(result);
-				dataProvider.refresh();
-			}
-
-			@Override
-			public void onFailure(Throwable caught) {
-				showError("", caught.getMessage());
-			}
-		});
+		HasData<TemplateDto> container = display.getDataContainer();
+		if (dataProvider.getDataDisplays().contains(container)) {
+			container.setVisibleRangeAndClearData(container.getVisibleRange(), true);
+		} else {
+			dataProvider.addDataDisplay(container);
+		}
 	}
 
 	void deleteTemplate() {
@@ -178,8 +172,7 @@ public class TemplateListPresenter {
 		templateService.deleteTemplate(toRemove, new AsyncCallback<Void>() {
 			@Override
 			public void onSuccess(Void result) {
-				dataProvider.getList().remove(toRemove);
-				dataProvider.flush();
+				loadData();
 			}
 
 			@Override
@@ -301,9 +294,14 @@ public class TemplateListPresenter {
 	}
 
 	void replaceInList(TemplateDto toReplace, TemplateDto newTemplateDto) {
-		int index = dataProvider.getList().indexOf(toReplace);
-		if (index >= 0) {
-			dataProvider.getList().set(index, newTemplateDto);
+		HasData<TemplateDto> container = display.getDataContainer();
+		int row = container.getVisibleRange().getStart();
+		for (TemplateDto visible : container.getVisibleItems()) {
+			if (visible.equals(toReplace)) {
+				dataProvider.updateRowData(row, Collections.singletonList(newTemplateDto));
+				return;
+			}
+			row++;
 		}
 	}
 
@@ -319,6 +317,36 @@ public class TemplateListPresenter {
 		new MessageDialog(title, message, dialogType).show();
 	}
 
+	/**
+	 * Fetches only the visible page of templates, sorted as requested by the
+	 * display.
+	 */
+	private class TemplateDataProvider extends AsyncDataProvider<TemplateDto> {
+
+		@Override
+		protected void onRangeChanged(final HasData<TemplateDto> container) {
+			final Range range = container.getVisibleRange();
+			templateService.getTemplates(range.getStart(), range.getLength(),
+					display.getSortKey(), display.isSortAscending(),
+					new AsyncCallback<TemplatePageDto>() {
+
+						@Override
+						public void onSuccess(TemplatePageDto page) {
+							if (!range.equals(container.getVisibleRange())) {
+								return; // a newer request is pending
+							}
+							updateRowCount(page.getTotalCount(), true);
+							updateRowData(range.getStart(), page.getTemplates());
+						}
+
+						@Override
+						public void onFailure(Throwable caught) {
+							showError("", caught.getMessage());
+						}
+					});
+		}
+	}
+
 	private class InternalMappingPresenter extends MappingPresenter {
 
 		@Override
@@ -29,12 +29,19 @@ import org.wte4j.ui.server.services.TemplateRestService;
 @EnableWebMvc
 public class RestServiceConfig {
 
+	/**
+	 * Default upload limit of 10 MB. Uploads larger than the in-memory
+	 * threshold of the resolver are spooled to a temporary file.
+	 */
+	public static final long DEFAULT_MAX_UPLOAD_SIZE = 10000000l;
+
 	@Autowired
 	private Environment env;
 
 	@Bean
 	public MultipartResolver multipartResolver() {
-		Long maxUploadSize = env.getProperty("wte4j.fileupload.maxsizeinbytes", Long.class, 50000l);
+		Long maxUploadSize = env.getProperty("wte4j.fileupload.maxsizeinbytes", Long.class,
+				DEFAULT_MAX_UPLOAD_SIZE);
 		CommonsMultipartResolver multipartResolver = new CommonsMultipartResolver();
 		multipartResolver.setMaxUploadSize(maxUploadSize);
 		return multipartResolver;
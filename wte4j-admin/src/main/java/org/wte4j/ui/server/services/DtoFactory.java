@@ -22,7 +22,7 @@ import java.util.List;
 import java.util.Map;
 
 import org.wte4j.MappingDetail;
-import org.wte4j.Template;
+import org.wte4j.TemplateMetadata;
 import org.wte4j.User;
 import org.wte4j.ui.shared.MappingDto;
 import org.wte4j.ui.shared.TemplateDto;
@@ -30,7 +30,7 @@ import org.wte4j.ui.shared.UserDto;
 
 public final class DtoFactory {
 
-	public static TemplateDto createTemplateDto(Template<?> template) {
+	public static TemplateDto createTemplateDto(TemplateMetadata template) {
 		TemplateDto dto = new TemplateDto();
 		dto.setDocumentName(template.getDocumentName());
 		dto.setLanguage(template.getLanguage());
@@ -15,7 +15,6 @@
  */
 package org.wte4j.ui.server.services;
 
-import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
@@ -47,6 +46,8 @@ import org.wte4j.ui.shared.FileUploadResponseDto;
 @RequestMapping("/templates")
 public class TemplateRestService {
 
+	private static final String DOCX_CONTENT_TYPE = "application/vnd.openxmlformats-officedocument.wordprocessingml.document";
+
 	private final Logger logger = LoggerFactory.getLogger(getClass());
 
 	@Autowired
@@ -58,18 +59,19 @@ public class TemplateRestService {
 	@Autowired
 	private TemplateRepository templateRepository;
 
-	@RequestMapping(method = RequestMethod.GET, produces = "application/vnd.openxmlformats-officedocument.wordprocessingml.document")
-	public byte[] getTemplate(@RequestParam String name, @RequestParam String language, HttpServletResponse response)
+	/**
+	 * writes the template document directly to the response, the document is
+	 * not buffered
+	 */
+	@RequestMapping(method = RequestMethod.GET, produces = DOCX_CONTENT_TYPE)
+	public void getTemplate(@RequestParam String name, @RequestParam String language, HttpServletResponse response)
 			throws Exception {
-		byte[] documentContent = null;
 		Template<?> template = templateRepository.getTemplate(name, language);
 		if (template != null) {
-			ByteArrayOutputStream out = new ByteArrayOutputStream();
-			template.write(out);
-			documentContent = out.toByteArray();
+			response.setContentType(DOCX_CONTENT_TYPE);
 			response.setHeader("Content-Disposition", "attachment; filename=\"" + template.getDocumentName() + ".docx\"");
+			template.write(response.getOutputStream());
 		}
-		return documentContent;
 	}
 
 	@RequestMapping(method = RequestMethod.POST, produces = "text/html; charset=UTF-8")
@@ -25,8 +25,10 @@ import org.springframework.web.context.support.SpringBeanAutowiringSupport;
 import org.wte4j.ui.shared.InvalidTemplateServiceException;
 import org.wte4j.ui.shared.ModelElementDto;
 import org.wte4j.ui.shared.TemplateDto;
+import org.wte4j.ui.shared.TemplatePageDto;
 import org.wte4j.ui.shared.TemplateService;
 import org.wte4j.ui.shared.TemplateServiceException;
+import org.wte4j.ui.shared.TemplateSortKey;
 
 import com.google.gwt.user.server.rpc.RemoteServiceServlet;
 
@@ -45,6 +47,10 @@ public class TemplateServiceGWTAdapter extends RemoteServiceServlet implements T
 		return templateService.getTemplates();
 	}
 
+	public TemplatePageDto getTemplates(int offset, int limit, TemplateSortKey sortKey, boolean ascending) throws TemplateServiceException {
+		return templateService.getTemplates(offset, limit, sortKey, ascending);
+	}
+
 	public TemplateDto lockTemplate(TemplateDto template) throws TemplateServiceException {
 		return templateService.lockTemplate(template);
 	}
@@ -37,11 +37,15 @@ import org.wte4j.ExpressionError;
 import org.wte4j.InvalidTemplateException;
 import org.wte4j.LockingException;
 import org.wte4j.MappingDetail;
+import org.wte4j.PagedTemplateQuery;
+import org.wte4j.PagedTemplateQuery.SortKey;
 import org.wte4j.Template;
 import org.wte4j.TemplateBuilder;
 import org.wte4j.TemplateEngine;
 import org.wte4j.TemplateExistException;
 import org.wte4j.TemplateFile;
+import org.wte4j.TemplateMetadata;
+import org.wte4j.TemplateQuery;
 import org.wte4j.TemplateRepository;
 import org.wte4j.WteException;
 import org.wte4j.WteModelService;
@@ -49,8 +53,10 @@ import org.wte4j.ui.shared.InvalidTemplateServiceException;
 import org.wte4j.ui.shared.MappingDto;
 import org.wte4j.ui.shared.ModelElementDto;
 import org.wte4j.ui.shared.TemplateDto;
+import org.wte4j.ui.shared.TemplatePageDto;
 import org.wte4j.ui.shared.TemplateService;
 import org.wte4j.ui.shared.TemplateServiceException;
+import org.wte4j.ui.shared.TemplateSortKey;
 
 @Service
 public class TemplateServiceImpl implements TemplateService {
@@ -75,16 +81,48 @@ public class TemplateServiceImpl implements TemplateService {
 
 	@Override
 	public List<TemplateDto> getTemplates() {
-		List<Template<Object>> templates = templateRepository.queryTemplates()
-				.list();
+		TemplateQuery query = templateRepository.queryTemplates();
+		List<? extends TemplateMetadata> templates;
+		if (query instanceof PagedTemplateQuery) {
+			templates = ((PagedTemplateQuery) query).listMetadata();
+		} else {
+			templates = query.list();
+		}
 		List<TemplateDto> templateDtos = new ArrayList<TemplateDto>();
-		for (Template<Object> template : templates) {
+		for (TemplateMetadata template : templates) {
 			TemplateDto templateDto = DtoFactory.createTemplateDto(template);
 			templateDtos.add(templateDto);
 		}
 		return templateDtos;
 	}
 
+	@Override
+	public TemplatePageDto getTemplates(int offset, int limit, TemplateSortKey sortKey, boolean ascending) {
+		PagedTemplateQuery query = queryPage();
+		if (sortKey != null) {
+			query.orderBy(SortKey.valueOf(sortKey.name()), ascending);
+		} else {
+			query.orderBy(SortKey.DOCUMENT_NAME, true);
+		}
+		List<TemplateMetadata> templates = query.offset(offset).limit(limit).listMetadata();
+
+		TemplatePageDto page = new TemplatePageDto();
+		for (TemplateMetadata template : templates) {
+			page.getTemplates().add(DtoFactory.createTemplateDto(template));
+		}
+		page.setTotalCount((int) query.count());
+		return page;
+	}
+
+	private PagedTemplateQuery queryPage() {
+		TemplateQuery query = templateRepository.queryTemplates();
+		if (!(query instanceof PagedTemplateQuery)) {
+			throw createServiceException(MessageKey.INTERNAL_SERVER_ERROR,
+					new WteException("the template repository does not support paging"));
+		}
+		return (PagedTemplateQuery) query;
+	}
+
 	@Override
 	public TemplateDto lockTemplate(TemplateDto templateDto) {
 
@@ -25,6 +25,21 @@ import com.google.gwt.user.client.rpc.RemoteServiceRelativePath;
 public interface TemplateService extends RemoteService {
 	List<TemplateDto> getTemplates() throws TemplateServiceException;;
 
+	/**
+	 * Lists a page of templates.
+	 * 
+	 * @param offset
+	 *            index of the first template of the page
+	 * @param limit
+	 *            maximal number of templates in the page
+	 * @param sortKey
+	 *            key to sort the templates by
+	 * @param ascending
+	 *            sort direction
+	 * @return the templates of the page and the total number of templates
+	 */
+	TemplatePageDto getTemplates(int offset, int limit, TemplateSortKey sortKey, boolean ascending) throws TemplateServiceException;
+
 	TemplateDto lockTemplate(TemplateDto template) throws TemplateServiceException;
 
 	TemplateDto unlockTemplate(TemplateDto template) throws TemplateServiceException;;
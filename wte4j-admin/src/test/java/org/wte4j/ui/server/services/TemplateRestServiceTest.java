@@ -17,9 +17,12 @@ package org.wte4j.ui.server.services;
 
 import static org.junit.Assert.assertTrue;
 
+import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.when;
 
+import java.io.OutputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
@@ -88,6 +91,32 @@ public class TemplateRestServiceTest {
 				.andExpect(MockMvcResultMatchers.content().contentType("text/html;charset=UTF-8"));
 	}
 
+	@Test
+	public void downloadTemplate() throws Exception {
+		@SuppressWarnings("unchecked")
+		Template<Object> template = Mockito.mock(Template.class);
+		when(template.getDocumentName()).thenReturn("template");
+		doAnswer(new Answer<Void>() {
+
+			@Override
+			public Void answer(InvocationOnMock invocation) throws Throwable {
+				OutputStream out = (OutputStream) invocation.getArguments()[0];
+				out.write("docx".getBytes());
+				return null;
+			}
+		}).when(template).write(any(OutputStream.class));
+		when(repository.getTemplate("template", "de")).thenReturn(template);
+
+		mockMvc.perform(
+				MockMvcRequestBuilders.get("/templates")
+						.param("name", "template")
+						.param("language", "de"))
+				.andExpect(MockMvcResultMatchers.status().isOk())
+				.andExpect(MockMvcResultMatchers.header().string("Content-Disposition",
+						"attachment; filename=\"template.docx\""))
+				.andExpect(MockMvcResultMatchers.content().bytes("docx".getBytes()));
+	}
+
 	@Test
 	public void submitTemplateNotExists() throws Exception {
 		ResultActions resultActions = mockMvc.perform(
@@ -46,7 +46,9 @@ import org.wte4j.ui.shared.InvalidTemplateServiceException;
 import org.wte4j.ui.shared.MappingDto;
 import org.wte4j.ui.shared.ModelElementDto;
 import org.wte4j.ui.shared.TemplateDto;
+import org.wte4j.ui.shared.TemplatePageDto;
 import org.wte4j.ui.shared.TemplateService;
+import org.wte4j.ui.shared.TemplateSortKey;
 import org.wte4j.ui.shared.UserDto;
 
 @RunWith(SpringJUnit4ClassRunner.class)
@@ -78,6 +80,19 @@ public class TemplateServiceIntegrationTest {
 
 	}
 
+	@Test
+	public void getTemplatePage() {
+		Template<TemplateDto> persisted = createAndPersistTestTemplate();
+		int totalCount = templateService.getTemplates().size();
+
+		TemplatePageDto page = templateService.getTemplates(0, 1, TemplateSortKey.DOCUMENT_NAME, true);
+		assertEquals(totalCount, page.getTotalCount());
+		assertEquals(1, page.getTemplates().size());
+
+		page = templateService.getTemplates(0, totalCount, TemplateSortKey.EDITED_AT, false);
+		assertEquals(persisted.getDocumentName(), page.getTemplates().get(0).getDocumentName());
+	}
+
 	@Test
 	public void lockTemplate() {
 		Template<TemplateDto> template = createAndPersistTestTemplate();
@@ -0,0 +1,63 @@
+/**
+ * Copyright (C) 2015 Born Informatik AG (www.born.ch)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wte4j;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.springframework.util.concurrent.ListenableFuture;
+
+/**
+ * A {@link TemplateEngine} which generates documents on worker threads.
+ */
+public interface AsyncTemplateEngine extends TemplateEngine {
+
+	/**
+	 * Creates a new document as a temporary file on a worker thread. The
+	 * method returns immediately, e.g. a Spring MVC controller can return the
+	 * future to release the request thread until the document is generated.
+	 * The future fails with an {@link IllegalArgumentException} if the
+	 * template does not exist, with an {@link InvalidTemplateException} or
+	 * {@link IOException} if the document can not be generated and with a
+	 * {@link RejectedExecutionException} if too many documents are waiting to
+	 * be generated. Cancelling the future interrupts the generation.
+	 * 
+	 * @param documentName
+	 *            - name of the document to be generated
+	 * @param language
+	 *            - the language to be used
+	 * @param data
+	 * @return the future temporary file
+	 */
+	ListenableFuture<Path> createDocumentAsync(String documentName, String language, Object data);
+
+	/**
+	 * Same as {@link #createDocumentAsync(String, String, Object)}, the future
+	 * fails with a {@link TimeoutException} and the generation is interrupted
+	 * if the document is not generated within the given time after the call.
+	 * 
+	 * @param timeout
+	 *            - the maximum time to generate the document, no limit if
+	 *            less than 1
+	 * @param unit
+	 *            - the unit of the timeout
+	 */
+	ListenableFuture<Path> createDocumentAsync(String documentName, String language, Object data, long timeout,
+			TimeUnit unit);
+}
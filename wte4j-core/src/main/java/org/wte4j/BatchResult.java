@@ -0,0 +1,58 @@
+/**
+ * Copyright (C) 2015 Born Informatik AG (www.born.ch)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wte4j;
+
+/**
+ * Summary of a batch generated with
+ * {@link BatchTemplateEngine#createDocuments(String, String, Iterable, DocumentSink)}
+ * .
+ */
+public class BatchResult {
+
+	private final long createdCount;
+	private final long failedCount;
+
+	public BatchResult(long createdCount, long failedCount) {
+		this.createdCount = createdCount;
+		this.failedCount = failedCount;
+	}
+
+	/**
+	 * @return the number of documents passed to
+	 *         {@link DocumentSink#documentCreated(long, Object)}
+	 */
+	public long getCreatedCount() {
+		return createdCount;
+	}
+
+	/**
+	 * @return the number of records passed to
+	 *         {@link DocumentSink#documentFailed(long, Object, Exception)}
+	 */
+	public long getFailedCount() {
+		return failedCount;
+	}
+
+	public long getRecordCount() {
+		return createdCount + failedCount;
+	}
+
+	@Override
+	public String toString() {
+		return "BatchResult [createdCount=" + createdCount + ", failedCount=" + failedCount + "]";
+	}
+
+}
@@ -0,0 +1,58 @@
+/**
+ * Copyright (C) 2015 Born Informatik AG (www.born.ch)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wte4j;
+
+import java.util.Iterator;
+
+/**
+ * A {@link TemplateEngine} which generates many documents of a template in
+ * one call.
+ */
+public interface BatchTemplateEngine extends TemplateEngine {
+
+	/**
+	 * Generates a document for each record of the given data. The template is
+	 * loaded once, the documents are generated in parallel and passed to the
+	 * sink. A failing record is reported to the sink and does not abort the
+	 * batch. The method returns after all records are processed.
+	 * 
+	 * @param documentName
+	 *            - name of the documents to be generated
+	 * @param language
+	 *            - the language to be used
+	 * @param data
+	 *            - the records, one document is generated per record
+	 * @param sink
+	 *            - receives the generated documents
+	 * @return the number of generated and failed documents
+	 * @throws IllegalArgumentException
+	 *             if the template does not exist
+	 * @throws InterruptedException
+	 *             if the calling thread was interrupted while waiting for
+	 *             free workers, records not yet submitted are not processed
+	 */
+	BatchResult createDocuments(String documentName, String language, Iterable<?> data, DocumentSink sink)
+			throws IllegalArgumentException, InterruptedException;
+
+	/**
+	 * Same as
+	 * {@link #createDocuments(String, String, Iterable, DocumentSink)}, the
+	 * records are read from an iterator, e.g. to stream records from a
+	 * database.
+	 */
+	BatchResult createDocuments(String documentName, String language, Iterator<?> data, DocumentSink sink)
+			throws IllegalArgumentException, InterruptedException;
+}
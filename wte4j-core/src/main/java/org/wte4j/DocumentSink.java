@@ -0,0 +1,53 @@
+/**
+ * Copyright (C) 2015 Born Informatik AG (www.born.ch)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wte4j;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Receives the documents generated by
+ * {@link BatchTemplateEngine#createDocuments(String, String, Iterable, DocumentSink)}
+ * . Documents are generated in parallel, implementations must be thread safe.
+ */
+public interface DocumentSink {
+
+	/**
+	 * Opens the stream the document of a record is written to. The stream is
+	 * closed by the engine.
+	 * 
+	 * @param index
+	 *            - the position of the record in the input data
+	 * @param data
+	 *            - the record
+	 */
+	OutputStream open(long index, Object data) throws IOException;
+
+	/**
+	 * Called after the document of a record was written and its stream was
+	 * closed.
+	 */
+	void documentCreated(long index, Object data);
+
+	/**
+	 * Called if the document of a record could not be generated. The batch
+	 * continues with the next record.
+	 * 
+	 * @param cause
+	 *            - the exception thrown on generating or writing the document
+	 */
+	void documentFailed(long index, Object data, Exception cause);
+}
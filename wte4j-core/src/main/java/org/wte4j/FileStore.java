@@ -18,8 +18,19 @@ package org.wte4j;
 import java.io.IOException;
 import java.io.OutputStream;
 
+/**
+ * Stores a copy of the template documents outside of the database. The files
+ * are named by template unless the repository is set to name them by the
+ * digest of their content. A store whose files can be read back implements
+ * {@link ReadableFileStore}.
+ */
 public interface FileStore {
 
+	/**
+	 * Opens a stream to write a file. The written content replaces the
+	 * content of an existing file when the stream is closed, a reader never
+	 * sees a partially written file.
+	 */
 	OutputStream getOutStream(String fileName) throws IOException;
 
 	void deleteFile(String fileName) throws IllegalArgumentException;
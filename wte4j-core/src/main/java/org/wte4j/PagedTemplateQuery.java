@@ -0,0 +1,93 @@
+/**
+ * Copyright (C) 2015 Born Informatik AG (www.born.ch)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wte4j;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A {@link TemplateQuery} which sorts and pages its result, counts the
+ * matching templates and lists their metadata without the template content.
+ * The query of {@link org.wte4j.impl.WordTemplateRepository} implements it.
+ */
+public interface PagedTemplateQuery extends TemplateQuery {
+
+	/**
+	 * Keys the result of a query can be sorted by.
+	 */
+	enum SortKey {
+		DOCUMENT_NAME, LANGUAGE, EDITED_AT, EDITOR
+	}
+
+	@Override
+	PagedTemplateQuery documentName(String name);
+
+	@Override
+	PagedTemplateQuery language(String language);
+
+	@Override
+	PagedTemplateQuery inputType(Class<?> clazz);
+
+	@Override
+	PagedTemplateQuery editor(String userId);
+
+	@Override
+	PagedTemplateQuery isLocked(boolean value);
+
+	@Override
+	PagedTemplateQuery isLockedBy(String userId);
+
+	@Override
+	PagedTemplateQuery hasProperties(Map<String, String> properties);
+
+	/**
+	 * Sorts the result by the given key. Repeated calls add further sort
+	 * keys.
+	 * 
+	 * @param key
+	 *            the key to sort by
+	 * @param ascending
+	 *            <code>true</code> to sort ascending, <code>false</code> to sort
+	 *            descending
+	 */
+	PagedTemplateQuery orderBy(SortKey key, boolean ascending);
+
+	/**
+	 * Skips the given number of templates at the start of the result.
+	 */
+	PagedTemplateQuery offset(int offset);
+
+	/**
+	 * Limits the result to the given number of templates.
+	 */
+	PagedTemplateQuery limit(int limit);
+
+	/**
+	 * Counts the templates matching this query. Offset and limit are ignored.
+	 * 
+	 * @return the number of matching templates
+	 */
+	long count();
+
+	/**
+	 * Lists the metadata of the matching templates. Unlike {@link #list()} the
+	 * template content is not loaded, which makes this the preferred way to
+	 * list templates for overviews.
+	 * 
+	 * @return the metadata of all templates matching this query
+	 */
+	List<TemplateMetadata> listMetadata();
+}
@@ -0,0 +1,49 @@
+/**
+ * Copyright (C) 2015 Born Informatik AG (www.born.ch)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wte4j;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.ReadableByteChannel;
+
+/**
+ * A {@link FileStore} whose files can be read back. If its files are named by
+ * digest (see
+ * {@link org.wte4j.impl.WordTemplateRepository#setStoreFilesByDigest(boolean)}
+ * ), the content of a template is read from such a store before it is read
+ * from the database.
+ */
+public interface ReadableFileStore extends FileStore {
+
+	/**
+	 * Opens a stream to read a file.
+	 * 
+	 * @throws FileNotFoundException
+	 *             if the file does not exist
+	 */
+	InputStream getInStream(String fileName) throws IOException;
+
+	/**
+	 * Opens a channel to read a file. Implementations storing local files
+	 * return a {@link java.nio.channels.FileChannel}, which can transfer or
+	 * map the file without copying it to the heap.
+	 * 
+	 * @throws FileNotFoundException
+	 *             if the file does not exist
+	 */
+	ReadableByteChannel getChannel(String fileName) throws IOException;
+}
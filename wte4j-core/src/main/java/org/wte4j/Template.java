@@ -18,9 +18,7 @@ package org.wte4j;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
-import java.util.Date;
 import java.util.List;
-import java.util.Map;
 
 /**
  * Defines a template. A template is identified by the documentname and
@@ -29,23 +27,7 @@ import java.util.Map;
  * @param <E>
  *            type of the input to generate a document.
  */
-public interface Template<E> extends TemplateFile {
-	String getDocumentName();
-
-	String getLanguage();
-
-	Map<String, String> getProperties();
-
-	Class<?> getInputType();
-
-	User getLockingUser();
-
-	User getEditor();
-
-	Date getEditedAt();
-
-	Date getCreatedAt();
-
+public interface Template<E> extends TemplateFile, TemplateMetadata {
 	/**
 	 * Update the content of the template.
 	 * 
@@ -59,8 +41,6 @@ public interface Template<E> extends TemplateFile {
 	 */
 	void update(InputStream in, User editor) throws IOException, LockingException;
 
-	public Map<String, MappingDetail> getContentMapping();
-
 	/**
 	 * Validates the template against the model and mapping.
 	 * 
@@ -0,0 +1,38 @@
+/**
+ * Copyright (C) 2015 Born Informatik AG (www.born.ch)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wte4j;
+
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A {@link WteDataModel} which reads the values of many keys at once, e.g.
+ * with a single query. Before a document is generated the engine requests
+ * the values of all keys used by the template with {@link #getValues(Set)}.
+ * Keys missing in the returned map are read with {@link #getValue(String)},
+ * like the values of any other model.
+ */
+public interface WteBatchDataModel extends WteDataModel {
+
+	/**
+	 * Returns the values of the given keys.
+	 * 
+	 * @param keys
+	 *            - the model keys used by the template
+	 * @return the values by key, keys without a value may be missing
+	 */
+	Map<String, Object> getValues(Set<String> keys);
+}
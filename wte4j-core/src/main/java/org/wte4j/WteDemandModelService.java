@@ -0,0 +1,40 @@
+/**
+ * Copyright (C) 2015 Born Informatik AG (www.born.ch)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wte4j;
+
+import java.util.Set;
+
+/**
+ * A {@link WteModelService} which creates models for the values a template
+ * actually uses. When a document is generated the engine passes the model
+ * keys referenced by the content controls of the template, after the
+ * content mapping ({@link MappingDetail#getModelKey()}) is applied. Values
+ * of other keys are never requested from the model, so they need not be
+ * computed or fetched.
+ */
+public interface WteDemandModelService extends WteModelService {
+
+	/**
+	 * Wraps the given input in a {@link WteDataModel} which provides the
+	 * values of the given keys.
+	 * 
+	 * @param modelKeys
+	 *            - the model keys used by the template, the set must not be
+	 *            modified
+	 */
+	WteDataModel createModel(Template<?> template, Object input,
+			Set<String> modelKeys);
+}
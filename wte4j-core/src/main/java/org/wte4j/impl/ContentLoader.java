@@ -0,0 +1,41 @@
+/**
+ * Copyright (C) 2015 Born Informatik AG (www.born.ch)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wte4j.impl;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Reads the content of a {@link PersistentTemplate} which was read without
+ * it, e.g. from the template index or by a metadata query.
+ */
+interface ContentLoader {
+
+	/**
+	 * @return the content of the given template or <code>null</code> if the
+	 *         template has no content
+	 * @throws org.wte4j.WteException
+	 *             if the content referenced by the template can not be found
+	 */
+	byte[] loadContent(PersistentTemplate template);
+
+	/**
+	 * Writes the content of the given template to the stream, without
+	 * reading it into memory if the storage allows it.
+	 */
+	void writeContent(PersistentTemplate template, OutputStream out)
+			throws IOException;
+}
@@ -0,0 +1,126 @@
+/**
+ * Copyright (C) 2015 Born Informatik AG (www.born.ch)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wte4j.impl;
+
+import java.io.OutputStream;
+import java.util.Iterator;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.wte4j.BatchResult;
+import org.wte4j.DocumentSink;
+import org.wte4j.Template;
+
+/**
+ * Generates the documents of a batch on an {@link Executor}. The number of
+ * records submitted but not yet written is limited, so the memory used by a
+ * batch does not depend on the number of records.
+ */
+class DocumentBatch {
+
+	private final Logger logger = LoggerFactory.getLogger(getClass());
+
+	private final Template<Object> template;
+	private final DocumentSink sink;
+	private final Executor executor;
+	private final int maxPendingDocuments;
+	private final Semaphore pendingDocuments;
+
+	private final AtomicLong createdCount = new AtomicLong();
+	private final AtomicLong failedCount = new AtomicLong();
+
+	DocumentBatch(Template<Object> template, DocumentSink sink, Executor executor, int maxPendingDocuments) {
+		if (maxPendingDocuments < 1) {
+			throw new IllegalArgumentException("maxPendingDocuments must be greater than 0");
+		}
+		this.template = template;
+		this.sink = sink;
+		this.executor = executor;
+		this.maxPendingDocuments = maxPendingDocuments;
+		this.pendingDocuments = new Semaphore(maxPendingDocuments);
+	}
+
+	/**
+	 * Submits all records and waits until their documents are processed.
+	 */
+	BatchResult run(Iterator<?> data) throws InterruptedException {
+		long index = 0;
+		try {
+			while (data.hasNext()) {
+				pendingDocuments.acquire();
+				Object record;
+				try {
+					record = data.next();
+				} catch (RuntimeException e) {
+					pendingDocuments.release();
+					throw e;
+				}
+				submit(index++, record);
+			}
+		} finally {
+			// wait for the submitted records
+			pendingDocuments.acquireUninterruptibly(maxPendingDocuments);
+			pendingDocuments.release(maxPendingDocuments);
+		}
+		return new BatchResult(createdCount.get(), failedCount.get());
+	}
+
+	private void submit(final long index, final Object record) {
+		try {
+			executor.execute(new Runnable() {
+				@Override
+				public void run() {
+					try {
+						generate(index, record);
+					} finally {
+						pendingDocuments.release();
+					}
+				}
+			});
+		} catch (RejectedExecutionException e) {
+			pendingDocuments.release();
+			failed(index, record, e);
+		}
+	}
+
+	void generate(long index, Object record) {
+		try (OutputStream out = sink.open(index, record)) {
+			template.toDocument(record, out);
+		} catch (Exception e) {
+			failed(index, record, e);
+			return;
+		}
+		createdCount.incrementAndGet();
+		try {
+			sink.documentCreated(index, record);
+		} catch (RuntimeException e) {
+			logger.error("error on handling document {} of {}", index, template.getDocumentName(), e);
+		}
+	}
+
+	private void failed(long index, Object record, Exception cause) {
+		failedCount.incrementAndGet();
+		try {
+			sink.documentFailed(index, record, cause);
+		} catch (RuntimeException e) {
+			logger.error("error on handling failure of document {} of {}", index, template.getDocumentName(), e);
+		}
+	}
+}
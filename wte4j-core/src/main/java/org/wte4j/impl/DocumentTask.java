@@ -0,0 +1,106 @@
+/**
+ * Copyright (C) 2015 Born Informatik AG (www.born.ch)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wte4j.impl;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeoutException;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.util.concurrent.SettableListenableFuture;
+
+/**
+ * A document generated on an executor. The future completes with the
+ * generated file. If the future is cancelled or expires while the document is
+ * generated, the generating thread is interrupted and a file created anyway is
+ * deleted.
+ */
+abstract class DocumentTask extends SettableListenableFuture<Path> implements Runnable {
+
+	private final Logger logger = LoggerFactory.getLogger(getClass());
+
+	private Thread worker;
+
+	/**
+	 * Generates the document.
+	 */
+	protected abstract Path createDocument() throws Exception;
+
+	@Override
+	public void run() {
+		if (!start()) {
+			return;
+		}
+		try {
+			Path document = createDocument();
+			if (!set(document)) {
+				delete(document);
+			}
+		} catch (Exception e) {
+			setException(e);
+		} catch (Error e) {
+			setException(e);
+			throw e;
+		} finally {
+			finish();
+		}
+	}
+
+	/**
+	 * Completes the future with a {@link TimeoutException}, if the document is
+	 * not generated yet.
+	 * 
+	 * @return <code>true</code> if the task was expired
+	 */
+	boolean expire() {
+		if (setException(new TimeoutException("document was not generated in time"))) {
+			interruptTask();
+			return true;
+		}
+		return false;
+	}
+
+	private synchronized boolean start() {
+		if (isDone()) {
+			return false;
+		}
+		worker = Thread.currentThread();
+		return true;
+	}
+
+	private synchronized void finish() {
+		worker = null;
+		// an interrupt of this task must not affect the next task of the thread
+		Thread.interrupted();
+	}
+
+	@Override
+	protected synchronized void interruptTask() {
+		if (worker != null) {
+			worker.interrupt();
+		}
+	}
+
+	private void delete(Path document) {
+		try {
+			Files.deleteIfExists(document);
+		} catch (IOException e) {
+			logger.warn("document {} of a cancelled task could not be deleted", document, e);
+		}
+	}
+}
@@ -0,0 +1,95 @@
+/**
+ * Copyright (C) 2015 Born Informatik AG (www.born.ch)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wte4j.impl;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.Lob;
+import javax.persistence.Table;
+
+/**
+ * Content of templates, stored once per SHA-256 digest. The reference count
+ * is the number of templates using the content and is maintained by the
+ * {@link WordTemplateRepository}.
+ */
+@Entity
+@Table(name = "wte4j_template_content")
+public class PersistentContent {
+
+	private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+	private static final String FILE_SUFFIX = ".docx";
+
+	@Id
+	@Column(name = "digest", length = 64)
+	private String digest;
+
+	@Lob
+	@Column(name = "content", nullable = false, columnDefinition = "BLOB")
+	private byte[] content;
+
+	@Column(name = "reference_count", nullable = false)
+	private long referenceCount;
+
+	protected PersistentContent() {
+	}
+
+	PersistentContent(String digest, byte[] content) {
+		this.digest = digest;
+		this.content = content;
+		this.referenceCount = 1;
+	}
+
+	public String getDigest() {
+		return digest;
+	}
+
+	public byte[] getContent() {
+		return content;
+	}
+
+	public long getReferenceCount() {
+		return referenceCount;
+	}
+
+	/**
+	 * @return the name of the file storing the content with the given digest
+	 *         in a {@link org.wte4j.FileStore}
+	 */
+	public static String fileName(String digest) {
+		return digest + FILE_SUFFIX;
+	}
+
+	/**
+	 * @return the SHA-256 digest of the content as lower case hex string
+	 */
+	public static String digest(byte[] content) {
+		try {
+			byte[] hash = MessageDigest.getInstance("SHA-256").digest(content);
+			char[] hex = new char[hash.length * 2];
+			for (int i = 0; i < hash.length; i++) {
+				hex[2 * i] = HEX_DIGITS[(hash[i] >> 4) & 0xf];
+				hex[2 * i + 1] = HEX_DIGITS[hash[i] & 0xf];
+			}
+			return new String(hex);
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException("SHA-256 is not supported", e);
+		}
+	}
+}
@@ -17,8 +17,8 @@ package org.wte4j.impl;
 
 import java.io.IOException;
 import java.io.OutputStream;
-import java.util.Arrays;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.Map;
 
 import javax.persistence.AttributeOverride;
@@ -46,6 +46,7 @@ import javax.persistence.Version;
 import org.apache.commons.io.IOUtils;
 import org.wte4j.LockingException;
 import org.wte4j.MappingDetail;
+import org.wte4j.TemplateMetadata;
 import org.wte4j.User;
 
 /**
@@ -55,7 +56,7 @@ import org.wte4j.User;
 @Table(name = "wte4j_template", uniqueConstraints = @UniqueConstraint(columnNames = {
 		"document_name", "language" }))
 @TableGenerator(name = "wte4j_gen", table = "wte4j_gen", valueColumnName = "sequence_next", pkColumnName = "sequence_name", pkColumnValue = "wte4j_template")
-public class PersistentTemplate {
+public class PersistentTemplate implements TemplateMetadata {
 
 	private static final String TEMPLATE_SUFFIX = ".docx";
 
@@ -74,13 +75,13 @@ public class PersistentTemplate {
 	@Column(name = "input_class_name", length = 250)
 	private String inputClassName;
 
-	@ElementCollection(fetch = FetchType.EAGER)
+	@ElementCollection(fetch = FetchType.LAZY)
 	@CollectionTable(name = "wte4j_template_properties", joinColumns = @JoinColumn(name = "template_id"))
 	@MapKeyColumn(name = "property_key")
 	@Column(name = "property_value")
 	private Map<String, String> properties;
 
-	@ElementCollection(fetch = FetchType.EAGER, targetClass = MappingDetail.class)
+	@ElementCollection(fetch = FetchType.LAZY, targetClass = MappingDetail.class)
 	@CollectionTable(name = "wte4j_template_content_mapping", joinColumns = @JoinColumn(name = "template_id"))
 	@MapKeyColumn(name = "conentend_control_id")
 	private Map<String, MappingDetail> contentMapping;
@@ -109,9 +110,22 @@ public class PersistentTemplate {
 			@AttributeOverride(name = "displayName", column = @Column(name = "locking_user_display_name", length = 100, nullable = true)) })
 	private User lockingUser;
 
+	@Column(name = "content_digest", length = 64)
+	private String contentDigest;
+
+	@Transient
+	private byte[] content;
+
+	@Transient
+	private ContentLoader contentLoader;
+
+	/**
+	 * Content of templates stored before the content was shared by digest.
+	 * It is only read and replaced by the shared content on the next update.
+	 */
 	@Lob
 	@Column(name = "content", nullable = true, columnDefinition = "BLOB")
-	private byte[] content;
+	private byte[] legacyContent;
 
 	@Version
 	private Long version;
@@ -120,10 +134,18 @@ public class PersistentTemplate {
 		return id;
 	}
 
+	void setId(Long id) {
+		this.id = id;
+	}
+
 	public long getVersion() {
 		return version;
 	}
 
+	void setVersion(long version) {
+		this.version = version;
+	}
+
 	public String getDocumentName() {
 		return documentName;
 	}
@@ -144,6 +166,11 @@ public class PersistentTemplate {
 		return inputClassName;
 	}
 
+	void setInputClassName(String inputClassName) {
+		this.inputClassName = inputClassName;
+		this.inputType = null;
+	}
+
 	public String getTemplateFileName() {
 		return documentName + "_" + language + TEMPLATE_SUFFIX;
 
@@ -217,12 +244,68 @@ public class PersistentTemplate {
 		editor = user;
 	}
 
+	/**
+	 * @return the content of the template. A template read without its
+	 *         content loads it on the first call.
+	 */
 	public byte[] getContent() {
+		if (content == null && contentLoader != null) {
+			byte[] loaded = contentLoader.loadContent(this);
+			if (loaded != null && contentDigest == null) {
+				setContent(loaded);
+			} else {
+				content = loaded;
+			}
+		}
 		return content;
 	}
 
+	boolean isContentLoaded() {
+		return content != null;
+	}
+
+	void setContentLoader(ContentLoader contentLoader) {
+		this.contentLoader = contentLoader;
+	}
+
+	/**
+	 * Takes the content of the given template without loading it.
+	 */
+	void setContentOf(PersistentTemplate other) {
+		content = other.content;
+		contentLoader = other.contentLoader;
+	}
+
+	/**
+	 * @return the SHA-256 digest of the content, under which the content is
+	 *         stored
+	 */
+	public String getContentDigest() {
+		return contentDigest;
+	}
+
+	/**
+	 * Sets the content and its digest. The array is not copied, content is
+	 * never modified in place.
+	 */
 	protected void setContent(byte[] bytes) {
-		content = Arrays.copyOf(bytes, bytes.length);
+		content = bytes;
+		contentDigest = PersistentContent.digest(bytes);
+	}
+
+	/**
+	 * Sets the content read from the storage for {@link #getContentDigest()}.
+	 */
+	void setStoredContent(byte[] storedContent) {
+		content = storedContent;
+	}
+
+	void setContentDigest(String contentDigest) {
+		this.contentDigest = contentDigest;
+	}
+
+	void clearLegacyContent() {
+		legacyContent = null;
 	}
 
 	public void setContent(byte[] newContent, User newEditor)
@@ -239,7 +322,8 @@ public class PersistentTemplate {
 	}
 
 	/**
-	 * Writes the template document to the given output stream and closes it
+	 * Writes the template document to the given output stream and closes it.
+	 * A content which is not loaded yet is written without keeping it.
 	 * 
 	 * @param out
 	 *            - the Outputstream
@@ -247,12 +331,76 @@ public class PersistentTemplate {
 	 */
 	public void writeContent(OutputStream out) throws IOException {
 		try {
-			IOUtils.write(content, out);
+			if (content == null && contentLoader != null) {
+				contentLoader.writeContent(this, out);
+			} else {
+				IOUtils.write(content, out);
+			}
 		} finally {
 			IOUtils.closeQuietly(out);
 		}
 	}
 
+	/**
+	 * Creates a copy of this template which is not attached to a persistence
+	 * context. The properties and the content mapping are copied, the content
+	 * is shared as it is never modified in place.
+	 */
+	public PersistentTemplate detachedCopy() {
+		PersistentTemplate copy = copyColumns();
+		copy.properties = properties != null ? new HashMap<String, String>(properties) : null;
+		if (contentMapping != null) {
+			copy.contentMapping = new HashMap<String, MappingDetail>();
+			for (Map.Entry<String, MappingDetail> mapping : contentMapping.entrySet()) {
+				MappingDetail detail = new MappingDetail();
+				detail.setModelKey(mapping.getValue().getModelKey());
+				detail.setFormatterDefinition(mapping.getValue().getFormatterDefinition());
+				copy.contentMapping.put(mapping.getKey(), detail);
+			}
+		}
+		return copy;
+	}
+
+	/**
+	 * Creates a detached copy without the content, which is loaded again on
+	 * demand if the template was read with a {@link ContentLoader}.
+	 */
+	public PersistentTemplate metadataCopy() {
+		PersistentTemplate copy = detachedCopy();
+		if (copy.contentLoader != null) {
+			copy.content = null;
+		}
+		return copy;
+	}
+
+	/**
+	 * Creates a detached copy without the properties and the content mapping.
+	 * The element collections of this template are not accessed, so they are
+	 * not loaded if they are lazy.
+	 */
+	PersistentTemplate copyColumns() {
+		PersistentTemplate copy = new PersistentTemplate();
+		copy.id = id;
+		copy.version = version;
+		copy.documentName = documentName;
+		copy.language = language;
+		copy.inputType = inputType;
+		copy.inputClassName = inputClassName;
+		copy.createdAt = createdAt;
+		copy.editedAt = editedAt;
+		copy.editor = editor;
+		copy.lockingDate = lockingDate;
+		// an unlocked template may be read with an empty embedded user
+		copy.lockingUser = isLocked() ? lockingUser : null;
+		copy.content = content;
+		copy.contentDigest = contentDigest;
+		copy.contentLoader = contentLoader;
+		if (content == null && legacyContent != null) {
+			copy.setContent(legacyContent);
+		}
+		return copy;
+	}
+
 	void initInputClass() {
 		try {
 			inputType = Class.forName(inputClassName);
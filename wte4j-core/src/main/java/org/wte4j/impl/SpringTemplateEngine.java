@@ -21,14 +21,32 @@ import java.io.InputStream;
 import java.io.OutputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.PreDestroy;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
 import org.springframework.stereotype.Service;
+import org.springframework.util.concurrent.ListenableFuture;
+import org.springframework.util.concurrent.ListenableFutureCallback;
+import org.wte4j.AsyncTemplateEngine;
+import org.wte4j.BatchResult;
+import org.wte4j.BatchTemplateEngine;
+import org.wte4j.DocumentSink;
 import org.wte4j.InvalidTemplateException;
 import org.wte4j.Template;
 import org.wte4j.TemplateBuilder;
-import org.wte4j.TemplateEngine;
 import org.wte4j.TemplateFile;
 import org.wte4j.TemplateRepository;
 import org.wte4j.WteException;
@@ -36,7 +54,8 @@ import org.wte4j.WteModelService;
 import org.wte4j.impl.word.WordTemplateFile;
 
 @Service("wordTemplateEngine")
-public class SpringTemplateEngine implements TemplateEngine {
+public class SpringTemplateEngine implements BatchTemplateEngine,
+		AsyncTemplateEngine {
 
 	@Autowired
 	protected TemplateRepository templateRepository;
@@ -48,6 +67,16 @@ public class SpringTemplateEngine implements TemplateEngine {
 	@Autowired
 	protected TemplateContextFactory contextFactory;
 
+	private int batchThreads = Runtime.getRuntime().availableProcessors();
+	private int maxPendingDocuments = 0;
+	private Executor batchExecutor;
+
+	private int asyncThreads = Runtime.getRuntime().availableProcessors();
+	private int asyncQueueCapacity = 100;
+	private Executor asyncExecutor;
+	private ExecutorService ownAsyncExecutor;
+	private ScheduledThreadPoolExecutor timeoutScheduler;
+
 	@Override
 	public <E> TemplateBuilder<E> getTemplateBuilder(Class<E> inputType) {
 		if (modelService == null) {
@@ -61,6 +90,118 @@ public class SpringTemplateEngine implements TemplateEngine {
 	public Path createDocument(String documentName, String language, Object data)
 			throws IllegalArgumentException, InvalidTemplateException,
 			IOException {
+		Template<Object> template = getExistingTemplate(documentName, language);
+		return createFile(template, data);
+	}
+
+	@Override
+	public ListenableFuture<Path> createDocumentAsync(String documentName, String language, Object data) {
+		return createDocumentAsync(documentName, language, data, 0, TimeUnit.MILLISECONDS);
+	}
+
+	@Override
+	public ListenableFuture<Path> createDocumentAsync(final String documentName, final String language,
+			final Object data, long timeout, TimeUnit unit) {
+		final DocumentTask task = new DocumentTask() {
+			@Override
+			protected Path createDocument() throws IOException {
+				Template<Object> template = getExistingTemplate(documentName, language);
+				return createFile(template, data);
+			}
+		};
+		try {
+			getAsyncExecutor().execute(task);
+		} catch (RejectedExecutionException e) {
+			task.setException(e);
+			return task;
+		}
+		if (timeout > 0) {
+			final ScheduledFuture<?> expiry = getTimeoutScheduler().schedule(new Runnable() {
+				@Override
+				public void run() {
+					task.expire();
+				}
+			}, timeout, unit);
+			task.addCallback(new ListenableFutureCallback<Path>() {
+				@Override
+				public void onSuccess(Path result) {
+					expiry.cancel(false);
+				}
+
+				@Override
+				public void onFailure(Throwable ex) {
+					expiry.cancel(false);
+				}
+			});
+		}
+		return task;
+	}
+
+	private synchronized Executor getAsyncExecutor() {
+		if (asyncExecutor == null) {
+			ThreadPoolExecutor pool = new ThreadPoolExecutor(asyncThreads, asyncThreads, 60, TimeUnit.SECONDS,
+					new ArrayBlockingQueue<Runnable>(asyncQueueCapacity), new CustomizableThreadFactory("wte4j-async-"));
+			pool.allowCoreThreadTimeOut(true);
+			ownAsyncExecutor = pool;
+			asyncExecutor = pool;
+		}
+		return asyncExecutor;
+	}
+
+	private synchronized ScheduledThreadPoolExecutor getTimeoutScheduler() {
+		if (timeoutScheduler == null) {
+			CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("wte4j-timeout-");
+			threadFactory.setDaemon(true);
+			timeoutScheduler = new ScheduledThreadPoolExecutor(1, threadFactory);
+			timeoutScheduler.setRemoveOnCancelPolicy(true);
+		}
+		return timeoutScheduler;
+	}
+
+	/**
+	 * Stops the threads created for asynchronous documents. Documents already
+	 * submitted are still generated.
+	 */
+	@PreDestroy
+	public synchronized void shutdown() {
+		if (ownAsyncExecutor != null) {
+			ownAsyncExecutor.shutdown();
+			ownAsyncExecutor = null;
+			asyncExecutor = null;
+		}
+		if (timeoutScheduler != null) {
+			timeoutScheduler.shutdown();
+			timeoutScheduler = null;
+		}
+	}
+
+	@Override
+	public BatchResult createDocuments(String documentName, String language, Iterable<?> data, DocumentSink sink)
+			throws IllegalArgumentException, InterruptedException {
+		return createDocuments(documentName, language, data.iterator(), sink);
+	}
+
+	@Override
+	public BatchResult createDocuments(String documentName, String language, Iterator<?> data, DocumentSink sink)
+			throws IllegalArgumentException, InterruptedException {
+		Template<Object> template = getExistingTemplate(documentName, language);
+		Executor executor = batchExecutor;
+		ExecutorService ownExecutor = null;
+		if (executor == null) {
+			ownExecutor = Executors.newFixedThreadPool(batchThreads, new CustomizableThreadFactory("wte4j-batch-"));
+			executor = ownExecutor;
+		}
+		try {
+			DocumentBatch batch = new DocumentBatch(template, sink, executor, getMaxPendingDocuments());
+			return batch.run(data);
+		} finally {
+			if (ownExecutor != null) {
+				ownExecutor.shutdown();
+			}
+		}
+	}
+
+	private Template<Object> getExistingTemplate(String documentName, String language) {
 		Template<Object> template = templateRepository.getTemplate(
 				documentName, language);
 		if (template == null) {
@@ -68,15 +209,97 @@ public class SpringTemplateEngine implements TemplateEngine {
 					"Template does not exists for document \"" + documentName
 							+ "\" with the given language " + language);
 		}
-		return createFile(template, data);
+		return template;
 	}
 
 	Path createFile(Template<Object> template, Object data) throws IOException {
 		File tempFile = File.createTempFile(template.getDocumentName(), ".docx");
+		boolean created = false;
 		try (OutputStream out = Files.newOutputStream(tempFile.toPath())) {
 			template.toDocument(data, out);
+			created = true;
 			return tempFile.toPath();
+		} finally {
+			if (!created) {
+				Files.deleteIfExists(tempFile.toPath());
+			}
+		}
+	}
+
+	public int getBatchThreads() {
+		return batchThreads;
+	}
+
+	/**
+	 * Sets the number of threads generating the documents of a batch. Not used
+	 * if an executor is set with {@link #setBatchExecutor(Executor)}. Default
+	 * is the number of available processors.
+	 */
+	public void setBatchThreads(int batchThreads) {
+		this.batchThreads = batchThreads;
+	}
+
+	/**
+	 * @return the maximum number of documents of a batch submitted but not
+	 *         yet written, twice the number of batch threads if not set
+	 */
+	public int getMaxPendingDocuments() {
+		if (maxPendingDocuments > 0) {
+			return maxPendingDocuments;
+		}
+		return 2 * batchThreads;
+	}
+
+	public void setMaxPendingDocuments(int maxPendingDocuments) {
+		this.maxPendingDocuments = maxPendingDocuments;
+	}
+
+	/**
+	 * Sets the executor generating the documents of a batch. If not set, a
+	 * thread pool is created for each batch.
+	 */
+	public void setBatchExecutor(Executor batchExecutor) {
+		this.batchExecutor = batchExecutor;
+	}
+
+	public int getAsyncThreads() {
+		return asyncThreads;
+	}
+
+	/**
+	 * Sets the number of threads generating asynchronous documents. Not used
+	 * if an executor is set with {@link #setAsyncExecutor(Executor)}. Default
+	 * is the number of available processors.
+	 */
+	public synchronized void setAsyncThreads(int asyncThreads) {
+		this.asyncThreads = asyncThreads;
+	}
+
+	public int getAsyncQueueCapacity() {
+		return asyncQueueCapacity;
+	}
+
+	/**
+	 * Sets the maximum number of asynchronous documents waiting for a free
+	 * thread, further documents are rejected. Not used if an executor is set
+	 * with {@link #setAsyncExecutor(Executor)}. Default is 100.
+	 */
+	public synchronized void setAsyncQueueCapacity(int asyncQueueCapacity) {
+		this.asyncQueueCapacity = asyncQueueCapacity;
+	}
+
+	/**
+	 * Sets the executor generating asynchronous documents, e.g. a
+	 * <code>ThreadPoolTaskExecutor</code> shared with Spring's async support.
+	 * If not set, a thread pool is created with the first asynchronous
+	 * document.
+	 */
+	public synchronized void setAsyncExecutor(Executor asyncExecutor) {
+		if (ownAsyncExecutor != null) {
+			ownAsyncExecutor.shutdown();
+			ownAsyncExecutor = null;
 		}
+		this.asyncExecutor = asyncExecutor;
 	}
 
 	@Override
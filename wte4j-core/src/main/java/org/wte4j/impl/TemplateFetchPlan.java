@@ -0,0 +1,42 @@
+/**
+ * Copyright (C) 2015 Born Informatik AG (www.born.ch)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wte4j.impl;
+
+/**
+ * Defines which parts of a template are loaded by a {@link WordTemplateQuery}.
+ * The properties and the content mapping are always loaded, with one
+ * statement each for all matching templates.
+ */
+enum TemplateFetchPlan {
+	/**
+	 * Loads the complete template including its content.
+	 */
+	FULL(true),
+	/**
+	 * Loads everything but the content.
+	 */
+	METADATA(false);
+
+	private final boolean content;
+
+	private TemplateFetchPlan(boolean content) {
+		this.content = content;
+	}
+
+	boolean includesContent() {
+		return content;
+	}
+}
@@ -0,0 +1,265 @@
+/**
+ * Copyright (C) 2015 Born Informatik AG (www.born.ch)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wte4j.impl;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.annotation.PreDestroy;
+
+import org.apache.commons.io.output.NullOutputStream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+import org.wte4j.Template;
+import org.wte4j.impl.cache.TemplateFileCache;
+
+/**
+ * Prepares templates before their first document is requested. A test
+ * document of each template is generated and discarded, which initializes
+ * docx4j, compiles the expressions of the template and puts its parsed and
+ * compiled document into the {@link org.wte4j.impl.cache.TemplateFileCache}.
+ * <p>
+ * {@link WordTemplateRepository} warms up all templates in parallel when the
+ * application context is started and each template after it has been
+ * persisted. The warmer is ready when the templates read at startup are
+ * warmed up, {@link #isReady()} or {@link #awaitReady(long, TimeUnit)} can be
+ * used to admit requests only afterwards.
+ * <p>
+ * A warmed up template only stays hot while it is in the template file cache.
+ * The warm-up at startup is therefore limited to the number of entries of the
+ * cache, further templates would only evict the templates warmed up before.
+ * If there are more templates, {@link #setDocumentNames(Collection)} should
+ * select the templates that matter.
+ */
+@Component
+public class TemplateWarmer {
+
+	private final Logger logger = LoggerFactory.getLogger(getClass());
+
+	private final CountDownLatch ready = new CountDownLatch(1);
+
+	@Autowired(required = false)
+	private TemplateFileCache templateFileCache;
+
+	private boolean enabled = true;
+	private Set<String> documentNames;
+	private int threads = Runtime.getRuntime().availableProcessors();
+	private Executor executor;
+	private ExecutorService ownExecutor;
+
+	/**
+	 * Warms up the given templates in parallel, at most as many as the
+	 * template file cache holds. The warmer is ready as soon as all of them
+	 * are warmed up or failed.
+	 */
+	public void warmUpAll(Collection<? extends Template<?>> templates) {
+		final List<Template<?>> selected = limitToCacheSize(select(templates));
+		if (selected.isEmpty()) {
+			markReady(0, System.currentTimeMillis());
+			return;
+		}
+		logger.info("warming up {} templates", selected.size());
+		final long start = System.currentTimeMillis();
+		final AtomicInteger done = new AtomicInteger();
+		for (final Template<?> template : selected) {
+			getExecutor().execute(new Runnable() {
+				@Override
+				public void run() {
+					warmUpTemplate(template);
+					int count = done.incrementAndGet();
+					logProgress(count, selected.size());
+					if (count == selected.size()) {
+						markReady(count, start);
+					}
+				}
+			});
+		}
+	}
+
+	/**
+	 * Warms up a single template, e.g. a template which has just been
+	 * persisted. Does not affect the readiness of the warmer.
+	 */
+	public void warmUp(final Template<?> template) {
+		if (select(template)) {
+			getExecutor().execute(new Runnable() {
+				@Override
+				public void run() {
+					warmUpTemplate(template);
+				}
+			});
+		}
+	}
+
+	/**
+	 * @return <code>true</code> if the templates read at startup are warmed
+	 *         up
+	 */
+	public boolean isReady() {
+		return ready.getCount() == 0;
+	}
+
+	/**
+	 * Waits until the templates read at startup are warmed up.
+	 *
+	 * @return <code>true</code> if the warmer is ready, <code>false</code> if
+	 *         the timeout elapsed before
+	 */
+	public boolean awaitReady(long timeout, TimeUnit unit)
+			throws InterruptedException {
+		return ready.await(timeout, unit);
+	}
+
+	private List<Template<?>> select(Collection<? extends Template<?>> templates) {
+		List<Template<?>> selected = new ArrayList<Template<?>>();
+		for (Template<?> template : templates) {
+			if (select(template)) {
+				selected.add(template);
+			}
+		}
+		return selected;
+	}
+
+	private List<Template<?>> limitToCacheSize(List<Template<?>> selected) {
+		if (templateFileCache == null
+				|| selected.size() <= templateFileCache.getMaxEntries()) {
+			return selected;
+		}
+		logger.warn(
+				"{} templates selected for warm-up, only {} fit into the template file cache."
+						+ " Select the templates to warm up by their document names.",
+				selected.size(), templateFileCache.getMaxEntries());
+		return selected.subList(0, templateFileCache.getMaxEntries());
+	}
+
+	private boolean select(Template<?> template) {
+		return enabled
+				&& (documentNames == null || documentNames.contains(template
+						.getDocumentName()));
+	}
+
+	private void warmUpTemplate(Template<?> template) {
+		try {
+			template.toTestDocument(new NullOutputStream());
+			logger.debug("template {}_{} warmed up",
+					template.getDocumentName(), template.getLanguage());
+		} catch (Exception e) {
+			logger.warn("template {}_{} could not be warmed up",
+					template.getDocumentName(), template.getLanguage(), e);
+		}
+	}
+
+	private void logProgress(int count, int total) {
+		int step = Math.max(1, total / 10);
+		if (count % step == 0 && count < total) {
+			logger.info("{} of {} templates warmed up", count, total);
+		}
+	}
+
+	private void markReady(int count, long start) {
+		if (!isReady()) {
+			ready.countDown();
+			logger.info("{} templates warmed up in {} ms", count,
+					System.currentTimeMillis() - start);
+		}
+	}
+
+	public boolean isEnabled() {
+		return enabled;
+	}
+
+	/**
+	 * @param enabled
+	 *            - if <code>false</code> no template is warmed up and the
+	 *            warmer is ready at once
+	 */
+	public void setEnabled(boolean enabled) {
+		this.enabled = enabled;
+	}
+
+	/**
+	 * Restricts the warm-up to templates with the given document names. The
+	 * selection should contain the templates that matter most and should fit
+	 * into the template file cache, otherwise only as many templates as the
+	 * cache holds are warmed up at startup.
+	 *
+	 * @param documentNames
+	 *            - the document names or <code>null</code> to warm up all
+	 *            templates
+	 */
+	public void setDocumentNames(Collection<String> documentNames) {
+		this.documentNames = documentNames != null ? new HashSet<String>(
+				documentNames) : null;
+	}
+
+	public void setTemplateFileCache(TemplateFileCache templateFileCache) {
+		this.templateFileCache = templateFileCache;
+	}
+
+	/**
+	 * Sets the number of threads warming up templates, the default is the
+	 * number of processors. Has no effect if an executor is set or the
+	 * threads have already been started.
+	 */
+	public void setThreads(int threads) {
+		this.threads = threads;
+	}
+
+	/**
+	 * Sets the executor warming up the templates instead of the own threads.
+	 */
+	public synchronized void setExecutor(Executor executor) {
+		this.executor = executor;
+	}
+
+	private synchronized Executor getExecutor() {
+		if (executor == null) {
+			ThreadPoolExecutor pool = new ThreadPoolExecutor(threads, threads,
+					60, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(),
+					new CustomizableThreadFactory("wte4j-warmup-"));
+			pool.allowCoreThreadTimeOut(true);
+			ownExecutor = pool;
+			executor = pool;
+		}
+		return executor;
+	}
+
+	/**
+	 * Stops the threads warming up templates. Templates already submitted are
+	 * still warmed up.
+	 */
+	@PreDestroy
+	public synchronized void shutdown() {
+		if (ownExecutor != null) {
+			ownExecutor.shutdown();
+			ownExecutor = null;
+			executor = null;
+		}
+	}
+}
@@ -15,7 +15,6 @@
  */
 package org.wte4j.impl;
 
-import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
@@ -27,13 +26,14 @@ import java.util.Map;
 
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.IOUtils;
-import org.docx4j.fonts.PhysicalFonts;
 import org.wte4j.InvalidTemplateException;
 import org.wte4j.LockingException;
 import org.wte4j.MappingDetail;
 import org.wte4j.Template;
 import org.wte4j.User;
 import org.wte4j.WteException;
+import org.wte4j.impl.cache.TemplateFileCache;
+import org.wte4j.impl.word.PdfConverter;
 import org.wte4j.impl.word.WordTemplateFile;
 
 /**
@@ -45,57 +45,99 @@ import org.wte4j.impl.word.WordTemplateFile;
 public class WordTemplate<E> implements Template<E> {
 	private PersistentTemplate persistentData;
 	private TemplateContextFactory contextFactory;
-	private WordTemplateFile document;
+	private TemplateFileCache templateFileCache;
+	private PdfConverter pdfConverter;
+	private volatile WordTemplateFile document;
 
 	public WordTemplate(PersistentTemplate template, TemplateContextFactory contextFactory) {
+		this(template, contextFactory, null);
+	}
+
+	/**
+	 * @param templateFileCache
+	 *            - cache to lookup the parsed document of the template, may be
+	 *            <code>null</code>
+	 */
+	public WordTemplate(PersistentTemplate template, TemplateContextFactory contextFactory,
+			TemplateFileCache templateFileCache) {
 		this.persistentData = template;
 		this.contextFactory = contextFactory;
+		this.templateFileCache = templateFileCache;
+	}
+
+	/**
+	 * @param pdfConverter
+	 *            - converter for PDF documents, a shared default converter is
+	 *            used if <code>null</code>
+	 */
+	public WordTemplate(PersistentTemplate template, TemplateContextFactory contextFactory,
+			TemplateFileCache templateFileCache, PdfConverter pdfConverter) {
+		this(template, contextFactory, templateFileCache);
+		this.pdfConverter = pdfConverter;
 	}
 
 	@Override
 	public void toDocument(E data, OutputStream out) throws IOException,
 			InvalidTemplateException {
-		prepareDocument();
 		TemplateContext<E> context = contextFactory.createTemplateContext(this);
 		context.bind(data);
-		document.updateDynamicContent(context);
-		document.writeAsOpenXML(out);
+		getDocument().writeDocument(context, out);
+	}
+
+	/**
+	 * Returns the parsed template document. The document is shared by all
+	 * threads rendering this template and must not be modified, documents are
+	 * generated from the compiled document or on working copies (
+	 * {@link WordTemplateFile#writeDocument(TemplateContext, OutputStream)}).
+	 */
+	private WordTemplateFile getDocument() {
+		WordTemplateFile current = document;
+		if (current == null) {
+			synchronized (this) {
+				if (document == null) {
+					document = loadDocument();
+				}
+				current = document;
+			}
+		}
+		return current;
 	}
 
-	private void prepareDocument() {
-		if (document == null) {
-			try {
-				document = createDocument(persistentData.getContent());
-			} catch (IOException e) {
-				throw new WteException(e);
+	private WordTemplateFile loadDocument() {
+		try {
+			if (templateFileCache != null) {
+				return templateFileCache.getTemplateFile(persistentData);
 			}
+			return createDocument(persistentData.getContent());
+		} catch (IOException e) {
+			throw new WteException(e);
 		}
 	}
 
 	private WordTemplateFile createDocument(byte[] content)
 			throws IOException {
-		return new WordTemplateFile(new ByteArrayInputStream(content));
+		return new WordTemplateFile(content);
 	}
 
 	@Override
 	public void toTestDocument(OutputStream out)
 			throws InvalidTemplateException, IOException {
 		TemplateContext<E> context = contextFactory.createTemplateContext(this);
-		prepareDocument();
-		document.updateDynamicContent(context);
-		document.writeAsOpenXML(out);
+		getDocument().writeDocument(context, out);
 	}
 	
 	@Override
 	public void toPDFDocument(E data, OutputStream out) throws IOException {
-        PhysicalFonts.setRegex(null);
-        
-        prepareDocument();
-        TemplateContext<E> context = contextFactory.createTemplateContext(this);
-        context.bind(data);
-        document.updateDynamicContent(context);
-        document.writeAsPDF(out);
-}
+		WordTemplateFile workingCopy = getDocument().createWorkingCopy();
+		TemplateContext<E> context = contextFactory.createTemplateContext(this);
+		context.bind(data);
+		workingCopy.updateDynamicContent(context);
+		if (pdfConverter != null) {
+			workingCopy.writeAsPDF(out, pdfConverter);
+		} else {
+			workingCopy.writeAsPDF(out);
+		}
+	}
 
 
 	@Override
@@ -155,14 +197,12 @@ public class WordTemplate<E> implements Template<E> {
 
 	@Override
 	public List<String> listContentIds() {
-		prepareDocument();
-		return document.listContentIds();
+		return getDocument().listContentIds();
 	}
 
 	@Override
 	public void validate() throws InvalidTemplateException {
-		prepareDocument();
-		document.validate(contextFactory.createTemplateContext(this));
+		getDocument().validate(contextFactory.createTemplateContext(this));
 	}
 
 	@Override
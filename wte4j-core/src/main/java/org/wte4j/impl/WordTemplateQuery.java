@@ -17,129 +17,508 @@ package org.wte4j.impl;
 
 import java.util.ArrayList;
 import java.util.Collection;
-import java.util.LinkedList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
 import javax.persistence.EntityManager;
+import javax.persistence.Tuple;
 import javax.persistence.TypedQuery;
+import javax.persistence.criteria.AbstractQuery;
 import javax.persistence.criteria.CriteriaBuilder;
 import javax.persistence.criteria.CriteriaQuery;
 import javax.persistence.criteria.JoinType;
 import javax.persistence.criteria.MapJoin;
+import javax.persistence.criteria.Order;
 import javax.persistence.criteria.Path;
 import javax.persistence.criteria.Predicate;
 import javax.persistence.criteria.Root;
 import javax.persistence.criteria.Subquery;
 
+import org.wte4j.MappingDetail;
+import org.wte4j.PagedTemplateQuery;
 import org.wte4j.Template;
-import org.wte4j.TemplateQuery;
+import org.wte4j.TemplateMetadata;
+import org.wte4j.User;
+
+public class WordTemplateQuery implements PagedTemplateQuery {
+	/**
+	 * Maximal number of ids or digests in the in-clause used to load the
+	 * collections of a page of templates or their content.
+	 */
+	private static final int MAX_IDS_PER_STATEMENT = 500;
 
-public class WordTemplateQuery implements TemplateQuery {
 	private final WordTemplateRepository repository;
 	private final CriteriaBuilder criteriaBuilder;
-	private final CriteriaQuery<PersistentTemplate> query;
-	private final Root<PersistentTemplate> persistentTemplate;
-	private final Collection<Predicate> restrictions;
+	private final Collection<Restriction> restrictions;
+	private final List<Sorting> sortings = new ArrayList<Sorting>();
+	private TemplateFetchPlan fetchPlan = TemplateFetchPlan.FULL;
+	private int offset = 0;
+	private int limit = -1;
 
 	public WordTemplateQuery(WordTemplateRepository aRepository,
 			CriteriaBuilder aCriteriaBuilder) {
 		repository = aRepository;
 		criteriaBuilder = aCriteriaBuilder;
-		query = criteriaBuilder.createQuery(PersistentTemplate.class);
-		persistentTemplate = query.from(PersistentTemplate.class);
-		restrictions = new ArrayList<Predicate>();
+		restrictions = new ArrayList<Restriction>();
 	}
 
 	public WordTemplateQuery documentName(String name) {
-		equal(persistentTemplate.get("documentName"), name);
+		equal(name, "documentName");
 		return this;
 	}
 
 	public WordTemplateQuery language(String language) {
-		equal(persistentTemplate.get("language"), language);
+		equal(language, "language");
 		return this;
 	}
 
 	public WordTemplateQuery inputType(Class<?> clazz) {
-		equal(persistentTemplate.get("inputClassName"), clazz.getName());
+		equal(clazz.getName(), "inputClassName");
 		return this;
 	}
 
-	public WordTemplateQuery hasProperties(Map<String, String> someProperties) {
+	/**
+	 * Restricts the query to templates having all the given properties. The
+	 * first key/value pair is looked up by the index on (property_key,
+	 * property_value), the others are checked per candidate template by its
+	 * id, so the first pair should be the most selective one. Neither needs
+	 * to group and count the whole properties table.
+	 */
+	public WordTemplateQuery hasProperties(
+			final Map<String, String> someProperties) {
+		boolean first = true;
+		for (final Map.Entry<String, String> entry : someProperties.entrySet()) {
+			final boolean lookup = first;
+			restrictions.add(new Restriction() {
+
+				@Override
+				public Predicate toPredicate(Root<PersistentTemplate> template,
+						AbstractQuery<?> query) {
+					if (lookup) {
+						return template.get("id").in(
+								selectIdsWithProperty(query, entry.getKey(),
+										entry.getValue()));
+					}
+					return criteriaBuilder.exists(selectProperty(query,
+							template, entry.getKey(), entry.getValue()));
+				}
+			});
+			first = false;
+		}
+		return this;
+	}
+
+	private Subquery<Long> selectIdsWithProperty(AbstractQuery<?> query,
+			String key, String value) {
 		Subquery<Long> subQuery = query.subquery(Long.class);
 		Root<PersistentTemplate> fromSubQuery = subQuery
 				.from(PersistentTemplate.class);
-		Path<Long> id = fromSubQuery.get("id");
-		subQuery.select(id);
 		MapJoin<PersistentTemplate, String, String> propertiesMap = fromSubQuery
 				.joinMap("properties", JoinType.INNER);
-		subQuery.where(buildPropertyRestriction(propertiesMap, someProperties));
-		subQuery.groupBy(id);
-		subQuery.having(criteriaBuilder.equal(criteriaBuilder.count(id),
-				someProperties.size()));
-		restrictions.add(persistentTemplate.get("id").in(subQuery));
-		return this;
+		subQuery.select(fromSubQuery.<Long> get("id"));
+		subQuery.where(propertyEquals(propertiesMap, key, value));
+		return subQuery;
 	}
 
-	private Predicate buildPropertyRestriction(
+	private Subquery<String> selectProperty(AbstractQuery<?> query,
+			Root<PersistentTemplate> template, String key, String value) {
+		Subquery<String> subQuery = query.subquery(String.class);
+		Root<PersistentTemplate> correlated = subQuery.correlate(template);
+		MapJoin<PersistentTemplate, String, String> propertiesMap = correlated
+				.joinMap("properties", JoinType.INNER);
+		subQuery.select(propertiesMap.key());
+		subQuery.where(propertyEquals(propertiesMap, key, value));
+		return subQuery;
+	}
+
+	private Predicate propertyEquals(
 			MapJoin<PersistentTemplate, String, String> propertiesMap,
-			Map<String, String> someProperties) {
-		Path<?> keyPath = propertiesMap.key();
-		Path<?> valuePath = propertiesMap.value();
-		List<Predicate> keyValuePairs = new LinkedList<Predicate>();
-		for (Map.Entry<String, String> entry : someProperties.entrySet()) {
-			Predicate keyPredicate = criteriaBuilder.equal(keyPath,
-					entry.getKey());
-			Predicate valuePredicate = criteriaBuilder.equal(valuePath,
-					entry.getValue());
-			Predicate keyValuePair = criteriaBuilder.and(keyPredicate,
-					valuePredicate);
-			keyValuePairs.add(keyValuePair);
-		}
-		return criteriaBuilder.or(keyValuePairs
-				.toArray(new Predicate[keyValuePairs.size()]));
+			String key, String value) {
+		return criteriaBuilder.and(
+				criteriaBuilder.equal(propertiesMap.key(), key),
+				criteriaBuilder.equal(propertiesMap.value(), value));
 	}
 
 	public WordTemplateQuery editor(String userId) {
-		Path<?> pathEditorId = persistentTemplate.get("editor").get("userId");
-		equal(pathEditorId, userId);
+		equal(userId, "editor", "userId");
 		return this;
 	}
 
-	public WordTemplateQuery isLocked(boolean locked) {
-		Predicate restriction = null;
-		Path<?> path = persistentTemplate.get("lockingDate");
-		if (locked) {
-			restriction = criteriaBuilder.isNotNull(path);
-		} else {
-			restriction = criteriaBuilder.isNull(path);
-		}
-		restrictions.add(restriction);
+	public WordTemplateQuery isLocked(final boolean locked) {
+		restrictions.add(new Restriction() {
+
+			@Override
+			public Predicate toPredicate(Root<PersistentTemplate> template,
+					AbstractQuery<?> query) {
+				Path<?> path = template.get("lockingDate");
+				if (locked) {
+					return criteriaBuilder.isNotNull(path);
+				}
+				return criteriaBuilder.isNull(path);
+			}
+		});
 		return this;
 	}
 
 	public WordTemplateQuery isLockedBy(String userId) {
-		Path<?> lockingUserId = persistentTemplate.get("lockingUser").get(
-				"userId");
-		equal(lockingUserId, userId);
+		equal(userId, "lockingUser", "userId");
+		return this;
+	}
+
+	@Override
+	public WordTemplateQuery orderBy(SortKey key, boolean ascending) {
+		sortings.add(new Sorting(key, ascending));
+		return this;
+	}
+
+	@Override
+	public WordTemplateQuery offset(int anOffset) {
+		if (anOffset < 0) {
+			throw new IllegalArgumentException("offset must not be negative");
+		}
+		offset = anOffset;
+		return this;
+	}
+
+	@Override
+	public WordTemplateQuery limit(int aLimit) {
+		if (aLimit < 0) {
+			throw new IllegalArgumentException("limit must not be negative");
+		}
+		limit = aLimit;
 		return this;
 	}
 
-	void equal(Path<?> path, Object value) {
-		Predicate restriction = criteriaBuilder.equal(path, value);
-		restrictions.add(restriction);
+	void equal(final Object value, final String... attributePath) {
+		restrictions.add(new Restriction() {
+
+			@Override
+			public Predicate toPredicate(Root<PersistentTemplate> template,
+					AbstractQuery<?> query) {
+				Path<?> path = template;
+				for (String attribute : attributePath) {
+					path = path.get(attribute);
+				}
+				return criteriaBuilder.equal(path, value);
+			}
+		});
+	}
+
+	private void applyRestrictions(AbstractQuery<?> query,
+			Root<PersistentTemplate> template) {
+		List<Predicate> predicates = new ArrayList<Predicate>(
+				restrictions.size());
+		for (Restriction restriction : restrictions) {
+			predicates.add(restriction.toPredicate(template, query));
+		}
+		query.where(predicates.toArray(new Predicate[predicates.size()]));
+	}
+
+	/**
+	 * Sorts by the sort keys of this query. The id is added as last key, so
+	 * pages of a paged query do not overlap.
+	 */
+	private void applyOrder(CriteriaQuery<?> query,
+			Root<PersistentTemplate> template) {
+		List<Order> orders = new ArrayList<Order>();
+		for (Sorting sorting : sortings) {
+			Path<?> path = sorting.getPath(template);
+			if (sorting.ascending) {
+				orders.add(criteriaBuilder.asc(path));
+			} else {
+				orders.add(criteriaBuilder.desc(path));
+			}
+		}
+		if (!orders.isEmpty() || isPaged()) {
+			orders.add(criteriaBuilder.asc(template.get("id")));
+			query.orderBy(orders);
+		}
+	}
+
+	private boolean isPaged() {
+		return offset > 0 || limit >= 0;
+	}
+
+	private <T> TypedQuery<T> createPagedQuery(EntityManager entityManager,
+			CriteriaQuery<T> query) {
+		TypedQuery<T> executableQuery = entityManager.createQuery(query);
+		if (offset > 0) {
+			executableQuery.setFirstResult(offset);
+		}
+		if (limit >= 0) {
+			executableQuery.setMaxResults(limit);
+		}
+		return executableQuery;
+	}
+
+	/**
+	 * Sets the parts of the templates loaded by {@link #list()}. The default
+	 * is {@link TemplateFetchPlan#FULL}.
+	 */
+	WordTemplateQuery fetchPlan(TemplateFetchPlan aFetchPlan) {
+		fetchPlan = aFetchPlan;
+		return this;
 	}
 
 	List<PersistentTemplate> list(EntityManager entityManager) {
-		query.where(restrictions.toArray(new Predicate[restrictions.size()]));
-		TypedQuery<PersistentTemplate> executableQuery = entityManager
-				.createQuery(query);
-		return executableQuery.getResultList();
+		return load(entityManager, fetchPlan);
+	}
+
+	List<TemplateMetadata> listMetadata(EntityManager entityManager) {
+		return new ArrayList<TemplateMetadata>(load(entityManager,
+				TemplateFetchPlan.METADATA));
+	}
+
+	long count(EntityManager entityManager) {
+		CriteriaQuery<Long> query = criteriaBuilder.createQuery(Long.class);
+		Root<PersistentTemplate> template = query
+				.from(PersistentTemplate.class);
+		query.select(criteriaBuilder.count(template));
+		applyRestrictions(query, template);
+		return entityManager.createQuery(query).getSingleResult();
+	}
+
+	/**
+	 * Loads the matching templates with one statement for the templates, one
+	 * for their shared content if the plan includes it and one for each of
+	 * the properties and the content mapping of all templates. The
+	 * collections of a paged query are selected by the ids of the page. The
+	 * returned templates are not managed by the entity manager.
+	 */
+	private List<PersistentTemplate> load(EntityManager entityManager,
+			TemplateFetchPlan plan) {
+		Map<Long, PersistentTemplate> templates;
+		if (plan.includesContent()) {
+			templates = selectTemplates(entityManager);
+			loadContent(entityManager, templates.values());
+		} else {
+			templates = selectTemplateColumns(entityManager);
+		}
+		if (templates.isEmpty()) {
+			return new ArrayList<PersistentTemplate>();
+		}
+		for (PersistentTemplate template : templates.values()) {
+			template.setProperties(new HashMap<String, String>());
+			template.setContentMapping(new HashMap<String, MappingDetail>());
+		}
+		if (isPaged()) {
+			List<Long> ids = new ArrayList<Long>(templates.keySet());
+			for (int i = 0; i < ids.size(); i += MAX_IDS_PER_STATEMENT) {
+				List<Long> idsOfStatement = ids.subList(i,
+						Math.min(ids.size(), i + MAX_IDS_PER_STATEMENT));
+				loadCollections(entityManager, templates, idsOfStatement);
+			}
+		} else {
+			loadCollections(entityManager, templates, null);
+		}
+		return new ArrayList<PersistentTemplate>(templates.values());
+	}
+
+	private void loadCollections(EntityManager entityManager,
+			Map<Long, PersistentTemplate> templates, Collection<Long> ids) {
+		for (Tuple row : selectProperties(entityManager, ids)) {
+			PersistentTemplate template = templates.get(row.get(0, Long.class));
+			if (template != null) {
+				template.getProperties().put(row.get(1, String.class),
+						row.get(2, String.class));
+			}
+		}
+		for (Tuple row : selectContentMapping(entityManager, ids)) {
+			PersistentTemplate template = templates.get(row.get(0, Long.class));
+			if (template != null) {
+				MappingDetail detail = new MappingDetail();
+				detail.setModelKey(row.get(2, String.class));
+				detail.setFormatterDefinition(row.get(3, String.class));
+				template.getContentMapping().put(row.get(1, String.class),
+						detail);
+			}
+		}
+	}
+
+	/**
+	 * Sets the shared content of the templates. Each distinct digest is
+	 * selected once, templates with equal content share the same array.
+	 */
+	private void loadContent(EntityManager entityManager,
+			Collection<PersistentTemplate> templates) {
+		Map<String, List<PersistentTemplate>> templatesByDigest = new HashMap<String, List<PersistentTemplate>>();
+		for (PersistentTemplate template : templates) {
+			String digest = template.getContentDigest();
+			if (template.getContent() == null && digest != null) {
+				List<PersistentTemplate> sharing = templatesByDigest.get(digest);
+				if (sharing == null) {
+					sharing = new ArrayList<PersistentTemplate>();
+					templatesByDigest.put(digest, sharing);
+				}
+				sharing.add(template);
+			}
+		}
+		List<String> digests = new ArrayList<String>(templatesByDigest.keySet());
+		for (int i = 0; i < digests.size(); i += MAX_IDS_PER_STATEMENT) {
+			CriteriaQuery<PersistentContent> query = criteriaBuilder
+					.createQuery(PersistentContent.class);
+			Root<PersistentContent> content = query
+					.from(PersistentContent.class);
+			query.where(content.get("digest").in(
+					digests.subList(i, Math.min(digests.size(), i
+							+ MAX_IDS_PER_STATEMENT))));
+			for (PersistentContent stored : entityManager.createQuery(query)
+					.getResultList()) {
+				for (PersistentTemplate template : templatesByDigest
+						.get(stored.getDigest())) {
+					template.setStoredContent(stored.getContent());
+				}
+				entityManager.detach(stored);
+			}
+		}
+	}
+
+	/**
+	 * Selects the template entities and copies them without their lazy element
+	 * collections, which are filled by the caller.
+	 */
+	private Map<Long, PersistentTemplate> selectTemplates(
+			EntityManager entityManager) {
+		CriteriaQuery<PersistentTemplate> query = criteriaBuilder
+				.createQuery(PersistentTemplate.class);
+		Root<PersistentTemplate> template = query
+				.from(PersistentTemplate.class);
+		applyRestrictions(query, template);
+		applyOrder(query, template);
+
+		Map<Long, PersistentTemplate> templates = new LinkedHashMap<Long, PersistentTemplate>();
+		for (PersistentTemplate entity : createPagedQuery(entityManager, query)
+				.getResultList()) {
+			templates.put(entity.getId(), entity.copyColumns());
+		}
+		return templates;
+	}
+
+	/**
+	 * Selects all template columns but the content. The content digest is
+	 * selected, so the content can be loaded on demand.
+	 */
+	private Map<Long, PersistentTemplate> selectTemplateColumns(
+			EntityManager entityManager) {
+		CriteriaQuery<Tuple> query = criteriaBuilder.createTupleQuery();
+		Root<PersistentTemplate> template = query
+				.from(PersistentTemplate.class);
+		query.multiselect(template.get("id"), template.get("version"),
+				template.get("documentName"), template.get("language"),
+				template.get("inputClassName"), template.get("createdAt"),
+				template.get("editedAt"), template.get("editor").get("userId"),
+				template.get("editor").get("displayName"),
+				template.get("lockingDate"),
+				template.get("lockingUser").get("userId"),
+				template.get("lockingUser").get("displayName"),
+				template.get("contentDigest"));
+		applyRestrictions(query, template);
+		applyOrder(query, template);
+
+		Map<Long, PersistentTemplate> templates = new LinkedHashMap<Long, PersistentTemplate>();
+		for (Tuple row : createPagedQuery(entityManager, query).getResultList()) {
+			PersistentTemplate entry = new PersistentTemplate();
+			entry.setId(row.get(0, Long.class));
+			entry.setVersion(row.get(1, Long.class));
+			entry.setDocumentName(row.get(2, String.class));
+			entry.setLanguage(row.get(3, String.class));
+			entry.setInputClassName(row.get(4, String.class));
+			entry.setCreatedAt(row.get(5, Date.class));
+			entry.setEditedAt(row.get(6, Date.class));
+			entry.setEditor(new User(row.get(7, String.class), row.get(8,
+					String.class)));
+			entry.setLockingDate(row.get(9, Date.class));
+			String lockingUserId = row.get(10, String.class);
+			if (lockingUserId != null) {
+				entry.setLockingUser(new User(lockingUserId, row.get(11,
+						String.class)));
+			}
+			entry.setContentDigest(row.get(12, String.class));
+			templates.put(entry.getId(), entry);
+		}
+		return templates;
+	}
+
+	private List<Tuple> selectProperties(EntityManager entityManager,
+			Collection<Long> ids) {
+		CriteriaQuery<Tuple> query = criteriaBuilder.createTupleQuery();
+		Root<PersistentTemplate> template = query
+				.from(PersistentTemplate.class);
+		MapJoin<PersistentTemplate, String, String> properties = template
+				.joinMap("properties", JoinType.INNER);
+		query.multiselect(template.get("id"), properties.key(),
+				properties.value());
+		restrictCollectionQuery(query, template, ids);
+		return entityManager.createQuery(query).getResultList();
+	}
+
+	private List<Tuple> selectContentMapping(EntityManager entityManager,
+			Collection<Long> ids) {
+		CriteriaQuery<Tuple> query = criteriaBuilder.createTupleQuery();
+		Root<PersistentTemplate> template = query
+				.from(PersistentTemplate.class);
+		MapJoin<PersistentTemplate, String, MappingDetail> mapping = template
+				.joinMap("contentMapping", JoinType.INNER);
+		query.multiselect(template.get("id"), mapping.key(),
+				mapping.get("modelKey"), mapping.get("formatterDefinition"));
+		restrictCollectionQuery(query, template, ids);
+		return entityManager.createQuery(query).getResultList();
+	}
+
+	private void restrictCollectionQuery(CriteriaQuery<?> query,
+			Root<PersistentTemplate> template, Collection<Long> ids) {
+		if (ids != null) {
+			query.where(template.get("id").in(ids));
+		} else {
+			applyRestrictions(query, template);
+		}
 	}
 
 	@Override
 	public List<Template<Object>> list() {
 		return repository.execute(this);
 	}
+
+	@Override
+	public List<TemplateMetadata> listMetadata() {
+		return repository.executeMetadata(this);
+	}
+
+	@Override
+	public long count() {
+		return repository.executeCount(this);
+	}
+
+	private interface Restriction {
+		Predicate toPredicate(Root<PersistentTemplate> template,
+				AbstractQuery<?> query);
+	}
+
+	private static class Sorting {
+		private final SortKey key;
+		private final boolean ascending;
+
+		Sorting(SortKey key, boolean ascending) {
+			this.key = key;
+			this.ascending = ascending;
+		}
+
+		Path<?> getPath(Root<PersistentTemplate> template) {
+			switch (key) {
+			case DOCUMENT_NAME:
+				return template.get("documentName");
+			case LANGUAGE:
+				return template.get("language");
+			case EDITED_AT:
+				return template.get("editedAt");
+			case EDITOR:
+				return template.get("editor").get("displayName");
+			default:
+				throw new IllegalArgumentException("unknown sort key " + key);
+			}
+		}
+	}
 }
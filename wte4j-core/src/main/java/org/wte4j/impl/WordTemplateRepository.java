@@ -15,34 +15,94 @@
  */
 package org.wte4j.impl;
 
+import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.sql.Blob;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Savepoint;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
+import javax.annotation.PreDestroy;
 import javax.persistence.EntityManager;
-import javax.persistence.NoResultException;
 import javax.persistence.OptimisticLockException;
 import javax.persistence.PersistenceContext;
-import javax.persistence.TypedQuery;
+import javax.persistence.PersistenceException;
 
 import org.apache.commons.io.IOUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationListener;
+import org.springframework.context.event.ContextRefreshedEvent;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
 import org.springframework.stereotype.Repository;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 import org.wte4j.FileStore;
 import org.wte4j.LockingException;
+import org.wte4j.ReadableFileStore;
 import org.wte4j.Template;
 import org.wte4j.TemplateExistException;
+import org.wte4j.TemplateMetadata;
 import org.wte4j.TemplateQuery;
 import org.wte4j.TemplateRepository;
 import org.wte4j.User;
+import org.wte4j.WteException;
+import org.wte4j.impl.cache.TemplateFileCache;
+import org.wte4j.impl.cache.TemplateIndex;
+import org.wte4j.impl.word.PdfConverter;
 
 @Repository
 @Transactional("wte4j")
-public class WordTemplateRepository implements TemplateRepository {
+public class WordTemplateRepository implements TemplateRepository,
+		ApplicationListener<ContextRefreshedEvent> {
+
+	private static final String LOCK_STATEMENT = "UPDATE PersistentTemplate t"
+			+ " SET t.lockingUser.userId = :userId, t.lockingUser.displayName = :displayName,"
+			+ " t.lockingDate = :lockingDate, t.version = t.version + 1"
+			+ " WHERE t.id = :id AND t.version = :version"
+			+ " AND (t.lockingUser.userId IS NULL OR t.lockingUser.userId = :userId)";
+
+	private static final String UNLOCK_STATEMENT = "UPDATE PersistentTemplate t"
+			+ " SET t.lockingUser.userId = NULL, t.lockingUser.displayName = NULL,"
+			+ " t.lockingDate = NULL, t.version = t.version + 1"
+			+ " WHERE t.id = :id AND t.version = :version";
+
+	private static final String SELECT_CONTENT_DIGEST = "SELECT t.contentDigest"
+			+ " FROM PersistentTemplate t WHERE t.id = :id";
+
+	// JPQL can not project the byte array of the content column
+	private static final String SELECT_LEGACY_CONTENT = "SELECT content"
+			+ " FROM wte4j_template WHERE id = ?";
+
+	private static final String ADD_CONTENT_REFERENCE = "UPDATE PersistentContent c"
+			+ " SET c.referenceCount = c.referenceCount + 1 WHERE c.digest = :digest";
+
+	private static final String INSERT_CONTENT = "INSERT INTO wte4j_template_content"
+			+ " (digest, content, reference_count) VALUES (?, ?, 1)";
+
+	private static final int MAX_CONTENT_INSERTS = 3;
+
+	private static final String RELEASE_CONTENT_REFERENCE = "UPDATE PersistentContent c"
+			+ " SET c.referenceCount = c.referenceCount - 1 WHERE c.digest = :digest";
+
+	private static final String DELETE_UNREFERENCED_CONTENT = "DELETE FROM PersistentContent c"
+			+ " WHERE c.digest = :digest AND c.referenceCount <= 0";
 
 	private Logger logger = LoggerFactory.getLogger(getClass());
 
@@ -54,6 +114,24 @@ public class WordTemplateRepository implements TemplateRepository {
 	@Autowired(required = false)
 	protected FileStore fileStore;
 
+	@Autowired(required = false)
+	protected TemplateFileCache templateFileCache;
+
+	@Autowired(required = false)
+	protected PdfConverter pdfConverter;
+
+	@Autowired(required = false)
+	protected TemplateIndex templateIndex;
+
+	@Autowired(required = false)
+	protected TemplateWarmer templateWarmer;
+
+	private final ContentLoader contentLoader = new StoredContentLoader();
+
+	private Executor fileStoreExecutor;
+	private ExecutorService ownFileStoreExecutor;
+	private boolean storeFilesByDigest;
+
 	protected WordTemplateRepository() {
 	}
 
@@ -67,6 +145,54 @@ public class WordTemplateRepository implements TemplateRepository {
 		this.fileStore = fileStore;
 	}
 
+	public void setTemplateFileCache(TemplateFileCache templateFileCache) {
+		this.templateFileCache = templateFileCache;
+	}
+
+	/**
+	 * Sets the executor writing to the file store after a commit. The
+	 * executor must run the tasks in the order they are submitted, otherwise
+	 * an older content could overwrite a newer one. By default a single
+	 * thread is used.
+	 */
+	public synchronized void setFileStoreExecutor(Executor fileStoreExecutor) {
+		this.fileStoreExecutor = fileStoreExecutor;
+	}
+
+	public boolean isStoreFilesByDigest() {
+		return storeFilesByDigest;
+	}
+
+	/**
+	 * Sets the layout of the file store. By default the files are named by
+	 * the template (see {@link PersistentTemplate#getTemplateFileName()}) and
+	 * only written. Named by digest (see
+	 * {@link PersistentContent#fileName(String)}) a file never changes once
+	 * written and is shared by templates with identical content, the content
+	 * of a template is then read from a {@link ReadableFileStore} before it is
+	 * read from the database.
+	 * <p>
+	 * Existing files are not renamed. When switching a store to the digest
+	 * layout, templates whose file is missing are read from the database and
+	 * their files are written by digest when they are persisted again; the
+	 * files named by template can be removed.
+	 */
+	public void setStoreFilesByDigest(boolean storeFilesByDigest) {
+		this.storeFilesByDigest = storeFilesByDigest;
+	}
+
+	public void setTemplateIndex(TemplateIndex templateIndex) {
+		this.templateIndex = templateIndex;
+	}
+
+	public void setTemplateWarmer(TemplateWarmer templateWarmer) {
+		this.templateWarmer = templateWarmer;
+	}
+
+	public void setPdfConverter(PdfConverter pdfConverter) {
+		this.pdfConverter = pdfConverter;
+	}
+
 	@Override
 	public TemplateQuery queryTemplates() {
 		return new WordTemplateQuery(this, em.getCriteriaBuilder());
@@ -74,79 +200,241 @@ public class WordTemplateRepository implements TemplateRepository {
 
 	@Override
 	public Template<Object> getTemplate(String documentName, String language) {
-		try {
-			PersistentTemplate persistentTemplate = getPersistentTemplate(
-					documentName, language);
-			return new WordTemplate<Object>(persistentTemplate,
-					contextFactory);
-		} catch (NoResultException e) {
+		PersistentTemplate persistentTemplate = getPersistentTemplate(
+				documentName, language);
+		if (persistentTemplate == null) {
 			return null;
 		}
+		return wrap(persistentTemplate);
 	}
 
 	@Override
 	public <E> Template<E> getTemplate(String documentName, String language,
 			Class<? extends E> inputType) throws IllegalArgumentException {
-		try {
-			PersistentTemplate persistentTemplate = getPersistentTemplate(
-					documentName, language);
-			if (!persistentTemplate.getInputType().isAssignableFrom(inputType)) {
-				throw new IllegalArgumentException(inputType.getName()
-						+ " is not suported by the specified template");
-			}
-			return new WordTemplate<E>(persistentTemplate,
-					contextFactory);
-		} catch (NoResultException e) {
+		PersistentTemplate persistentTemplate = getPersistentTemplate(
+				documentName, language);
+		if (persistentTemplate == null) {
 			return null;
 		}
+		if (!persistentTemplate.getInputType().isAssignableFrom(inputType)) {
+			throw new IllegalArgumentException(inputType.getName()
+					+ " is not suported by the specified template");
+		}
+		return wrap(persistentTemplate);
+	}
+
+	/**
+	 * Looks up a template in the index or reads it from the database. The
+	 * content is not read until it is needed.
+	 * 
+	 * @return the template or <code>null</code> if it does not exist
+	 */
+	private PersistentTemplate getPersistentTemplate(final String documentName,
+			final String language) {
+		boolean indexed = isIndexed(documentName, language);
+		if (indexed) {
+			TemplateIndex.Lookup lookup = templateIndex.lookup(documentName, language);
+			if (lookup != null) {
+				return withContentLoader(lookup.getTemplate());
+			}
+		}
+
+		List<PersistentTemplate> result = new WordTemplateQuery(this,
+				em.getCriteriaBuilder()).documentName(documentName)
+				.language(language).fetchPlan(TemplateFetchPlan.METADATA)
+				.list(em);
 
+		final PersistentTemplate template = result.isEmpty() ? null
+				: withContentLoader(result.get(0));
+		if (indexed) {
+			afterCommit(new Runnable() {
+				@Override
+				public void run() {
+					if (template != null) {
+						templateIndex.put(template);
+					} else {
+						templateIndex.putMissing(documentName, language);
+					}
+				}
+			});
+		}
+		return template;
 	}
 
-	private PersistentTemplate getPersistentTemplate(String documentName,
-			String language) throws NoResultException {
+	private boolean isIndexed(String documentName, String language) {
+		return templateIndex != null && documentName != null && language != null;
+	}
 
-		String queryString = "select t from PersistentTemplate t where t.documentName=:documentName "
-				+ "and t.language= :language";
-		TypedQuery<PersistentTemplate> query = em.createQuery(queryString,
-				PersistentTemplate.class);
-		query.setParameter("documentName", documentName);
-		query.setParameter("language", language);
-		return query.getSingleResult();
+	/**
+	 * Reads all templates into the index.
+	 */
+	public void loadIndex() {
+		if (templateIndex == null) {
+			return;
+		}
+		index(selectAllTemplates());
+	}
+
+	private List<PersistentTemplate> selectAllTemplates() {
+		List<PersistentTemplate> templates = new WordTemplateQuery(this,
+				em.getCriteriaBuilder()).fetchPlan(TemplateFetchPlan.METADATA)
+				.list(em);
+		for (PersistentTemplate template : templates) {
+			withContentLoader(template);
+		}
+		return templates;
+	}
+
+	private PersistentTemplate withContentLoader(PersistentTemplate template) {
+		if (template != null) {
+			template.setContentLoader(contentLoader);
+		}
+		return template;
+	}
+
+	private void index(List<PersistentTemplate> templates) {
+		for (final PersistentTemplate template : templates) {
+			afterCommit(new Runnable() {
+				@Override
+				public void run() {
+					templateIndex.put(template);
+				}
+			});
+		}
+		logger.debug("{} templates indexed", templates.size());
+	}
+
+	/**
+	 * Reads all templates once to index and warm them up. Refreshes of child
+	 * contexts are ignored.
+	 */
+	@Override
+	public void onApplicationEvent(ContextRefreshedEvent event) {
+		if (templateIndex == null && templateWarmer == null) {
+			return;
+		}
+		if (event.getApplicationContext().getParent() != null) {
+			return;
+		}
+		List<PersistentTemplate> templates;
+		try {
+			templates = selectAllTemplates();
+		} catch (PersistenceException e) {
+			logger.warn("templates could not be indexed", e);
+			if (templateWarmer != null) {
+				templateWarmer.warmUpAll(Collections.<Template<?>> emptyList());
+			}
+			return;
+		}
+		if (templateIndex != null) {
+			index(templates);
+		}
+		if (templateWarmer != null) {
+			warmUpAfterCommit(templates);
+		}
+	}
+
+	private void warmUpAfterCommit(List<PersistentTemplate> templates) {
+		final List<Template<Object>> wrapped = new ArrayList<Template<Object>>(
+				templates.size());
+		for (PersistentTemplate template : templates) {
+			wrapped.add(this.<Object> wrap(template));
+		}
+		afterCommit(new Runnable() {
+			@Override
+			public void run() {
+				templateWarmer.warmUpAll(wrapped);
+			}
+		});
+	}
+
+	/**
+	 * Warms up a persisted template after the commit. The template is copied,
+	 * as the warm-up runs after the persistence context has been closed.
+	 */
+	private void warmUpAfterCommit(PersistentTemplate template) {
+		if (templateWarmer == null) {
+			return;
+		}
+		final Template<Object> copy = wrap(template.detachedCopy());
+		afterCommit(new Runnable() {
+			@Override
+			public void run() {
+				templateWarmer.warmUp(copy);
+			}
+		});
 	}
 
 	@Override
 	public <E> Template<E> lockForEdit(Template<E> aTemplate, User user)
 			throws LockingException {
-		PersistentTemplate unwrapped = unwrap(aTemplate);
-		unwrapped.lock(user);
-		unwrapped = update(unwrapped);
-		return new WordTemplate<E>(unwrapped, contextFactory);
+		PersistentTemplate locked = copyForUpdate(unwrap(aTemplate));
+		locked.lock(user);
+		int updated = em.createQuery(LOCK_STATEMENT)
+				.setParameter("userId", user.getUserId())
+				.setParameter("displayName", user.getDisplayName())
+				.setParameter("lockingDate", locked.getLockingDate())
+				.setParameter("id", locked.getId())
+				.setParameter("version", locked.getVersion())
+				.executeUpdate();
+		return updatedLock(locked, updated);
 	}
 
 	@Override
 	public <E> Template<E> unlock(Template<E> template) {
-		PersistentTemplate unwrapped = unwrap(template);
-		unwrapped.unlock();
-		unwrapped = update(unwrapped);
-		return new WordTemplate<E>(unwrapped, contextFactory);
+		PersistentTemplate unlocked = copyForUpdate(unwrap(template));
+		unlocked.unlock();
+		int updated = em.createQuery(UNLOCK_STATEMENT)
+				.setParameter("id", unlocked.getId())
+				.setParameter("version", unlocked.getVersion())
+				.executeUpdate();
+		return updatedLock(unlocked, updated);
+	}
+
+	/**
+	 * Copies a template whose lock is changed by a bulk update. The template
+	 * is detached from the persistence context, as the bulk update bypasses
+	 * the context and would leave a managed instance stale.
+	 */
+	private PersistentTemplate copyForUpdate(PersistentTemplate template) {
+		PersistentTemplate copy = template.detachedCopy();
+		em.flush();
+		em.detach(em.getReference(PersistentTemplate.class, copy.getId()));
+		return copy;
+	}
+
+	private <E> Template<E> updatedLock(PersistentTemplate template,
+			int updatedRows) {
+		if (updatedRows == 0) {
+			evict(template);
+			throw new LockingException("Template has been locked");
+		}
+		template.setVersion(template.getVersion() + 1);
+		invalidateCache(template);
+		updateIndex(template);
+		return wrap(template);
 	}
 
 	@Override
 	public <E> Template<E> persist(Template<E> toPersist)
 			throws LockingException {
 
-		PersistentTemplate unwrapped = unwrap(toPersist);
+		PersistentTemplate unwrapped = withContentLoader(unwrap(toPersist));
 		if (unwrapped.getId() == null) {
 			persist(unwrapped);
 		} else {
 			unwrapped.unlock();
 			unwrapped = update(unwrapped);
 		}
-		if (isFileStoreSet()) {
-			updateFileStore(unwrapped);
+		invalidateCache(unwrapped);
+		updateIndex(unwrapped);
+		warmUpAfterCommit(unwrapped);
+		if (isFileStoreSet() && unwrapped.isContentLoaded()) {
+			// a content which was not loaded has not been changed
+			storeAfterCommit(unwrapped);
 		}
 
-		return new WordTemplate<E>(unwrapped, contextFactory);
+		return wrap(unwrapped);
 
 	}
 
@@ -157,8 +445,82 @@ public class WordTemplateRepository implements TemplateRepository {
 			throw new LockingException("Template is locked");
 		}
 		delete(unwrapped);
-		if (isFileStoreSet()) {
-			fileStore.deleteFile(unwrapped.getTemplateFileName());
+		invalidateCache(unwrapped);
+		removeFromIndex(unwrapped);
+		if (isFileStoreSet() && !storeFilesByDigest) {
+			deleteAfterCommit(unwrapped.getTemplateFileName());
+		}
+	}
+
+	private <E> WordTemplate<E> wrap(PersistentTemplate persistentTemplate) {
+		return new WordTemplate<E>(persistentTemplate, contextFactory,
+				templateFileCache, pdfConverter);
+	}
+
+	/**
+	 * Removes a template which was changed by an other transaction or node
+	 * from the index and the cache, so it is read again.
+	 */
+	private void evict(PersistentTemplate template) {
+		if (templateIndex != null) {
+			templateIndex.invalidate(template.getDocumentName(),
+					template.getLanguage());
+		}
+		invalidateCache(template);
+	}
+
+	private void invalidateCache(PersistentTemplate template) {
+		if (templateFileCache != null) {
+			templateFileCache.invalidate(template.getDocumentName(),
+					template.getLanguage());
+		}
+	}
+
+	/**
+	 * Removes a changed template from the index at once and indexes the
+	 * changed template when the transaction is committed.
+	 */
+	private void updateIndex(final PersistentTemplate template) {
+		if (templateIndex == null) {
+			return;
+		}
+		templateIndex.invalidate(template.getDocumentName(), template.getLanguage());
+		afterCommit(new Runnable() {
+			@Override
+			public void run() {
+				templateIndex.put(template);
+			}
+		});
+	}
+
+	private void removeFromIndex(final PersistentTemplate template) {
+		if (templateIndex == null) {
+			return;
+		}
+		templateIndex.invalidate(template.getDocumentName(), template.getLanguage());
+		afterCommit(new Runnable() {
+			@Override
+			public void run() {
+				templateIndex.putDeleted(template.getDocumentName(), template.getLanguage(), template.getVersion());
+			}
+		});
+	}
+
+	/**
+	 * Runs the action after the current transaction is committed, so the
+	 * index never contains uncommitted changes. Without a transaction the
+	 * action is run at once.
+	 */
+	private void afterCommit(final Runnable action) {
+		if (TransactionSynchronizationManager.isSynchronizationActive()) {
+			TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+				@Override
+				public void afterCommit() {
+					action.run();
+				}
+			});
+		} else {
+			action.run();
 		}
 	}
 
@@ -174,36 +536,187 @@ public class WordTemplateRepository implements TemplateRepository {
 					+ toPersist.getDocumentName() + " and language="
 					+ toPersist.getLanguage() + " allready exists");
 		}
+		if (toPersist.getContentDigest() != null) {
+			addContentReference(toPersist.getContentDigest(),
+					toPersist.getContent());
+		}
 		em.persist(toPersist);
 		em.flush();
 	}
 
 	private PersistentTemplate update(PersistentTemplate toUpdate) {
 		try {
+			String storedDigest = selectContentDigest(toUpdate.getId());
+			String digest = toUpdate.getContentDigest();
+			boolean contentChanged = digest != null
+					&& !digest.equals(storedDigest);
+			if (contentChanged) {
+				addContentReference(digest, toUpdate.getContent());
+			}
 			PersistentTemplate updated = em.merge(toUpdate);
+			if (!toUpdate.isLocked()) {
+				// templates read by queries or from the index are copies, a
+				// merge does not take over fields reset to null
+				updated.unlock();
+			}
+			// the content is not a persistent field and is not merged
+			updated.setContentOf(toUpdate);
+			if (contentChanged) {
+				updated.clearLegacyContent();
+			}
 			em.flush();
+			if (contentChanged && storedDigest != null) {
+				releaseContentReference(storedDigest);
+			}
 			return updated;
 		} catch (OptimisticLockException e) {
+			evict(toUpdate);
 			throw new LockingException("Template has been locked", e);
 		}
 	}
 
 	private void delete(PersistentTemplate aTemplate) {
 		try {
+			String storedDigest = selectContentDigest(aTemplate.getId());
 			PersistentTemplate template = em.merge(aTemplate);
 			em.remove(template);
 			em.flush();
+			if (storedDigest != null) {
+				releaseContentReference(storedDigest);
+			}
 		} catch (OptimisticLockException e) {
+			evict(aTemplate);
 			throw new LockingException("Template has been locked", e);
 		}
 	}
 
-	void updateFileStore(PersistentTemplate template) {
-		String fileName = template.getTemplateFileName();
+	private String selectContentDigest(Long id) {
+		List<String> digests = em
+				.createQuery(SELECT_CONTENT_DIGEST, String.class)
+				.setParameter("id", id).getResultList();
+		return digests.isEmpty() ? null : digests.get(0);
+	}
+
+	/**
+	 * Adds a reference to the stored content with the given digest. The
+	 * content is only inserted when no other template references identical
+	 * content. The count is changed with a bulk update, concurrent
+	 * transactions do not overwrite each other's references. If a concurrent
+	 * transaction inserts the same content first, the insert fails and the
+	 * reference is added to the content of the other transaction.
+	 */
+	private void addContentReference(String digest, byte[] content) {
+		SQLException insertFailure = null;
+		for (int i = 0; i < MAX_CONTENT_INSERTS; i++) {
+			int updated = em.createQuery(ADD_CONTENT_REFERENCE)
+					.setParameter("digest", digest).executeUpdate();
+			if (updated > 0) {
+				return;
+			}
+			try {
+				insertContent(digest, content);
+				return;
+			} catch (SQLException e) {
+				logger.debug("content {} inserted concurrently", digest, e);
+				insertFailure = e;
+			}
+		}
+		throw new WteException("content " + digest + " could not be stored",
+				insertFailure);
+	}
+
+	/**
+	 * Inserts the content with one reference. The insert runs in a savepoint
+	 * of the current transaction on the connection of the entity manager. A
+	 * failed insert, e.g. a unique key conflict, is rolled back to the
+	 * savepoint, so the transaction can go on.
+	 */
+	void insertContent(String digest, byte[] content) throws SQLException {
+		Connection connection = em.unwrap(Connection.class);
+		try {
+			Savepoint savepoint = connection.setSavepoint();
+			PreparedStatement insert = connection
+					.prepareStatement(INSERT_CONTENT);
+			try {
+				insert.setString(1, digest);
+				insert.setBytes(2, content);
+				insert.executeUpdate();
+			} catch (SQLException e) {
+				connection.rollback(savepoint);
+				throw e;
+			} finally {
+				insert.close();
+			}
+		} finally {
+			connection.close();
+		}
+	}
+
+	/**
+	 * Removes a reference to the stored content and deletes the content when
+	 * it is no longer referenced by any template. Named by digest, its file
+	 * is deleted as well.
+	 */
+	private void releaseContentReference(String digest) {
+		em.createQuery(RELEASE_CONTENT_REFERENCE)
+				.setParameter("digest", digest).executeUpdate();
+		int deleted = em.createQuery(DELETE_UNREFERENCED_CONTENT)
+				.setParameter("digest", digest).executeUpdate();
+		if (deleted > 0 && isFileStoreSet() && storeFilesByDigest) {
+			deleteAfterCommit(PersistentContent.fileName(digest));
+		}
+	}
+
+	/**
+	 * Writes the content to the file store after the commit, so a request is
+	 * not delayed by the file system and a rolled back change is never
+	 * stored.
+	 */
+	private void storeAfterCommit(final PersistentTemplate template) {
+		if (storeFilesByDigest && template.getContentDigest() == null) {
+			return;
+		}
+		final String fileName = storeFilesByDigest ? PersistentContent
+				.fileName(template.getContentDigest()) : template
+				.getTemplateFileName();
+		final byte[] content = template.getContent();
+		afterCommit(new Runnable() {
+			@Override
+			public void run() {
+				getFileStoreExecutor().execute(new Runnable() {
+					@Override
+					public void run() {
+						updateFileStore(fileName, content);
+					}
+				});
+			}
+		});
+	}
+
+	private void deleteAfterCommit(final String fileName) {
+		afterCommit(new Runnable() {
+			@Override
+			public void run() {
+				getFileStoreExecutor().execute(new Runnable() {
+					@Override
+					public void run() {
+						try {
+							fileStore.deleteFile(fileName);
+						} catch (IllegalArgumentException e) {
+							logger.warn("{} is not in the file store", fileName);
+						}
+					}
+				});
+			}
+		});
+	}
+
+	private void updateFileStore(String fileName, byte[] content) {
 		OutputStream out = null;
 		try {
 			out = fileStore.getOutStream(fileName);
-			template.writeContent(out);
+			IOUtils.write(content, out);
+			out.close();
 		} catch (IOException e) {
 			logger.error("Error occured when storring {}", fileName, e);
 		} finally {
@@ -211,18 +724,177 @@ public class WordTemplateRepository implements TemplateRepository {
 		}
 	}
 
+	/**
+	 * Loads the content of a template read without it by its digest. With
+	 * files named by digest the content is read from a
+	 * {@link ReadableFileStore} if its file exists, otherwise from the
+	 * database. A template stored before the content was
+	 * shared by digest has no digest yet, its content is read from the
+	 * template row.
+	 */
+	private class StoredContentLoader implements ContentLoader {
+
+		@Override
+		public byte[] loadContent(PersistentTemplate template) {
+			ReadableByteChannel channel = openStoredFile(template);
+			if (channel != null) {
+				try {
+					return IOUtils.toByteArray(Channels.newInputStream(channel));
+				} catch (IOException e) {
+					logger.warn("content of {} could not be read from the file store",
+							template.getTemplateFileName(), e);
+				} finally {
+					IOUtils.closeQuietly(channel);
+				}
+			}
+			return selectContent(template);
+		}
+
+		@Override
+		public void writeContent(PersistentTemplate template, OutputStream out)
+				throws IOException {
+			ReadableByteChannel channel = openStoredFile(template);
+			if (channel == null) {
+				IOUtils.write(selectContent(template), out);
+				return;
+			}
+			try {
+				transfer(channel, out);
+			} finally {
+				channel.close();
+			}
+		}
+
+		/**
+		 * @return a channel to the file of the content or <code>null</code>
+		 *         if the content must be read from the database
+		 */
+		private ReadableByteChannel openStoredFile(PersistentTemplate template) {
+			if (!storeFilesByDigest
+					|| !(fileStore instanceof ReadableFileStore)
+					|| template.getContentDigest() == null) {
+				return null;
+			}
+			String fileName = PersistentContent.fileName(template
+					.getContentDigest());
+			try {
+				return ((ReadableFileStore) fileStore).getChannel(fileName);
+			} catch (FileNotFoundException e) {
+				// not written yet or deleted by a concurrent change
+				return null;
+			} catch (IOException e) {
+				logger.warn("{} could not be opened in the file store",
+						fileName, e);
+				return null;
+			}
+		}
+
+		private byte[] selectContent(PersistentTemplate template) {
+			String digest = template.getContentDigest();
+			if (digest == null) {
+				return selectLegacyContent(template.getId());
+			}
+			PersistentContent stored = em.find(PersistentContent.class, digest);
+			if (stored == null) {
+				// the content has been replaced since the template was read
+				evict(template);
+				throw new WteException("content of template "
+						+ template.getTemplateFileName() + " not found");
+			}
+			em.detach(stored);
+			return stored.getContent();
+		}
+
+		private byte[] selectLegacyContent(Long id) {
+			if (id == null) {
+				return null;
+			}
+			List<?> legacyContent = em.createNativeQuery(SELECT_LEGACY_CONTENT)
+					.setParameter(1, id).getResultList();
+			if (legacyContent.isEmpty()) {
+				return null;
+			}
+			return toBytes(legacyContent.get(0));
+		}
+
+		private byte[] toBytes(Object column) {
+			if (column instanceof Blob) {
+				Blob blob = (Blob) column;
+				try {
+					return blob.getBytes(1, (int) blob.length());
+				} catch (SQLException e) {
+					throw new WteException("legacy content could not be read", e);
+				}
+			}
+			return (byte[]) column;
+		}
+	}
+
+	/**
+	 * Writes the channel to the stream, a file channel transfers the file
+	 * without copying it to the heap.
+	 */
+	private static void transfer(ReadableByteChannel channel, OutputStream out)
+			throws IOException {
+		if (channel instanceof FileChannel) {
+			FileChannel file = (FileChannel) channel;
+			WritableByteChannel target = Channels.newChannel(out);
+			long size = file.size();
+			long position = 0;
+			while (position < size) {
+				position += file.transferTo(position, size - position, target);
+			}
+		} else {
+			IOUtils.copy(Channels.newInputStream(channel), out);
+		}
+	}
+
+	private synchronized Executor getFileStoreExecutor() {
+		if (fileStoreExecutor == null) {
+			ThreadPoolExecutor pool = new ThreadPoolExecutor(1, 1, 60,
+					TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(),
+					new CustomizableThreadFactory("wte4j-filestore-"));
+			pool.allowCoreThreadTimeOut(true);
+			ownFileStoreExecutor = pool;
+			fileStoreExecutor = pool;
+		}
+		return fileStoreExecutor;
+	}
+
+	/**
+	 * Stops the thread writing to the file store. Files already submitted
+	 * are still written.
+	 */
+	@PreDestroy
+	public synchronized void shutdown() {
+		if (ownFileStoreExecutor != null) {
+			ownFileStoreExecutor.shutdown();
+			ownFileStoreExecutor = null;
+			fileStoreExecutor = null;
+		}
+	}
+
 	@Transactional
 	public List<Template<Object>> execute(WordTemplateQuery query) {
 		List<PersistentTemplate> templates = query.list(em);
 		List<Template<Object>> wrapped = new ArrayList<Template<Object>>(
 				templates.size());
 		for (PersistentTemplate persistentTemplate : templates) {
-			wrapped.add(new WordTemplate<Object>(persistentTemplate,
-					contextFactory));
+			wrapped.add(this.<Object> wrap(persistentTemplate));
 		}
 		return wrapped;
 	}
 
+	@Transactional
+	public List<TemplateMetadata> executeMetadata(WordTemplateQuery query) {
+		return query.listMetadata(em);
+	}
+
+	@Transactional
+	public long executeCount(WordTemplateQuery query) {
+		return query.count(em);
+	}
+
 	boolean isFileStoreSet() {
 		return fileStore != null;
 	}
@@ -0,0 +1,82 @@
+/**
+ * Copyright (C) 2015 Born Informatik AG (www.born.ch)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wte4j.impl.cache;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Hit, miss and eviction counters of a cache. The counters are thread safe and
+ * can be read while the cache is in use.
+ */
+public class CacheStatistics {
+
+	private final AtomicLong hitCount = new AtomicLong();
+	private final AtomicLong missCount = new AtomicLong();
+	private final AtomicLong evictionCount = new AtomicLong();
+
+	public void recordHit() {
+		hitCount.incrementAndGet();
+	}
+
+	public void recordMiss() {
+		missCount.incrementAndGet();
+	}
+
+	public void recordEviction() {
+		evictionCount.incrementAndGet();
+	}
+
+	public long getHitCount() {
+		return hitCount.get();
+	}
+
+	public long getMissCount() {
+		return missCount.get();
+	}
+
+	public long getEvictionCount() {
+		return evictionCount.get();
+	}
+
+	public long getRequestCount() {
+		return getHitCount() + getMissCount();
+	}
+
+	/**
+	 * @return the ratio of hits to requests or 1.0 if there was no request yet
+	 */
+	public double getHitRate() {
+		long requestCount = getRequestCount();
+		if (requestCount == 0) {
+			return 1.0;
+		}
+		return (double) getHitCount() / requestCount;
+	}
+
+	public void reset() {
+		hitCount.set(0);
+		missCount.set(0);
+		evictionCount.set(0);
+	}
+
+	@Override
+	public String toString() {
+		return "CacheStatistics [hitCount=" + getHitCount() + ", missCount="
+				+ getMissCount() + ", evictionCount=" + getEvictionCount()
+				+ "]";
+	}
+
+}
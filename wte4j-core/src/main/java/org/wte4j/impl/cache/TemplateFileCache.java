@@ -0,0 +1,250 @@
+/**
+ * Copyright (C) 2015 Born Informatik AG (www.born.ch)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wte4j.impl.cache;
+
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+import org.wte4j.impl.PersistentTemplate;
+import org.wte4j.impl.word.WordTemplateFile;
+
+/**
+ * Bounded cache of parsed template documents. Entries are identified by the
+ * digest of the template content, so templates with identical content share
+ * one parsed document. Templates without a digest are identified by document
+ * name, language and the version of the {@link PersistentTemplate}. Either
+ * way a new version of a template never gets an outdated document.
+ * <p>
+ * The cache evicts the least recently used entries as soon as either the
+ * number of entries or their weight exceeds the configured limits. The weight
+ * of an entry is the size of the template content in bytes.
+ */
+@Component
+public class TemplateFileCache {
+
+	public static final int DEFAULT_MAX_ENTRIES = 100;
+	public static final long DEFAULT_MAX_WEIGHT = 64L * 1024 * 1024;
+
+	private final Logger logger = LoggerFactory.getLogger(getClass());
+
+	private final LinkedHashMap<Key, Entry> entries;
+	private final CacheStatistics statistics;
+	private int maxEntries = DEFAULT_MAX_ENTRIES;
+	private long maxWeight = DEFAULT_MAX_WEIGHT;
+	private long weight;
+
+	public TemplateFileCache() {
+		entries = new LinkedHashMap<Key, Entry>(16, 0.75f, true);
+		statistics = new CacheStatistics();
+	}
+
+	/**
+	 * Returns the parsed document of the given template. Templates which have
+	 * not been persisted yet are parsed but not cached.
+	 * 
+	 * @param template
+	 *            - the template
+	 * @return the parsed template document
+	 * @throws IOException
+	 *             if the content can not be read.
+	 */
+	public WordTemplateFile getTemplateFile(PersistentTemplate template)
+			throws IOException {
+		if (template.getId() == null) {
+			return parse(template.getContent());
+		}
+		Key key = Key.of(template);
+		WordTemplateFile templateFile = lookup(key);
+		if (templateFile == null) {
+			templateFile = parse(template.getContent());
+			store(key, new Entry(templateFile, template.getContent().length));
+		}
+		return templateFile;
+	}
+
+	private synchronized WordTemplateFile lookup(Key key) {
+		Entry entry = entries.get(key);
+		if (entry == null) {
+			statistics.recordMiss();
+			return null;
+		}
+		statistics.recordHit();
+		return entry.templateFile;
+	}
+
+	private synchronized void store(Key key, Entry entry) {
+		if (entry.weight > maxWeight) {
+			logger.debug("template {} exceeds the maximal weight and is not cached", key);
+			return;
+		}
+		Entry replaced = entries.put(key, entry);
+		if (replaced != null) {
+			weight -= replaced.weight;
+		}
+		weight += entry.weight;
+		evict();
+	}
+
+	private void evict() {
+		Iterator<Map.Entry<Key, Entry>> iterator = entries.entrySet().iterator();
+		while (iterator.hasNext() && (entries.size() > maxEntries || weight > maxWeight)) {
+			Map.Entry<Key, Entry> eldest = iterator.next();
+			iterator.remove();
+			weight -= eldest.getValue().weight;
+			statistics.recordEviction();
+			logger.debug("evicted template {}", eldest.getKey());
+		}
+	}
+
+	/**
+	 * Removes all versions of a template from the cache. Entries identified by
+	 * a content digest are not affected, as changed content gets a new digest.
+	 */
+	public synchronized void invalidate(String documentName, String language) {
+		Iterator<Map.Entry<Key, Entry>> iterator = entries.entrySet().iterator();
+		while (iterator.hasNext()) {
+			Map.Entry<Key, Entry> cached = iterator.next();
+			if (cached.getKey().matches(documentName, language)) {
+				iterator.remove();
+				weight -= cached.getValue().weight;
+			}
+		}
+	}
+
+	public synchronized void clear() {
+		entries.clear();
+		weight = 0;
+	}
+
+	public synchronized int size() {
+		return entries.size();
+	}
+
+	/**
+	 * @return the sum of the content sizes of all cached templates in bytes
+	 */
+	public synchronized long getWeight() {
+		return weight;
+	}
+
+	public CacheStatistics getStatistics() {
+		return statistics;
+	}
+
+	public int getMaxEntries() {
+		return maxEntries;
+	}
+
+	public synchronized void setMaxEntries(int maxEntries) {
+		this.maxEntries = maxEntries;
+		evict();
+	}
+
+	public long getMaxWeight() {
+		return maxWeight;
+	}
+
+	/**
+	 * @param maxWeight
+	 *            - the maximal sum of the content sizes of all cached
+	 *            templates in bytes
+	 */
+	public synchronized void setMaxWeight(long maxWeight) {
+		this.maxWeight = maxWeight;
+		evict();
+	}
+
+	private static WordTemplateFile parse(byte[] content) throws IOException {
+		return new WordTemplateFile(content);
+	}
+
+	private static class Entry {
+		private final WordTemplateFile templateFile;
+		private final long weight;
+
+		Entry(WordTemplateFile templateFile, long weight) {
+			this.templateFile = templateFile;
+			this.weight = weight;
+		}
+	}
+
+	private static class Key {
+		private final String contentDigest;
+		private final String documentName;
+		private final String language;
+		private final long version;
+
+		private Key(String contentDigest, String documentName,
+				String language, long version) {
+			this.contentDigest = contentDigest;
+			this.documentName = documentName;
+			this.language = language;
+			this.version = version;
+		}
+
+		static Key of(PersistentTemplate template) {
+			if (template.getContentDigest() != null) {
+				return new Key(template.getContentDigest(), null, null, 0);
+			}
+			return new Key(null, template.getDocumentName(),
+					template.getLanguage(), template.getVersion());
+		}
+
+		boolean matches(String aDocumentName, String aLanguage) {
+			return contentDigest == null
+					&& documentName.equals(aDocumentName)
+					&& language.equals(aLanguage);
+		}
+
+		@Override
+		public int hashCode() {
+			final int prime = 31;
+			int result = 1;
+			result = prime * result + Objects.hashCode(contentDigest);
+			result = prime * result + Objects.hashCode(documentName);
+			result = prime * result + Objects.hashCode(language);
+			result = prime * result + (int) (version ^ (version >>> 32));
+			return result;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj)
+				return true;
+			if (!(obj instanceof Key))
+				return false;
+			Key other = (Key) obj;
+			return version == other.version
+					&& Objects.equals(contentDigest, other.contentDigest)
+					&& Objects.equals(documentName, other.documentName)
+					&& Objects.equals(language, other.language);
+		}
+
+		@Override
+		public String toString() {
+			if (contentDigest != null) {
+				return "content " + contentDigest;
+			}
+			return documentName + "_" + language + " (version " + version + ")";
+		}
+	}
+}
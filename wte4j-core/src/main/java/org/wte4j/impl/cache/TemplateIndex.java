@@ -0,0 +1,303 @@
+/**
+ * Copyright (C) 2015 Born Informatik AG (www.born.ch)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wte4j.impl.cache;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.springframework.stereotype.Component;
+import org.wte4j.impl.PersistentTemplate;
+
+/**
+ * In-memory index of the persisted templates by document name and language.
+ * The index holds a detached copy of the metadata of each indexed template,
+ * the content is loaded by its digest when it is needed. Lookups return a new
+ * copy, so the indexed copy is never modified by a caller.
+ * <p>
+ * Indexed templates expire after a time to live, so templates changed by an
+ * other node are read again from the database.
+ * <p>
+ * Templates not found in the database are indexed as missing for a limited
+ * time. A deleted template is indexed as missing with its last version, so an
+ * outdated copy read before the deletion is not indexed again. Likewise a copy
+ * is only indexed if it is not older than the indexed copy.
+ */
+@Component
+public class TemplateIndex {
+
+	public static final long DEFAULT_TIME_TO_LIVE_MILLIS = 60 * 1000L;
+	public static final long DEFAULT_MISS_TIME_TO_LIVE_MILLIS = 30 * 1000L;
+	public static final int DEFAULT_MAX_MISSES = 1000;
+
+	private static final long NO_VERSION = -1;
+
+	private final ConcurrentMap<Key, Entry> entries = new ConcurrentHashMap<Key, Entry>();
+	private final AtomicInteger missingCount = new AtomicInteger();
+	private final CacheStatistics statistics = new CacheStatistics();
+	private volatile long timeToLiveMillis = DEFAULT_TIME_TO_LIVE_MILLIS;
+	private volatile long missTimeToLiveMillis = DEFAULT_MISS_TIME_TO_LIVE_MILLIS;
+	private volatile int maxMisses = DEFAULT_MAX_MISSES;
+
+	/**
+	 * Looks up a template
+	 * 
+	 * @return the entry of the template or <code>null</code> if the template
+	 *         is not indexed and must be read from the database
+	 */
+	public Lookup lookup(String documentName, String language) {
+		Key key = new Key(documentName, language);
+		Entry entry = entries.get(key);
+		if (entry != null && entry.isExpired(System.currentTimeMillis())) {
+			remove(key, entry);
+			entry = null;
+		}
+		if (entry == null) {
+			statistics.recordMiss();
+			return null;
+		}
+		statistics.recordHit();
+		return new Lookup(entry.template);
+	}
+
+	/**
+	 * Indexes a copy of the metadata of the given template, unless a newer
+	 * version is already indexed.
+	 */
+	public void put(PersistentTemplate template) {
+		Key key = new Key(template.getDocumentName(), template.getLanguage());
+		Entry entry = new Entry(template.metadataCopy(), template.getVersion(),
+				System.currentTimeMillis() + timeToLiveMillis);
+		while (true) {
+			Entry existing = entries.get(key);
+			if (existing == null) {
+				if (entries.putIfAbsent(key, entry) == null) {
+					return;
+				}
+			} else if (existing.supersedes(entry) && !existing.isExpired(System.currentTimeMillis())) {
+				return;
+			} else if (entries.replace(key, existing, entry)) {
+				if (existing.isMissing()) {
+					missingCount.decrementAndGet();
+				}
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Indexes a template as missing, if the template is not indexed yet.
+	 */
+	public void putMissing(String documentName, String language) {
+		putMissing(new Key(documentName, language), NO_VERSION, false);
+	}
+
+	/**
+	 * Indexes a deleted template as missing, copies of the template with the
+	 * given or an older version are not indexed while the entry is valid.
+	 */
+	public void putDeleted(String documentName, String language, long version) {
+		putMissing(new Key(documentName, language), version, true);
+	}
+
+	private void putMissing(Key key, long version, boolean replace) {
+		if (missingCount.get() >= maxMisses) {
+			removeExpired();
+			if (missingCount.get() >= maxMisses) {
+				statistics.recordEviction();
+				if (replace) {
+					invalidate(key.documentName, key.language);
+				}
+				return;
+			}
+		}
+		Entry entry = new Entry(null, version, System.currentTimeMillis() + missTimeToLiveMillis);
+		Entry existing = replace ? entries.put(key, entry) : entries.putIfAbsent(key, entry);
+		if (existing == null || (replace && !existing.isMissing())) {
+			missingCount.incrementAndGet();
+		}
+	}
+
+	/**
+	 * Removes a template from the index, the next lookup reads the template
+	 * from the database.
+	 */
+	public void invalidate(String documentName, String language) {
+		Key key = new Key(documentName, language);
+		Entry removed = entries.remove(key);
+		if (removed != null && removed.isMissing()) {
+			missingCount.decrementAndGet();
+		}
+	}
+
+	public void clear() {
+		entries.clear();
+		missingCount.set(0);
+	}
+
+	private void removeExpired() {
+		long now = System.currentTimeMillis();
+		Iterator<Map.Entry<Key, Entry>> iterator = entries.entrySet().iterator();
+		while (iterator.hasNext()) {
+			Map.Entry<Key, Entry> indexed = iterator.next();
+			if (indexed.getValue().isExpired(now)) {
+				remove(indexed.getKey(), indexed.getValue());
+			}
+		}
+	}
+
+	private void remove(Key key, Entry entry) {
+		if (entries.remove(key, entry) && entry.isMissing()) {
+			missingCount.decrementAndGet();
+		}
+	}
+
+	/**
+	 * @return the number of indexed templates including the missing
+	 *         templates
+	 */
+	public int size() {
+		return entries.size();
+	}
+
+	public CacheStatistics getStatistics() {
+		return statistics;
+	}
+
+	public long getTimeToLiveMillis() {
+		return timeToLiveMillis;
+	}
+
+	/**
+	 * Sets the time templates are indexed, before they are read again from
+	 * the database
+	 */
+	public void setTimeToLiveMillis(long timeToLiveMillis) {
+		this.timeToLiveMillis = timeToLiveMillis;
+	}
+
+	public long getMissTimeToLiveMillis() {
+		return missTimeToLiveMillis;
+	}
+
+	/**
+	 * Sets the time templates not found in the database are indexed as
+	 * missing
+	 */
+	public void setMissTimeToLiveMillis(long missTimeToLiveMillis) {
+		this.missTimeToLiveMillis = missTimeToLiveMillis;
+	}
+
+	public int getMaxMisses() {
+		return maxMisses;
+	}
+
+	/**
+	 * Sets the maximal number of templates indexed as missing, further
+	 * missing templates are not indexed.
+	 */
+	public void setMaxMisses(int maxMisses) {
+		this.maxMisses = maxMisses;
+	}
+
+	/**
+	 * Result of a lookup of an indexed template
+	 */
+	public static final class Lookup {
+		private final PersistentTemplate template;
+
+		Lookup(PersistentTemplate template) {
+			this.template = template;
+		}
+
+		/**
+		 * @return <code>true</code> if the template does not exist
+		 */
+		public boolean isMissing() {
+			return template == null;
+		}
+
+		/**
+		 * @return a new copy of the template or <code>null</code> if the
+		 *         template does not exist
+		 */
+		public PersistentTemplate getTemplate() {
+			return template != null ? template.detachedCopy() : null;
+		}
+	}
+
+	private static class Entry {
+		private final PersistentTemplate template;
+		private final long version;
+		private final long expiresAt;
+
+		Entry(PersistentTemplate template, long version, long expiresAt) {
+			this.template = template;
+			this.version = version;
+			this.expiresAt = expiresAt;
+		}
+
+		boolean isMissing() {
+			return template == null;
+		}
+
+		/**
+		 * An indexed template supersedes older versions, a deleted template
+		 * also its last version.
+		 */
+		boolean supersedes(Entry other) {
+			return isMissing() ? version >= other.version : version > other.version;
+		}
+
+		boolean isExpired(long now) {
+			return now >= expiresAt;
+		}
+	}
+
+	private static class Key {
+		private final String documentName;
+		private final String language;
+
+		Key(String documentName, String language) {
+			this.documentName = documentName;
+			this.language = language;
+		}
+
+		@Override
+		public int hashCode() {
+			return 31 * documentName.hashCode() + language.hashCode();
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj) {
+				return true;
+			}
+			if (!(obj instanceof Key)) {
+				return false;
+			}
+			Key other = (Key) obj;
+			return documentName.equals(other.documentName) && language.equals(other.language);
+		}
+
+		@Override
+		public String toString() {
+			return documentName + "_" + language;
+		}
+	}
+}
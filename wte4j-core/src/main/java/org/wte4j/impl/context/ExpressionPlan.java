@@ -0,0 +1,169 @@
+/**
+ * Copyright (C) 2015 Born Informatik AG (www.born.ch)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wte4j.impl.context;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.apache.commons.lang3.StringUtils;
+import org.wte4j.ExpressionError;
+import org.wte4j.FormatterFactory;
+import org.wte4j.MappingDetail;
+import org.wte4j.impl.InvalidExpressionException;
+import org.wte4j.impl.expression.WteExpression;
+
+/**
+ * Compiles the expressions of a template to {@link ResolvedExpression}s. Each
+ * expression is parsed, mapped and validated against the model elements only
+ * once, later lookups return the compiled expression. A plan is bound to the
+ * input type, properties and content mapping of a template and can be shared
+ * by all contexts of templates with the same definition. Instances are
+ * thread safe.
+ */
+public class ExpressionPlan {
+
+	static final int MAX_MODEL_KEY_LISTS = 64;
+
+	private final FormatterFactory formatterFactory;
+	private final Map<String, Class<?>> modelElements;
+	private final Map<String, MappingDetail> contentMapping;
+	private final ConcurrentMap<String, ResolvedExpression> expressions = new ConcurrentHashMap<String, ResolvedExpression>();
+	private final ConcurrentMap<List<String>, Set<String>> modelKeys = new ConcurrentHashMap<List<String>, Set<String>>();
+
+	/**
+	 * @param formatterFactory
+	 *            - factory used to validate the formatter definitions
+	 * @param modelElements
+	 *            - the elements of the model the expressions are validated
+	 *            against
+	 * @param contentMapping
+	 *            - the content mapping of the template, may be
+	 *            <code>null</code>
+	 */
+	public ExpressionPlan(FormatterFactory formatterFactory, Map<String, Class<?>> modelElements,
+			Map<String, MappingDetail> contentMapping) {
+		this.formatterFactory = formatterFactory;
+		this.modelElements = copy(modelElements);
+		this.contentMapping = copy(contentMapping);
+	}
+
+	private static <V> Map<String, V> copy(Map<String, V> map) {
+		if (map == null) {
+			return Collections.emptyMap();
+		}
+		return Collections.unmodifiableMap(new HashMap<String, V>(map));
+	}
+
+	/**
+	 * Returns the compiled form of an expression. The expression is compiled
+	 * on the first call.
+	 * 
+	 * @param expression
+	 *            - the expression of a content control
+	 * @return the compiled expression, never <code>null</code>
+	 */
+	public ResolvedExpression resolve(String expression) {
+		ResolvedExpression resolved = expressions.get(expression);
+		if (resolved == null) {
+			resolved = compile(expression);
+			ResolvedExpression existing = expressions.putIfAbsent(expression, resolved);
+			if (existing != null) {
+				resolved = existing;
+			}
+		}
+		return resolved;
+	}
+
+	/**
+	 * Returns the model keys the given content controls depend on, after the
+	 * content mapping is applied. Invalid expressions are left out. The keys
+	 * are kept for up to {@value #MAX_MODEL_KEY_LISTS} lists of content ids,
+	 * the keys of further lists are computed on each call.
+	 * 
+	 * @param contentIds
+	 *            - the content ids of the content controls of a template
+	 * @return the model keys, the set can not be modified
+	 */
+	public Set<String> getModelKeys(List<String> contentIds) {
+		Set<String> keys = modelKeys.get(contentIds);
+		if (keys == null) {
+			Set<String> computed = new HashSet<String>();
+			for (String contentId : contentIds) {
+				ResolvedExpression expression = resolve(contentId);
+				if (expression.isValid()) {
+					computed.add(expression.getModelKey());
+				}
+			}
+			keys = Collections.unmodifiableSet(computed);
+			if (modelKeys.size() < MAX_MODEL_KEY_LISTS) {
+				modelKeys.putIfAbsent(new ArrayList<String>(contentIds), keys);
+			}
+		}
+		return keys;
+	}
+
+	/**
+	 * @return the number of compiled expressions
+	 */
+	public int size() {
+		return expressions.size();
+	}
+
+	private ResolvedExpression compile(String expressionString) {
+		ResolvedExpression resolved = parse(expressionString);
+		Class<?> valueType = modelElements.get(resolved.getModelKey());
+		if (valueType == null) {
+			return resolved.withError(ExpressionError.ILLEGAL_CONTENT_KEY);
+		}
+		ValueFormatter valueFormatter = new ValueFormatter(formatterFactory, null);
+		valueFormatter.setFormatterName(resolved.getFormatterName());
+		valueFormatter.setFormatterArgs(resolved.getFormatterArgs());
+		try {
+			valueFormatter.validate(valueType);
+		} catch (InvalidExpressionException e) {
+			return resolved.withError(e.getError());
+		}
+		return resolved;
+	}
+
+	private ResolvedExpression parse(String expressionString) {
+		WteExpression expression = new WteExpression();
+		expression.setExpressionString(expressionString);
+		String modelKey = expression.getContentKey();
+		String formatterName = expression.getFormattername();
+		List<String> formatterArgs = expression.getFormatterArgs();
+
+		MappingDetail mappingDetail = contentMapping.get(modelKey);
+		if (mappingDetail != null) {
+			if (StringUtils.isNotEmpty(mappingDetail.getModelKey())) {
+				modelKey = mappingDetail.getModelKey();
+			}
+			if (StringUtils.isNotEmpty(mappingDetail.getFormatterDefinition())) {
+				expression.setExpressionString("format:" + mappingDetail.getFormatterDefinition().trim());
+				formatterName = expression.getFormattername();
+				formatterArgs = expression.getFormatterArgs();
+			}
+		}
+		return new ResolvedExpression(expressionString, modelKey, formatterName, formatterArgs);
+	}
+}
@@ -0,0 +1,45 @@
+/**
+ * Copyright (C) 2015 Born Informatik AG (www.born.ch)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wte4j.impl.context;
+
+import java.util.Map;
+import java.util.Set;
+
+import org.wte4j.WteBatchDataModel;
+import org.wte4j.WteDataModel;
+
+/**
+ * Holds the values a {@link WteBatchDataModel} returned for the keys of a
+ * template. Other keys are read from the model one by one.
+ */
+class PrefetchedDataModel implements WteDataModel {
+
+	private final WteDataModel model;
+	private final Map<String, Object> values;
+
+	PrefetchedDataModel(WteBatchDataModel model, Set<String> keys) {
+		this.model = model;
+		this.values = model.getValues(keys);
+	}
+
+	@Override
+	public Object getValue(String key) {
+		if (values != null && values.containsKey(key)) {
+			return values.get(key);
+		}
+		return model.getValue(key);
+	}
+}
@@ -0,0 +1,97 @@
+/**
+ * Copyright (C) 2015 Born Informatik AG (www.born.ch)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wte4j.impl.context;
+
+import java.util.Collections;
+import java.util.List;
+
+import org.wte4j.ExpressionError;
+
+/**
+ * Immutable result of compiling the expression of a content control. Holds
+ * the resolved model key and formatter definition, content mapping overrides
+ * are already applied.
+ */
+public final class ResolvedExpression {
+
+	private final String expression;
+	private final String modelKey;
+	private final String formatterName;
+	private final List<String> formatterArgs;
+	private final ExpressionError error;
+
+	ResolvedExpression(String expression, String modelKey, String formatterName, List<String> formatterArgs) {
+		this(expression, modelKey, formatterName, formatterArgs, null);
+	}
+
+	ResolvedExpression(String expression, String modelKey, String formatterName, List<String> formatterArgs,
+			ExpressionError error) {
+		this.expression = expression;
+		this.modelKey = modelKey;
+		this.formatterName = formatterName;
+		this.formatterArgs = Collections.unmodifiableList(formatterArgs);
+		this.error = error;
+	}
+
+	ResolvedExpression withError(ExpressionError anError) {
+		return new ResolvedExpression(expression, modelKey, formatterName, formatterArgs, anError);
+	}
+
+	/**
+	 * @return the expression as found in the template
+	 */
+	public String getExpression() {
+		return expression;
+	}
+
+	/**
+	 * @return the key of the value in the {@link org.wte4j.WteDataModel}
+	 */
+	public String getModelKey() {
+		return modelKey;
+	}
+
+	/**
+	 * @return the name of the formatter or <code>null</code> if the default
+	 *         formatter of the value is used
+	 */
+	public String getFormatterName() {
+		return formatterName;
+	}
+
+	public List<String> getFormatterArgs() {
+		return formatterArgs;
+	}
+
+	/**
+	 * @return the error found on compiling the expression or
+	 *         <code>null</code> if the expression is valid
+	 */
+	public ExpressionError getError() {
+		return error;
+	}
+
+	public boolean isValid() {
+		return error == null;
+	}
+
+	@Override
+	public String toString() {
+		return "ResolvedExpression [expression=" + expression + ", modelKey=" + modelKey + ", formatterName="
+				+ formatterName + ", formatterArgs=" + formatterArgs + ", error=" + error + "]";
+	}
+
+}
@@ -15,17 +15,38 @@
  */
 package org.wte4j.impl.context;
 
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.apache.commons.lang3.StringUtils;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.stereotype.Component;
 import org.wte4j.FormatterFactory;
+import org.wte4j.MappingDetail;
 import org.wte4j.Template;
 import org.wte4j.WteModelService;
 import org.wte4j.impl.TemplateContext;
 import org.wte4j.impl.TemplateContextFactory;
+import org.wte4j.impl.service.ModelElementCache;
 
+/**
+ * Creates {@link TemplateContextImpl} instances. The expressions of templates
+ * are compiled once per template definition (input type, properties and
+ * content mapping), the {@link ExpressionPlan}s are kept in a bounded cache
+ * and shared by all contexts of the same definition.
+ * <p>
+ * If the model service is a {@link ModelElementCache}, the model elements
+ * are looked up in its cache for each context and a plan is compiled again
+ * when the cached model elements have been invalidated or have expired. Other
+ * model services are asked for the model elements of a new plan only.
+ */
 @Component
 public class TemplateContextFactoryImpl implements TemplateContextFactory {
+	public static final int DEFAULT_MAX_PLANS = 500;
+
 	@Autowired
 	private FormatterFactory formatterFactory;
 
@@ -33,9 +54,186 @@ public class TemplateContextFactoryImpl implements TemplateContextFactory {
 	@Qualifier("wteModelService")
 	private WteModelService modelService;
 
+	private int maxPlans = DEFAULT_MAX_PLANS;
+	private final Map<PlanKey, CompiledPlan> plans = new LinkedHashMap<PlanKey, CompiledPlan>(16, 0.75f, true);
+
 	@Override
 	public <E> TemplateContext<E> createTemplateContext(Template<E> template) {
-		return new TemplateContextImpl<E>(formatterFactory, modelService, template);
+		return new TemplateContextImpl<E>(formatterFactory, modelService, template, getExpressionPlan(template));
+	}
+
+	/**
+	 * Returns the compiled expressions of a template.
+	 */
+	ExpressionPlan getExpressionPlan(Template<?> template) {
+		PlanKey key = new PlanKey(template);
+		CompiledPlan compiled = lookup(key);
+		if (compiled != null && !(modelService instanceof ModelElementCache)) {
+			return compiled.plan;
+		}
+		Map<String, Class<?>> modelElements = modelService.listModelElements(template.getInputType(),
+				template.getProperties());
+		// the caching model service returns the same map until it is invalidated
+		if (compiled != null && compiled.modelElements == modelElements) {
+			return compiled.plan;
+		}
+		ExpressionPlan plan = new ExpressionPlan(formatterFactory, modelElements, template.getContentMapping());
+		return store(key.copy(), new CompiledPlan(plan, modelElements));
+	}
+
+	private synchronized CompiledPlan lookup(PlanKey key) {
+		return plans.get(key);
 	}
 
+	private synchronized ExpressionPlan store(PlanKey key, CompiledPlan compiled) {
+		CompiledPlan existing = plans.get(key);
+		if (existing != null && existing.modelElements == compiled.modelElements) {
+			return existing.plan;
+		}
+		plans.put(key, compiled);
+		evict();
+		return compiled.plan;
+	}
+
+	private void evict() {
+		while (plans.size() > maxPlans) {
+			PlanKey eldest = plans.keySet().iterator().next();
+			plans.remove(eldest);
+		}
+	}
+
+	/**
+	 * Discards all compiled expressions, e.g. after the model definitions have
+	 * changed.
+	 */
+	public synchronized void clearExpressionPlans() {
+		plans.clear();
+	}
+
+	public synchronized int getMaxPlans() {
+		return maxPlans;
+	}
+
+	public synchronized void setMaxPlans(int maxPlans) {
+		this.maxPlans = maxPlans;
+		evict();
+	}
+
+	public void setFormatterFactory(FormatterFactory formatterFactory) {
+		this.formatterFactory = formatterFactory;
+		clearExpressionPlans();
+	}
+
+	public void setModelService(WteModelService modelService) {
+		this.modelService = modelService;
+		clearExpressionPlans();
+	}
+
+	private static class CompiledPlan {
+		private final ExpressionPlan plan;
+		private final Map<String, Class<?>> modelElements;
+
+		CompiledPlan(ExpressionPlan plan, Map<String, Class<?>> modelElements) {
+			this.plan = plan;
+			this.modelElements = modelElements;
+		}
+	}
+
+	/**
+	 * Definition of a template a plan is compiled for. A key created for a
+	 * lookup refers to the maps of the template, only the key of a stored plan
+	 * is a copy.
+	 */
+	private static class PlanKey {
+		private final Class<?> inputType;
+		private final Map<String, String> properties;
+		private final Map<String, MappingDetail> contentMapping;
+		private final int hash;
+
+		PlanKey(Template<?> template) {
+			this(template.getInputType(), template.getProperties(), template.getContentMapping());
+		}
+
+		private PlanKey(Class<?> inputType, Map<String, String> properties, Map<String, MappingDetail> contentMapping) {
+			this.inputType = inputType;
+			this.properties = properties != null ? properties : Collections.<String, String> emptyMap();
+			this.contentMapping = contentMapping != null ? contentMapping : Collections
+					.<String, MappingDetail> emptyMap();
+			hash = computeHash();
+		}
+
+		PlanKey copy() {
+			Map<String, MappingDetail> mappingCopy = new HashMap<String, MappingDetail>();
+			for (Map.Entry<String, MappingDetail> entry : contentMapping.entrySet()) {
+				MappingDetail detail = entry.getValue();
+				if (detail != null) {
+					MappingDetail detailCopy = new MappingDetail();
+					detailCopy.setModelKey(detail.getModelKey());
+					detailCopy.setFormatterDefinition(detail.getFormatterDefinition());
+					mappingCopy.put(entry.getKey(), detailCopy);
+				}
+			}
+			return new PlanKey(inputType, new HashMap<String, String>(properties), mappingCopy);
+		}
+
+		private int computeHash() {
+			final int prime = 31;
+			int result = 1;
+			result = prime * result + ((inputType == null) ? 0 : inputType.hashCode());
+			result = prime * result + properties.hashCode();
+			int mappingHash = 0;
+			for (Map.Entry<String, MappingDetail> entry : contentMapping.entrySet()) {
+				MappingDetail detail = entry.getValue();
+				if (detail != null) {
+					mappingHash += entry.getKey().hashCode()
+							^ (prime * hashCode(detail.getModelKey()) + hashCode(detail.getFormatterDefinition()));
+				}
+			}
+			return prime * result + mappingHash;
+		}
+
+		private static int hashCode(String value) {
+			return value == null ? 0 : value.hashCode();
+		}
+
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj)
+				return true;
+			if (obj == null || getClass() != obj.getClass())
+				return false;
+			PlanKey other = (PlanKey) obj;
+			return hash == other.hash
+					&& (inputType == null ? other.inputType == null : inputType.equals(other.inputType))
+					&& properties.equals(other.properties)
+					&& containsMapping(contentMapping, other.contentMapping)
+					&& containsMapping(other.contentMapping, contentMapping);
+		}
+
+		/**
+		 * MappingDetail.equals ignores the formatter definition, missing and
+		 * <code>null</code> details are equal.
+		 */
+		private static boolean containsMapping(Map<String, MappingDetail> mapping, Map<String, MappingDetail> other) {
+			for (Map.Entry<String, MappingDetail> entry : mapping.entrySet()) {
+				MappingDetail detail = entry.getValue();
+				MappingDetail otherDetail = other.get(entry.getKey());
+				if (detail == null) {
+					if (otherDetail != null) {
+						return false;
+					}
+				} else if (otherDetail == null
+						|| !StringUtils.equals(detail.getModelKey(), otherDetail.getModelKey())
+						|| !StringUtils.equals(detail.getFormatterDefinition(), otherDetail.getFormatterDefinition())) {
+					return false;
+				}
+			}
+			return true;
+		}
+	}
 }
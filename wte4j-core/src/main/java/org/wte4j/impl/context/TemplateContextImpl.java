@@ -15,65 +15,97 @@
  */
 package org.wte4j.impl.context;
 
+import java.util.Collections;
+import java.util.List;
 import java.util.Locale;
-import java.util.Map;
+import java.util.Set;
 
 import org.apache.commons.lang3.StringUtils;
 import org.wte4j.ExpressionError;
 import org.wte4j.FormatterFactory;
-import org.wte4j.MappingDetail;
 import org.wte4j.Template;
+import org.wte4j.WteBatchDataModel;
 import org.wte4j.WteDataModel;
+import org.wte4j.WteDemandModelService;
 import org.wte4j.WteModelService;
 import org.wte4j.impl.InvalidExpressionException;
 import org.wte4j.impl.TemplateContext;
-import org.wte4j.impl.expression.WteExpression;
 
 public class TemplateContextImpl<E> implements TemplateContext<E> {
 
 	private WteModelService modelService;
-	private FormatterFactory formatterFactory;
 	// Template specific fields
 	private Template<E> template;
 	private Locale locale;
-	private Map<String, Class<?>> modelElements;
+	private ExpressionPlan expressionPlan;
 	private WteDataModel model;
 
-	private WteExpression expression;
 	private ValueFormatter valueFormatter;
-	private String valueKey;
 
 	public TemplateContextImpl(
 			FormatterFactory formatterFactory, WteModelService modelService, Template<E> template) {
+		this(formatterFactory, modelService, template, new ExpressionPlan(formatterFactory,
+				modelService.listModelElements(template.getInputType(), template.getProperties()),
+				template.getContentMapping()));
+	}
+
+	/**
+	 * @param expressionPlan
+	 *            - the compiled expressions of the template, see
+	 *            {@link ExpressionPlan}
+	 */
+	public TemplateContextImpl(FormatterFactory formatterFactory, WteModelService modelService,
+			Template<E> template, ExpressionPlan expressionPlan) {
 		super();
 		this.modelService = modelService;
-		this.formatterFactory = formatterFactory;
 		this.template = template;
-		expression = new WteExpression();
-		initContext();
-	}
-
-	private void initContext() {
+		this.expressionPlan = expressionPlan;
 		locale = new Locale(template.getLanguage());
 		valueFormatter = new ValueFormatter(formatterFactory, locale);
-		modelElements = modelService.listModelElements(template.getInputType(), template.getProperties());
 	}
 
+	/**
+	 * Binds the context to the model of the data. The model keys of the
+	 * template are passed to a {@link WteDemandModelService}, the values of a
+	 * {@link WteBatchDataModel} are read at once for all of them.
+	 */
 	@Override
 	public void bind(E data) {
-		model = modelService.createModel(template, data);
+		Set<String> modelKeys = null;
+		WteDataModel created;
+		if (modelService instanceof WteDemandModelService) {
+			modelKeys = listModelKeys();
+			created = ((WteDemandModelService) modelService).createModel(
+					template, data, modelKeys);
+		} else {
+			created = modelService.createModel(template, data);
+		}
+		if (created instanceof WteBatchDataModel) {
+			if (modelKeys == null) {
+				modelKeys = listModelKeys();
+			}
+			model = new PrefetchedDataModel((WteBatchDataModel) created,
+					modelKeys);
+		} else {
+			model = created;
+		}
+	}
 
+	/**
+	 * Lists the model keys of the valid expressions in the content controls
+	 * of the template, see {@link ExpressionPlan#getModelKeys(List)}.
+	 */
+	private Set<String> listModelKeys() {
+		List<String> contentIds = template.listContentIds();
+		if (contentIds == null) {
+			return Collections.emptySet();
+		}
+		return expressionPlan.getModelKeys(contentIds);
 	}
 
 	@Override
 	public ExpressionError validate(String expressionString) {
-		try {
-			parseAndValidate(expressionString);
-		} catch (InvalidExpressionException e) {
-			return e.getError();
-		}
-		return null;
-
+		return expressionPlan.resolve(expressionString).getError();
 	}
 
 	@Override
@@ -82,43 +114,17 @@ public class TemplateContextImpl<E> implements TemplateContext<E> {
 		if (model == null) {
 			throw new IllegalStateException("Context not bound to data");
 		}
-		parseAndValidate(expressionString);
-		Object value = model.getValue(valueKey);
+		ResolvedExpression expression = expressionPlan.resolve(expressionString);
+		if (!expression.isValid()) {
+			throw new InvalidExpressionException(expression.getError());
+		}
+		Object value = model.getValue(expression.getModelKey());
 		if (value != null) {
+			valueFormatter.setFormatterName(expression.getFormatterName());
+			valueFormatter.setFormatterArgs(expression.getFormatterArgs());
 			return valueFormatter.format(value, locale);
 		}
 		return StringUtils.EMPTY;
 	}
 
-	private void parseAndValidate(String expressionString) throws InvalidExpressionException {
-		parseValueExpression(expressionString);
-		if (!modelElements.containsKey(valueKey)) {
-			throw new InvalidExpressionException(ExpressionError.ILLEGAL_CONTENT_KEY);
-		}
-		Class<?> valueType = modelElements.get(valueKey);
-		valueFormatter.validate(valueType);
-
-	}
-
-	private void parseValueExpression(final String expressionString) {
-		expression.setExpressionString(expressionString);
-		valueKey = expression.getContentKey();
-		valueFormatter.setFormatterName(expression.getFormattername());
-		valueFormatter.setFormatterArgs(expression.getFormatterArgs());
-
-		if (template.getContentMapping().containsKey(valueKey)) {
-			MappingDetail mappingDetail = template.getContentMapping().get(valueKey);
-			if (StringUtils.isNotEmpty(mappingDetail.getModelKey())) {
-				valueKey = mappingDetail.getModelKey();
-			}
-			if (StringUtils.isNotEmpty(mappingDetail.getFormatterDefinition())) {
-				expression.setExpressionString("format:" + mappingDetail.getFormatterDefinition().trim());
-				valueFormatter.setFormatterName(expression.getFormattername());
-				valueFormatter.setFormatterArgs(expression.getFormatterArgs());
-				expression.setExpressionString(expressionString);
-			}
-		}
-
-	}
-
 }
@@ -15,6 +15,7 @@
  */
 package org.wte4j.impl.context;
 
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
@@ -32,6 +33,7 @@ public class ValueFormatter {
 
 	private final FormatterFactory formatterFactory;
 	private final Map<Class<?>, Formatter> defaultFormaters;
+	private final Map<List<?>, Formatter> namedFormatters;
 
 	private String formatterName;
 	private List<String> formatterArgs;
@@ -40,6 +42,7 @@ public class ValueFormatter {
 		super();
 		this.formatterFactory = formatterFactory;
 		defaultFormaters = new HashMap<>();
+		namedFormatters = new HashMap<>();
 	}
 
 	public String format(Object value, Locale locale) throws InvalidExpressionException {
@@ -59,7 +62,7 @@ public class ValueFormatter {
 	private Formatter getFormatter(Class<?> inputType) {
 		Formatter formatter = getDefaultFormatter(inputType);
 		if (formatterName != null) {
-			formatter = createFormatter(formatterName, formatterArgs);
+			formatter = getNamedFormatter(formatterName, formatterArgs);
 		}
 		return formatter;
 	}
@@ -81,6 +84,21 @@ public class ValueFormatter {
 		Formatter formatter = defaultFormaters.get(type);
 		if (formatter == null) {
 			formatter = formatterFactory.createDefaultFormatter(type);
+			defaultFormaters.put(type, formatter);
+		}
+		return formatter;
+	}
+
+	/**
+	 * Formatters are not thread safe, the instances are reused within this
+	 * formatter only.
+	 */
+	private Formatter getNamedFormatter(String name, List<String> args) {
+		List<?> key = Arrays.asList(name, args);
+		Formatter formatter = namedFormatters.get(key);
+		if (formatter == null) {
+			formatter = createFormatter(name, args);
+			namedFormatters.put(key, formatter);
 		}
 		return formatter;
 	}
@@ -15,21 +15,24 @@
  */
 package org.wte4j.impl.format;
 
-import java.text.DateFormat;
-import java.text.SimpleDateFormat;
 import java.util.Locale;
 
+import org.apache.commons.lang3.time.FastDateFormat;
 import org.wte4j.Formatter;
 
+/**
+ * Base class of the date formatters. The formats are looked up in the
+ * {@link FormatCache} on the first use and whenever the locale changes.
+ * Formatting is thread safe as long as the locale is not changed concurrently.
+ */
 abstract class AbstractDateFormatter implements Formatter {
 
 	private final FormatStyle style;
-	private Locale locale = Locale.getDefault();
-	private DateFormat format;
+	private volatile Locale locale = Locale.getDefault();
+	private volatile FastDateFormat format;
 
 	public AbstractDateFormatter(FormatStyle style) {
 		this.style = style;
-		locale = Locale.getDefault();
 	}
 
 	protected abstract String getPattern();
@@ -44,20 +47,24 @@ abstract class AbstractDateFormatter implements Formatter {
 
 	@Override
 	public void setLocale(Locale aLocale) {
-		locale = aLocale;
-		format = null;
+		if (!aLocale.equals(locale)) {
+			locale = aLocale;
+			format = null;
+		}
 	}
 
-	private DateFormat getDateFormat() {
-		if (format == null) {
-			format = new SimpleDateFormat(getPattern(), locale);
+	private FastDateFormat getDateFormat() {
+		FastDateFormat current = format;
+		if (current == null) {
+			current = FormatCache.getDateFormat(getPattern(), locale);
+			format = current;
 		}
-		return format;
+		return current;
 	}
 
 	@Override
 	public String format(Object object) throws IllegalArgumentException {
-		return getDateFormat().format(object);
+		return FormatCache.formatDate(getDateFormat(), object);
 	}
 
 }
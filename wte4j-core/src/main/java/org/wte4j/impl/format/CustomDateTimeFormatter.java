@@ -15,33 +15,38 @@
  */
 package org.wte4j.impl.format;
 
-import java.text.DateFormat;
-import java.text.SimpleDateFormat;
 import java.util.Locale;
 
+import org.apache.commons.lang3.time.FastDateFormat;
 import org.wte4j.Formatter;
 import org.wte4j.FormatterName;
 
+/**
+ * Formats dates with a custom pattern. Formatting is thread safe as long as
+ * the locale is not changed concurrently.
+ */
 @FormatterName("customDateTime")
 public class CustomDateTimeFormatter implements Formatter {
 
 	private final String pattern;
-	private DateFormat format;
+	private volatile FastDateFormat format;
 
 	public CustomDateTimeFormatter(String aPattern) {
 		pattern = aPattern;
-		format = new SimpleDateFormat(pattern, Locale.getDefault());
+		format = FormatCache.getDateFormat(pattern, Locale.getDefault());
 	}
 
 	@Override
 	public void setLocale(Locale locale) {
-		format = new SimpleDateFormat(pattern, locale);
+		if (!locale.equals(format.getLocale())) {
+			format = FormatCache.getDateFormat(pattern, locale);
+		}
 	}
 
 	@Override
 	public String format(Object object) throws ClassCastException {
 		if (object != null) {
-			return format.format(object);
+			return FormatCache.formatDate(format, object);
 		} else {
 			return null;
 		}
@@ -0,0 +1,129 @@
+/**
+ * Copyright (C) 2015 Born Informatik AG (www.born.ch)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wte4j.impl.format;
+
+import java.text.NumberFormat;
+import java.util.Date;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.apache.commons.lang3.time.FastDateFormat;
+
+/**
+ * Shared caches of the format objects used by the built in formatters. Date
+ * formats are immutable {@link FastDateFormat}s shared by all threads, number
+ * formats are not thread safe, a prototype per style is cached and cloned for
+ * each use, which is cheaper than creating it from the locale data. Nothing
+ * is kept on the calling threads, so no class loader is pinned by container
+ * threads after a redeploy.
+ */
+final class FormatCache {
+
+	/**
+	 * Maximal number of cached number format prototypes. Further styles are
+	 * created on every use.
+	 */
+	static final int MAX_NUMBER_FORMATS = 256;
+
+	private static final ConcurrentMap<NumberStyle, NumberFormat> NUMBER_FORMATS = new ConcurrentHashMap<NumberStyle, NumberFormat>();
+
+	private FormatCache() {
+	}
+
+	/**
+	 * @return a thread safe date format for the default time zone
+	 * @throws IllegalArgumentException
+	 *             if the pattern is invalid
+	 */
+	static FastDateFormat getDateFormat(String pattern, Locale locale) throws IllegalArgumentException {
+		return FastDateFormat.getInstance(pattern, locale);
+	}
+
+	/**
+	 * Formats a date with the given format. Numbers are formatted as
+	 * milliseconds like {@link java.text.DateFormat} does.
+	 */
+	static String formatDate(FastDateFormat format, Object object) throws IllegalArgumentException {
+		if (object instanceof Number) {
+			return format.format(new Date(((Number) object).longValue()));
+		}
+		return format.format(object);
+	}
+
+	/**
+	 * @return a new number format of the given style, owned by the caller
+	 */
+	static NumberFormat getNumberFormat(NumberStyle style) {
+		NumberFormat prototype = NUMBER_FORMATS.get(style);
+		if (prototype == null) {
+			prototype = style.createFormat();
+			if (NUMBER_FORMATS.size() >= MAX_NUMBER_FORMATS) {
+				return prototype;
+			}
+			NUMBER_FORMATS.putIfAbsent(style, prototype);
+		}
+		return (NumberFormat) prototype.clone();
+	}
+
+	/**
+	 * Immutable definition of a number format.
+	 */
+	static final class NumberStyle {
+		static final int DEFAULT_DIGITS = -1;
+
+		private final Locale locale;
+		private final int fractionDigits;
+		private final boolean groupingUsed;
+
+		NumberStyle(Locale locale, int fractionDigits, boolean groupingUsed) {
+			this.locale = locale;
+			this.fractionDigits = fractionDigits;
+			this.groupingUsed = groupingUsed;
+		}
+
+		NumberFormat createFormat() {
+			NumberFormat format = NumberFormat.getNumberInstance(locale);
+			format.setGroupingUsed(groupingUsed);
+			if (fractionDigits != DEFAULT_DIGITS) {
+				format.setMinimumFractionDigits(fractionDigits);
+				format.setMaximumFractionDigits(fractionDigits);
+			}
+			return format;
+		}
+
+		@Override
+		public int hashCode() {
+			final int prime = 31;
+			int result = 1;
+			result = prime * result + fractionDigits;
+			result = prime * result + (groupingUsed ? 1231 : 1237);
+			result = prime * result + locale.hashCode();
+			return result;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj)
+				return true;
+			if (obj == null || getClass() != obj.getClass())
+				return false;
+			NumberStyle other = (NumberStyle) obj;
+			return fractionDigits == other.fractionDigits && groupingUsed == other.groupingUsed
+					&& locale.equals(other.locale);
+		}
+	}
+}
@@ -0,0 +1,133 @@
+/**
+ * Copyright (C) 2015 Born Informatik AG (www.born.ch)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wte4j.impl.format;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Modifier;
+import java.util.List;
+
+import org.springframework.core.convert.ConversionException;
+import org.springframework.core.convert.ConversionService;
+import org.springframework.core.convert.support.DefaultConversionService;
+import org.wte4j.Formatter;
+import org.wte4j.FormatterInstantiationException;
+
+/**
+ * A constructor of a formatter class together with the arguments converted to
+ * the parameter types of the constructor. The constructor is resolved once,
+ * creating a new formatter instance is a plain reflective constructor call.
+ * Instances are immutable.
+ */
+class FormatterConstructor {
+
+	private static final ConversionService CONVERSION_SERVICE = new DefaultConversionService();
+
+	private final Constructor<? extends Formatter> constructor;
+	private final Object[] args;
+
+	private FormatterConstructor(Constructor<? extends Formatter> constructor, Object[] args) {
+		this.constructor = constructor;
+		this.args = args;
+	}
+
+	/**
+	 * Finds a public constructor of the given class accepting the given
+	 * arguments. Constructors with <code>String</code> parameters are
+	 * preferred, other parameter types must be convertible from a
+	 * <code>String</code> (numbers, booleans, enums etc.).
+	 * 
+	 * @throws FormatterInstantiationException
+	 *             if no matching constructor exists
+	 */
+	@SuppressWarnings("unchecked")
+	static FormatterConstructor resolve(Class<? extends Formatter> formatterClass, List<String> args)
+			throws FormatterInstantiationException {
+		if (Modifier.isAbstract(formatterClass.getModifiers())) {
+			throw new FormatterInstantiationException(formatterClass.getName() + " is abstract");
+		}
+		FormatterConstructor best = null;
+		int bestScore = -1;
+		for (Constructor<?> constructor : formatterClass.getConstructors()) {
+			Class<?>[] parameterTypes = constructor.getParameterTypes();
+			if (parameterTypes.length != args.size()) {
+				continue;
+			}
+			Object[] converted = convert(args, parameterTypes);
+			if (converted != null) {
+				int score = countStringParameters(parameterTypes);
+				if (score > bestScore) {
+					best = new FormatterConstructor((Constructor<? extends Formatter>) constructor, converted);
+					bestScore = score;
+				}
+			}
+		}
+		if (best == null) {
+			throw new FormatterInstantiationException("No constructor of " + formatterClass.getName()
+					+ " matches the args " + args);
+		}
+		return best;
+	}
+
+	private static Object[] convert(List<String> args, Class<?>[] parameterTypes) {
+		Object[] converted = new Object[parameterTypes.length];
+		for (int i = 0; i < parameterTypes.length; i++) {
+			if (!CONVERSION_SERVICE.canConvert(String.class, parameterTypes[i])) {
+				return null;
+			}
+			try {
+				converted[i] = CONVERSION_SERVICE.convert(args.get(i), parameterTypes[i]);
+			} catch (ConversionException e) {
+				return null;
+			}
+			if (converted[i] == null && parameterTypes[i].isPrimitive()) {
+				return null;
+			}
+		}
+		return converted;
+	}
+
+	private static int countStringParameters(Class<?>[] parameterTypes) {
+		int count = 0;
+		for (Class<?> type : parameterTypes) {
+			if (type == String.class) {
+				count++;
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * @return a new formatter instance
+	 * @throws FormatterInstantiationException
+	 *             if the constructor throws an exception
+	 */
+	Formatter newInstance() throws FormatterInstantiationException {
+		try {
+			return constructor.newInstance(args);
+		} catch (InvocationTargetException e) {
+			throw new FormatterInstantiationException("Can not create new Instance of "
+					+ constructor.getDeclaringClass().getName(), e.getCause());
+		} catch (InstantiationException | IllegalAccessException e) {
+			throw new FormatterInstantiationException("Can not create new Instance of "
+					+ constructor.getDeclaringClass().getName(), e);
+		}
+	}
+
+	Class<? extends Formatter> getFormatterClass() {
+		return constructor.getDeclaringClass();
+	}
+}
@@ -15,17 +15,17 @@
  */
 package org.wte4j.impl.format;
 
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import javax.annotation.PostConstruct;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.expression.Expression;
-import org.springframework.expression.ExpressionParser;
-import org.springframework.expression.spel.standard.SpelExpressionParser;
 import org.springframework.stereotype.Component;
 import org.wte4j.DefaultFormatter;
 import org.wte4j.Formatter;
@@ -33,7 +33,13 @@ import org.wte4j.FormatterFactory;
 import org.wte4j.FormatterInstantiationException;
 import org.wte4j.FormatterName;
 import org.wte4j.UnknownFormatterException;
+import org.wte4j.impl.cache.CacheStatistics;
 
+/**
+ * Registry of the formatters known by the engine. The constructor used to
+ * create a formatter is resolved once per formatter name and argument list,
+ * later requests for the same definition only create a new instance.
+ */
 @Component
 public class FormatterRegistry implements FormatterFactory {
 
@@ -45,9 +51,13 @@ public class FormatterRegistry implements FormatterFactory {
 	private Map<String, Class<? extends Formatter>> namedFormatters;
 	private Map<Class<?>, Class<? extends Formatter>> defaultFormatters;
 
+	private final ConcurrentMap<FormatterKey, FormatterConstructor> constructors;
+	private final CacheStatistics statistics = new CacheStatistics();
+
 	public FormatterRegistry() {
 		namedFormatters = new HashMap<String, Class<? extends Formatter>>();
 		defaultFormatters = new HashMap<Class<?>, Class<? extends Formatter>>();
+		constructors = new ConcurrentHashMap<FormatterKey, FormatterConstructor>();
 	}
 
 	@SuppressWarnings("unchecked")
@@ -75,6 +85,7 @@ public class FormatterRegistry implements FormatterFactory {
 					someClass.getName());
 		}
 		namedFormatters.put(name, (Class<? extends Formatter>) someClass);
+		constructors.clear();
 		logger.info("registered formatter {} with name {}",
 				someClass.getName(), name);
 	}
@@ -107,6 +118,7 @@ public class FormatterRegistry implements FormatterFactory {
 					type.getName(), someClass.getName());
 		}
 		defaultFormatters.put(type, someClass);
+		constructors.clear();
 		logger.info("registered formatter {} for type {}", someClass.getName(),
 				type.getName());
 
@@ -119,31 +131,50 @@ public class FormatterRegistry implements FormatterFactory {
 	@Override
 	public Formatter createFormatter(String name, List<String> args)
 			throws UnknownFormatterException, FormatterInstantiationException {
-
-		final Class<? extends Formatter> formatterClass = namedFormatters
-				.get(name);
-		if (formatterClass == null) {
+		if (name == null) {
 			throw new UnknownFormatterException(name);
 		}
-		return createFormatter(formatterClass, args);
+		FormatterKey key = new FormatterKey(name, args);
+		FormatterConstructor constructor = constructors.get(key);
+		if (constructor != null) {
+			statistics.recordHit();
+		} else {
+			statistics.recordMiss();
+			final Class<? extends Formatter> formatterClass = namedFormatters
+					.get(name);
+			if (formatterClass == null) {
+				throw new UnknownFormatterException(name);
+			}
+			constructor = resolveConstructor(formatterClass, args);
+			constructors.putIfAbsent(key, constructor);
+		}
+		return constructor.newInstance();
 	}
 
 	static Formatter createFormatter(Class<? extends Formatter> formatterClass,
 			List<String> args) {
+		return resolveConstructor(formatterClass, args).newInstance();
+	}
+
+	private static FormatterConstructor resolveConstructor(
+			Class<? extends Formatter> formatterClass, List<String> args) {
 		try {
-			String springExpression = createSpringExpression(formatterClass,
-					args);
-			ExpressionParser parser = new SpelExpressionParser();
-			Expression exp = parser.parseExpression(springExpression);
-			return exp.getValue(Formatter.class);
-		} catch (Exception e) {
+			return FormatterConstructor.resolve(formatterClass, args);
+		} catch (FormatterInstantiationException e) {
 			throw new FormatterInstantiationException(
 					"Can not create new Instance of "
-							+ formatterClass.getName() + "with args "
+							+ formatterClass.getName() + " with args "
 							+ args.toString(), e);
 		}
 	}
 
+	/**
+	 * @return hit and miss counts of the lookups of formatter constructors
+	 */
+	public CacheStatistics getStatistics() {
+		return statistics;
+	}
+
 	@Override
 	public Formatter createDefaultFormatter(Class<?> type)
 			throws FormatterInstantiationException {
@@ -162,27 +193,28 @@ public class FormatterRegistry implements FormatterFactory {
 
 	}
 
-	private static String createSpringExpression(
-			Class<? extends Formatter> formatterClass, List<String> args) {
-		StringBuilder springExpression = new StringBuilder("new ");
-		springExpression.append(formatterClass.getCanonicalName());
-		springExpression.append("(");
-		appendArgs(springExpression, args);
-		springExpression.append(")");
-		return springExpression.toString();
-	}
+	private static class FormatterKey {
+		private final String name;
+		private final List<String> args;
 
-	private static void appendArgs(StringBuilder springExpression,
-			List<String> args) {
-		boolean addSeparator = false;
-		for (String arg : args) {
-			if (addSeparator) {
-				springExpression.append(", ");
-			}
-			springExpression.append("'");
-			springExpression.append(arg);
-			springExpression.append("'");
-			addSeparator = true;
+		FormatterKey(String name, List<String> args) {
+			this.name = name;
+			this.args = new ArrayList<String>(args);
+		}
+
+		@Override
+		public int hashCode() {
+			return 31 * name.hashCode() + args.hashCode();
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj)
+				return true;
+			if (obj == null || getClass() != obj.getClass())
+				return false;
+			FormatterKey other = (FormatterKey) obj;
+			return name.equals(other.name) && args.equals(other.args);
 		}
 	}
 }
@@ -15,33 +15,32 @@
  */
 package org.wte4j.impl.format;
 
-import java.text.NumberFormat;
 import java.util.Locale;
 
 import org.wte4j.Formatter;
 import org.wte4j.FormatterName;
+import org.wte4j.impl.format.FormatCache.NumberStyle;
 
+/**
+ * Formats numbers with the swiss number format. Instances are immutable and
+ * thread safe.
+ */
 @FormatterName("number")
 public class NumberFormatter implements Formatter {
+	private static final Locale LOCALE = new Locale("de", "CH");
 
-	private NumberFormat format;
+	private final NumberStyle style;
 
 	public NumberFormatter() {
-		format = NumberFormat.getNumberInstance(new Locale("de", "CH"));
+		style = new NumberStyle(LOCALE, NumberStyle.DEFAULT_DIGITS, true);
 	}
 
 	public NumberFormatter(int fractionDigits) {
-		this();
-		format.setGroupingUsed(false);
-		format.setMinimumFractionDigits(fractionDigits);
-		format.setMaximumFractionDigits(fractionDigits);
+		this(fractionDigits, false);
 	}
 
 	public NumberFormatter(int fractionDigits, boolean groupThousends) {
-		this();
-		format.setGroupingUsed(groupThousends);
-		format.setMinimumFractionDigits(fractionDigits);
-		format.setMaximumFractionDigits(fractionDigits);
+		style = new NumberStyle(LOCALE, fractionDigits, groupThousends);
 	}
 
 	@Override
@@ -55,7 +54,7 @@ public class NumberFormatter implements Formatter {
 			throw new IllegalArgumentException("type " + object.getClass()
 					+ " is not suportet");
 		}
-		return format.format(object);
+		return FormatCache.getNumberFormat(style).format(object);
 	}
 
 }
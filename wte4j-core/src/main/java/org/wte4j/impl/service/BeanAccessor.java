@@ -0,0 +1,185 @@
+/**
+ * Copyright (C) 2015 Born Informatik AG (www.born.ch)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wte4j.impl.service;
+
+import java.beans.PropertyDescriptor;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.apache.commons.beanutils.MethodUtils;
+import org.apache.commons.beanutils.PropertyUtils;
+
+/**
+ * Reads bean properties with method handles. The getters of a class are
+ * looked up once and kept in a table per class, reading a property is a map
+ * lookup and a method handle invocation.
+ * <p>
+ * Nested properties are separated by dots (e.g.
+ * <code>customer.address.city</code>), each step reads the property from the
+ * runtime class of the previous value. A <code>null</code> value on the path
+ * is returned as <code>null</code>. Values of {@link Map}s are read by key.
+ * Indexed and mapped properties (e.g. <code>lines[0]</code>) are read with
+ * {@link PropertyUtils}.
+ */
+public final class BeanAccessor {
+
+	private static final MethodType GETTER_TYPE = MethodType.methodType(
+			Object.class, Object.class);
+
+	private static final ClassValue<BeanAccessor> ACCESSORS = new ClassValue<BeanAccessor>() {
+		@Override
+		protected BeanAccessor computeValue(Class<?> type) {
+			return new BeanAccessor(type);
+		}
+	};
+
+	private static final ConcurrentMap<String, String[]> PATHS = new ConcurrentHashMap<String, String[]>();
+
+	private final Class<?> type;
+	private final Map<String, MethodHandle> getters;
+
+	private BeanAccessor(Class<?> type) {
+		this.type = type;
+		Map<String, MethodHandle> handles = new HashMap<String, MethodHandle>();
+		for (PropertyDescriptor descriptor : PropertyUtils
+				.getPropertyDescriptors(type)) {
+			MethodHandle getter = unreflect(descriptor.getReadMethod());
+			if (getter != null) {
+				handles.put(descriptor.getName(), getter);
+			}
+		}
+		getters = Collections.unmodifiableMap(handles);
+	}
+
+	/**
+	 * @return the accessor of the given class, created once per class
+	 */
+	public static BeanAccessor forClass(Class<?> type) {
+		return ACCESSORS.get(type);
+	}
+
+	/**
+	 * Reads a simple or nested property.
+	 *
+	 * @throws IllegalArgumentException
+	 *             if the property does not exist or can not be read
+	 */
+	public static Object getValue(Object bean, String key)
+			throws IllegalArgumentException {
+		if (bean == null) {
+			throw new IllegalArgumentException("No bean specified");
+		}
+		if (key.indexOf('[') >= 0 || key.indexOf('(') >= 0) {
+			return getWithPropertyUtils(bean, key);
+		}
+		if (key.indexOf('.') < 0) {
+			return getSimpleValue(bean, key);
+		}
+		Object value = bean;
+		for (String name : split(key)) {
+			if (value == null) {
+				return null;
+			}
+			value = getSimpleValue(value, name);
+		}
+		return value;
+	}
+
+	private static Object getSimpleValue(Object bean, String name) {
+		if (bean instanceof Map) {
+			return ((Map<?, ?>) bean).get(name);
+		}
+		return forClass(bean.getClass()).get(bean, name);
+	}
+
+	/**
+	 * Reads a property of a bean of the class of this accessor.
+	 *
+	 * @throws IllegalArgumentException
+	 *             if the property does not exist or can not be read
+	 */
+	public Object get(Object bean, String name) throws IllegalArgumentException {
+		MethodHandle getter = getters.get(name);
+		if (getter == null) {
+			throw new IllegalArgumentException("Unknown property '" + name
+					+ "' on class '" + type.getName() + "'");
+		}
+		try {
+			return (Object) getter.invokeExact(bean);
+		} catch (RuntimeException e) {
+			throw e;
+		} catch (Error e) {
+			throw e;
+		} catch (Throwable e) {
+			throw new IllegalArgumentException(e);
+		}
+	}
+
+	/**
+	 * @return <code>true</code> if the class of this accessor has a readable
+	 *         property with the given name
+	 */
+	public boolean hasProperty(String name) {
+		return getters.containsKey(name);
+	}
+
+	private static String[] split(String key) {
+		String[] path = PATHS.get(key);
+		if (path == null) {
+			path = key.split("\\.");
+			PATHS.putIfAbsent(key, path);
+		}
+		return path;
+	}
+
+	private static Object getWithPropertyUtils(Object bean, String key) {
+		try {
+			return PropertyUtils.getProperty(bean, key);
+		} catch (Exception e) {
+			throw new IllegalArgumentException(e);
+		}
+	}
+
+	/**
+	 * Creates a handle of type (Object)Object for a getter. Getters declared
+	 * by a non public class are looked up in its public interfaces and super
+	 * classes first.
+	 */
+	private static MethodHandle unreflect(Method readMethod) {
+		if (readMethod == null) {
+			return null;
+		}
+		Method method = MethodUtils.getAccessibleMethod(readMethod);
+		try {
+			if (method == null) {
+				method = readMethod;
+				method.setAccessible(true);
+			}
+			return MethodHandles.lookup().unreflect(method).asType(GETTER_TYPE);
+		} catch (IllegalAccessException e) {
+			return null;
+		} catch (SecurityException e) {
+			return null;
+		}
+	}
+}
@@ -0,0 +1,194 @@
+/**
+ * Copyright (C) 2015 Born Informatik AG (www.born.ch)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wte4j.impl.service;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.wte4j.Template;
+import org.wte4j.WteDataModel;
+import org.wte4j.WteDemandModelService;
+import org.wte4j.WteModelService;
+import org.wte4j.impl.cache.CacheStatistics;
+
+/**
+ * {@link WteModelService} caching the model elements of another service by
+ * input type and properties, so that bean introspection or database metadata
+ * is read once per model definition. Models are always created by the
+ * wrapped service. Model keys are passed on if the wrapped service is a
+ * {@link WteDemandModelService}.
+ * <p>
+ * Cached model elements are kept until they are invalidated or, if a time to
+ * live is set, until they expire. The returned maps must not be modified.
+ * The same map is returned until then, the engine compiles the expressions of
+ * a template again when it gets another map.
+ */
+public class CachingModelService implements WteDemandModelService,
+		ModelElementCache {
+
+	private final WteModelService modelService;
+	private final long timeToLiveMillis;
+	private final ConcurrentMap<Key, Entry> entries = new ConcurrentHashMap<Key, Entry>();
+	private final CacheStatistics statistics = new CacheStatistics();
+
+	public CachingModelService(WteModelService modelService) {
+		this(modelService, 0);
+	}
+
+	/**
+	 * @param timeToLiveMillis
+	 *            - the time after which cached model elements are read again,
+	 *            0 to keep them until they are invalidated
+	 */
+	public CachingModelService(WteModelService modelService,
+			long timeToLiveMillis) {
+		this.modelService = modelService;
+		this.timeToLiveMillis = timeToLiveMillis;
+	}
+
+	@Override
+	public Map<String, Class<?>> listModelElements(Class<?> inputClass,
+			Map<String, String> properties) {
+		Key key = new Key(inputClass, properties);
+		Entry entry = entries.get(key);
+		long now = System.currentTimeMillis();
+		if (entry != null && !entry.isExpired(now)) {
+			statistics.recordHit();
+			return entry.modelElements;
+		}
+		statistics.recordMiss();
+		Map<String, Class<?>> modelElements = modelService.listModelElements(
+				inputClass, properties);
+		if (modelElements == null) {
+			return null;
+		}
+		Map<String, Class<?>> cached = Collections
+				.unmodifiableMap(new LinkedHashMap<String, Class<?>>(
+						modelElements));
+		long expiresAt = timeToLiveMillis > 0 ? now + timeToLiveMillis
+				: Long.MAX_VALUE;
+		entries.put(key, new Entry(cached, expiresAt));
+		return cached;
+	}
+
+	@Override
+	public List<String> listRequiredModelProperties() {
+		return modelService.listRequiredModelProperties();
+	}
+
+	@Override
+	public WteDataModel createModel(Template<?> template, Object input) {
+		return modelService.createModel(template, input);
+	}
+
+	@Override
+	public WteDataModel createModel(Template<?> template, Object input,
+			Set<String> modelKeys) {
+		if (modelService instanceof WteDemandModelService) {
+			return ((WteDemandModelService) modelService).createModel(template,
+					input, modelKeys);
+		}
+		return modelService.createModel(template, input);
+	}
+
+	@Override
+	public void invalidate(Class<?> inputClass) {
+		Iterator<Key> iterator = entries.keySet().iterator();
+		while (iterator.hasNext()) {
+			Key key = iterator.next();
+			if (key.inputClass == inputClass) {
+				iterator.remove();
+			}
+		}
+	}
+
+	@Override
+	public void invalidateAll() {
+		entries.clear();
+	}
+
+	@Override
+	public int size() {
+		return entries.size();
+	}
+
+	@Override
+	public CacheStatistics getStatistics() {
+		return statistics;
+	}
+
+	public WteModelService getModelService() {
+		return modelService;
+	}
+
+	public long getTimeToLiveMillis() {
+		return timeToLiveMillis;
+	}
+
+	private static class Entry {
+		private final Map<String, Class<?>> modelElements;
+		private final long expiresAt;
+
+		Entry(Map<String, Class<?>> modelElements, long expiresAt) {
+			this.modelElements = modelElements;
+			this.expiresAt = expiresAt;
+		}
+
+		boolean isExpired(long now) {
+			return now >= expiresAt;
+		}
+	}
+
+	private static class Key {
+		private final Class<?> inputClass;
+		private final Map<String, String> properties;
+
+		Key(Class<?> inputClass, Map<String, String> properties) {
+			this.inputClass = inputClass;
+			this.properties = properties != null ? new HashMap<String, String>(
+					properties) : Collections.<String, String> emptyMap();
+		}
+
+		@Override
+		public int hashCode() {
+			final int prime = 31;
+			int result = 1;
+			result = prime * result
+					+ ((inputClass == null) ? 0 : inputClass.hashCode());
+			result = prime * result + properties.hashCode();
+			return result;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj)
+				return true;
+			if (!(obj instanceof Key))
+				return false;
+			Key other = (Key) obj;
+			return (inputClass == null ? other.inputClass == null
+					: inputClass.equals(other.inputClass))
+					&& properties.equals(other.properties);
+		}
+	}
+}
@@ -22,23 +22,50 @@ import java.util.List;
 import java.util.Map;
 
 import org.apache.commons.beanutils.PropertyUtils;
+import org.apache.commons.lang3.ClassUtils;
 import org.wte4j.Template;
 import org.wte4j.WteDataModel;
 import org.wte4j.WteModelService;
 
+/**
+ * Model service for java beans. The properties of the input are read with a
+ * {@link BeanAccessor}. With a nesting depth greater than 0 the properties of
+ * bean valued properties are listed as nested model elements (e.g.
+ * <code>customer.address.city</code>).
+ * <p>
+ * The values of a model are read when the template uses them and kept for
+ * further reads, getters of unused properties are not called.
+ */
 public class FlatBeanModelService implements WteModelService {
 
+	private int nestingDepth = 0;
+
 	@Override
 	public Map<String, Class<?>> listModelElements(Class<?> inputClass,
 			Map<String, String> properties) {
 		Map<String, Class<?>> elements = new HashMap<String, Class<?>>();
+		addModelElements(elements, "", inputClass, nestingDepth);
+		return elements;
+	}
 
+	private void addModelElements(Map<String, Class<?>> elements,
+			String prefix, Class<?> type, int depth) {
 		for (PropertyDescriptor descriptor : PropertyUtils
-				.getPropertyDescriptors(inputClass)) {
-			elements.put(descriptor.getName(), descriptor.getPropertyType());
+				.getPropertyDescriptors(type)) {
+			String name = prefix + descriptor.getName();
+			Class<?> propertyType = descriptor.getPropertyType();
+			elements.put(name, propertyType);
+			if (depth > 0 && descriptor.getReadMethod() != null
+					&& isNestedBean(propertyType)) {
+				addModelElements(elements, name + ".", propertyType, depth - 1);
+			}
 		}
+	}
 
-		return elements;
+	private static boolean isNestedBean(Class<?> type) {
+		return type != null && !ClassUtils.isPrimitiveOrWrapper(type)
+				&& !type.isArray() && !type.isEnum()
+				&& !type.getName().startsWith("java.");
 	}
 
 	@Override
@@ -51,21 +78,32 @@ public class FlatBeanModelService implements WteModelService {
 		return new BeanModel(input);
 	}
 
-	private static class BeanModel implements WteDataModel {
+	public int getNestingDepth() {
+		return nestingDepth;
+	}
+
+	/**
+	 * @param nestingDepth
+	 *            - the depth up to which properties of nested beans are
+	 *            listed as model elements, 0 lists the properties of the
+	 *            input only
+	 */
+	public void setNestingDepth(int nestingDepth) {
+		this.nestingDepth = nestingDepth;
+	}
+
+	private static class BeanModel extends LazyDataModel {
 
-		private Object input;
+		private final Object input;
 
 		public BeanModel(Object input) {
 			this.input = input;
 		}
 
 		@Override
-		public Object getValue(String key) throws IllegalArgumentException {
-			try {
-				return PropertyUtils.getProperty(input, key);
-			} catch (Exception e) {
-				throw new IllegalArgumentException(e);
-			}
+		protected Object computeValue(String key)
+				throws IllegalArgumentException {
+			return BeanAccessor.getValue(input, key);
 		}
 
 	}
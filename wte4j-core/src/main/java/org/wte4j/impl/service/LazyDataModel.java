@@ -0,0 +1,53 @@
+/**
+ * Copyright (C) 2015 Born Informatik AG (www.born.ch)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wte4j.impl.service;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.wte4j.WteDataModel;
+
+/**
+ * Base class for models computing their values on demand. A value is
+ * computed when it is read the first time and kept for further reads, also
+ * if it is <code>null</code>. Values which are not used by a template are
+ * never computed.
+ * <p>
+ * A model is created per document and therefore not thread safe.
+ */
+public abstract class LazyDataModel implements WteDataModel {
+
+	private final Map<String, Object> values = new HashMap<String, Object>();
+
+	@Override
+	public Object getValue(String key) throws IllegalArgumentException {
+		Object value = values.get(key);
+		if (value == null && !values.containsKey(key)) {
+			value = computeValue(key);
+			values.put(key, value);
+		}
+		return value;
+	}
+
+	/**
+	 * Computes the value of a key, called once per key.
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if the model has no value for the key
+	 */
+	protected abstract Object computeValue(String key)
+			throws IllegalArgumentException;
+}
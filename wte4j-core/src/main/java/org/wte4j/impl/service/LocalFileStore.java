@@ -16,19 +16,34 @@
 package org.wte4j.impl.service;
 
 import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FilterOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
 
 import org.apache.commons.io.FileUtils;
-import org.wte4j.FileStore;
+import org.wte4j.ReadableFileStore;
 
-public class LocalFileStore implements FileStore {
+/**
+ * Stores the files in a local directory. A file is written to a temporary
+ * file in the same directory, which is renamed to the file when the stream is
+ * closed.
+ */
+public class LocalFileStore implements ReadableFileStore {
+
+	private static final String TEMP_SUFFIX = ".tmp";
 
 	private File templateDirectory;
 
 	public LocalFileStore() {
-		templateDirectory = new File(System.getProperty("user.dir")
-				+ File.pathSeparator + "templates");
+		templateDirectory = new File(System.getProperty("user.dir"),
+				"templates");
 	}
 
 	public void setTemplateDirectory(File templateDirectory) {
@@ -38,10 +53,29 @@ public class LocalFileStore implements FileStore {
 	@Override
 	public OutputStream getOutStream(String fileName) throws IOException {
 		File templateFile = new File(templateDirectory, fileName);
-		if (!templateFile.exists()) {
-			templateFile.createNewFile();
+		FileUtils.forceMkdir(templateDirectory);
+		File tempFile = File.createTempFile(fileName, TEMP_SUFFIX,
+				templateDirectory);
+		return new AtomicOutputStream(tempFile, templateFile);
+	}
+
+	@Override
+	public InputStream getInStream(String fileName) throws IOException {
+		return FileUtils.openInputStream(getExistingFile(fileName));
+	}
+
+	@Override
+	public FileChannel getChannel(String fileName) throws IOException {
+		return FileChannel.open(getExistingFile(fileName).toPath(),
+				StandardOpenOption.READ);
+	}
+
+	private File getExistingFile(String fileName) throws FileNotFoundException {
+		File templateFile = new File(templateDirectory, fileName);
+		if (!templateFile.isFile()) {
+			throw new FileNotFoundException("file " + fileName);
 		}
-		return FileUtils.openOutputStream(templateFile);
+		return templateFile;
 	}
 
 	@Override
@@ -53,4 +87,70 @@ public class LocalFileStore implements FileStore {
 		templateFile.delete();
 	}
 
+	/**
+	 * Writes to a temporary file and moves it to the target when closed. If
+	 * a write failed, the temporary file is deleted and the target is left
+	 * unchanged.
+	 */
+	private static class AtomicOutputStream extends FilterOutputStream {
+
+		private final File tempFile;
+		private final File target;
+		private boolean failed;
+		private boolean closed;
+
+		AtomicOutputStream(File tempFile, File target) throws IOException {
+			super(FileUtils.openOutputStream(tempFile));
+			this.tempFile = tempFile;
+			this.target = target;
+		}
+
+		@Override
+		public void write(int b) throws IOException {
+			try {
+				out.write(b);
+			} catch (IOException e) {
+				failed = true;
+				throw e;
+			}
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) throws IOException {
+			try {
+				out.write(b, off, len);
+			} catch (IOException e) {
+				failed = true;
+				throw e;
+			}
+		}
+
+		@Override
+		public void close() throws IOException {
+			if (closed) {
+				return;
+			}
+			closed = true;
+			try {
+				out.close();
+				if (!failed) {
+					moveToTarget();
+				}
+			} finally {
+				tempFile.delete();
+			}
+		}
+
+		private void moveToTarget() throws IOException {
+			try {
+				Files.move(tempFile.toPath(), target.toPath(),
+						StandardCopyOption.ATOMIC_MOVE,
+						StandardCopyOption.REPLACE_EXISTING);
+			} catch (AtomicMoveNotSupportedException e) {
+				Files.move(tempFile.toPath(), target.toPath(),
+						StandardCopyOption.REPLACE_EXISTING);
+			}
+		}
+	}
+
 }
@@ -0,0 +1,47 @@
+/**
+ * Copyright (C) 2015 Born Informatik AG (www.born.ch)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wte4j.impl.service;
+
+import java.util.Map;
+
+import org.wte4j.impl.cache.CacheStatistics;
+
+/**
+ * Cache of the model elements of a model service. The engine looks the model
+ * elements up for each template context of a model service implementing this
+ * interface and compiles the expressions of a template again when the cache
+ * returns another map, e.g. after an invalidation.
+ */
+public interface ModelElementCache {
+
+	/**
+	 * Returns the cached model elements of an input type and properties. The
+	 * same map is returned until the entry is invalidated or expires.
+	 */
+	Map<String, Class<?>> listModelElements(Class<?> inputClass,
+			Map<String, String> properties);
+
+	/**
+	 * Removes the cached model elements of an input type for all properties.
+	 */
+	void invalidate(Class<?> inputClass);
+
+	void invalidateAll();
+
+	int size();
+
+	CacheStatistics getStatistics();
+}
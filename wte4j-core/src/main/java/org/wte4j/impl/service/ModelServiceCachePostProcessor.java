@@ -0,0 +1,109 @@
+/**
+ * Copyright (C) 2015 Born Informatik AG (www.born.ch)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wte4j.impl.service;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.Proxy;
+import java.util.Map;
+
+import org.aopalliance.intercept.MethodInterceptor;
+import org.aopalliance.intercept.MethodInvocation;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.aop.framework.ProxyFactory;
+import org.springframework.aop.support.AopUtils;
+import org.springframework.beans.BeansException;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.stereotype.Component;
+import org.wte4j.WteModelService;
+
+/**
+ * Caches the model elements of every {@link WteModelService} bean. The bean
+ * is replaced by a proxy of its class and all its interfaces, which passes
+ * {@link WteModelService#listModelElements(Class, Map)} to a
+ * {@link CachingModelService} and implements {@link ModelElementCache} to
+ * control the cache. All other methods are called on the bean. A final class
+ * is proxied by its interfaces only.
+ * <p>
+ * A bean which already is a {@link ModelElementCache}, e.g. a
+ * {@link CachingModelService} with a time to live, is not wrapped.
+ */
+@Component
+public class ModelServiceCachePostProcessor implements BeanPostProcessor {
+
+	private final Logger logger = LoggerFactory.getLogger(getClass());
+
+	@Override
+	public Object postProcessBeforeInitialization(Object bean, String beanName)
+			throws BeansException {
+		return bean;
+	}
+
+	@Override
+	public Object postProcessAfterInitialization(Object bean, String beanName)
+			throws BeansException {
+		if (!(bean instanceof WteModelService)
+				|| bean instanceof ModelElementCache) {
+			return bean;
+		}
+		ProxyFactory proxyFactory = new ProxyFactory(bean);
+		proxyFactory.addInterface(ModelElementCache.class);
+		proxyFactory.setProxyTargetClass(isClassProxyable(bean.getClass()));
+		proxyFactory.addAdvice(new CacheInterceptor(new CachingModelService(
+				(WteModelService) bean)));
+		logger.info("model elements of {} are cached", beanName);
+		return proxyFactory.getProxy(bean.getClass().getClassLoader());
+	}
+
+	private static boolean isClassProxyable(Class<?> type) {
+		return !Modifier.isFinal(type.getModifiers())
+				&& !Proxy.isProxyClass(type);
+	}
+
+	private static class CacheInterceptor implements MethodInterceptor {
+
+		private final CachingModelService cache;
+
+		CacheInterceptor(CachingModelService cache) {
+			this.cache = cache;
+		}
+
+		@Override
+		@SuppressWarnings("unchecked")
+		public Object invoke(MethodInvocation invocation) throws Throwable {
+			Method method = invocation.getMethod();
+			Object[] arguments = invocation.getArguments();
+			if (method.getDeclaringClass() == ModelElementCache.class) {
+				return AopUtils.invokeJoinpointUsingReflection(cache, method,
+						arguments);
+			}
+			if (isListModelElements(method)) {
+				return cache.listModelElements((Class<?>) arguments[0],
+						(Map<String, String>) arguments[1]);
+			}
+			return invocation.proceed();
+		}
+
+		private static boolean isListModelElements(Method method) {
+			Class<?>[] parameterTypes = method.getParameterTypes();
+			return method.getName().equals("listModelElements")
+					&& parameterTypes.length == 2
+					&& parameterTypes[0] == Class.class
+					&& parameterTypes[1] == Map.class;
+		}
+	}
+}
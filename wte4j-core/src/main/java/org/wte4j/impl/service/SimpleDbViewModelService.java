@@ -17,22 +17,33 @@ package org.wte4j.impl.service;
 
 import java.sql.Connection;
 import java.sql.DatabaseMetaData;
+import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.ResultSetMetaData;
 import java.sql.SQLException;
-import java.sql.Statement;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.regex.Pattern;
 
 import javax.sql.DataSource;
 
+import org.apache.commons.lang3.StringUtils;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.wte4j.MappingDetail;
 import org.wte4j.Template;
 import org.wte4j.WteDataModel;
+import org.wte4j.WteDemandModelService;
 import org.wte4j.WteException;
-import org.wte4j.WteModelService;
+import org.wte4j.impl.expression.WteExpression;
 
 /**
  * Implementation of WteModelService for a model which is retrieving its data
@@ -41,17 +52,36 @@ import org.wte4j.WteModelService;
  * PRIMARY_KEY_COLUMN_NAME. The primary key column must be of integral type. To
  * retrieve a row from the view the method <code>createModel(..)</code> is used:
  * parameter <code>input</code> must contain the primary key of the row and must
- * be of type Integer.
- * 
+ * be of type Integer. Many rows are retrieved at once with
+ * {@link #createModels(Template, Collection)}.
+ * <p>
+ * Only the columns referenced by the content controls of a template are
+ * selected. The statements are built once per view and referenced columns and
+ * executed as prepared statements, which a data source with a statement cache
+ * reuses. When the engine passes the model keys of a template (see
+ * {@link WteDemandModelService}) the content controls are not parsed again.
+ * The statements of a view are discarded whenever its columns are read by
+ * {@link #listModelElements(Class, Map)}.
  */
-public class SimpleDbViewModelService implements WteModelService {
+public class SimpleDbViewModelService implements WteDemandModelService {
 
 	public static final String VIEW_NAME = "viewName";
 	public static final String PRIMARY_KEY_COLUMN_NAME = "pkColumnName";
 
+	/**
+	 * Number of primary keys selected by one statement of
+	 * {@link #createModels(Template, Collection)}
+	 */
+	static final int MAX_KEYS_PER_STATEMENT = 100;
+
+	private static final Pattern IDENTIFIER = Pattern
+			.compile("[A-Za-z_][A-Za-z0-9_$]*(\\.[A-Za-z_][A-Za-z0-9_$]*)?");
+
 	@Autowired
 	protected DataSource ds;
 
+	private final ConcurrentMap<ProjectionKey, Projection> projections = new ConcurrentHashMap<ProjectionKey, Projection>();
+
 	protected SimpleDbViewModelService() {
 	}
 
@@ -64,33 +94,37 @@ public class SimpleDbViewModelService implements WteModelService {
 			Map<String, String> properties) {
 		Map<String, Class<?>> elements = new HashMap<String, Class<?>>();
 		String viewName = properties.get(VIEW_NAME);
-		Connection connection = null;
-		ResultSet rs = null;
 		try {
-			try {
-				connection = ds.getConnection();
-				DatabaseMetaData metaData = ds.getConnection().getMetaData();
-				rs = metaData.getColumns(null, null, viewName, null);
+			for (Column column : readColumns(viewName)) {
+				elements.put(column.key, column.type);
+			}
+		} catch (SQLException e) {
+			throw new WteException("error in view " + viewName, e);
+		}
+		// the model elements are read again after a CachingModelService
+		// invalidated them or they expired, the statements follow them
+		removeProjections(viewName);
+		return elements;
+	}
 
+	private List<Column> readColumns(String viewName) throws SQLException {
+		List<Column> columns = new ArrayList<Column>();
+		Connection connection = ds.getConnection();
+		try {
+			DatabaseMetaData metaData = connection.getMetaData();
+			ResultSet rs = metaData.getColumns(null, null, viewName, null);
+			try {
 				while (rs.next()) {
-					String columnName = rs.getString("COLUMN_NAME")
-							.toLowerCase();
-					Class<?> type = MapperSqlType.map(rs.getInt("DATA_TYPE"));
-					elements.put(columnName, type);
+					columns.add(new Column(rs.getString("COLUMN_NAME"),
+							MapperSqlType.map(rs.getInt("DATA_TYPE"))));
 				}
-
 			} finally {
-				if (rs != null) {
-					rs.close();
-				}
-				if (connection != null) {
-					connection.close();
-				}
+				rs.close();
 			}
-		} catch (SQLException e) {
-			throw new WteException("error in view " + viewName, e);
+		} finally {
+			connection.close();
 		}
-		return elements;
+		return columns;
 	}
 
 	@Override
@@ -103,42 +137,312 @@ public class SimpleDbViewModelService implements WteModelService {
 
 	@Override
 	public WteDataModel createModel(Template<?> template, Object input) {
-		String viewName = template.getProperties().get(VIEW_NAME);
-		String pkColumnName = template.getProperties().get(
-				PRIMARY_KEY_COLUMN_NAME);
+		return createModel(getProjection(template, listReferencedKeys(template)),
+				input);
+	}
+
+	@Override
+	public WteDataModel createModel(Template<?> template, Object input,
+			Set<String> modelKeys) {
+		Set<String> referencedKeys = new TreeSet<String>();
+		for (String modelKey : modelKeys) {
+			referencedKeys.add(modelKey.toLowerCase());
+		}
+		return createModel(getProjection(template, referencedKeys), input);
+	}
+
+	private WteDataModel createModel(Projection projection, Object input) {
 		Integer pk = (Integer) input;
-		Map<String, Object> dataMap = new HashMap<String, Object>(); //TODO PreparedStatement!
-		String query = "select * from " + viewName + " where " + pkColumnName
-				+ "=" + pk;
+		Map<String, Object> dataMap = new HashMap<String, Object>();
 		try {
-			Connection connection = null;
-			Statement statement = null;
+			Connection connection = ds.getConnection();
 			try {
-				connection = ds.getConnection();
-				statement = connection.createStatement();
-				ResultSet rs = statement.executeQuery(query);
-				ResultSetMetaData metaData = rs.getMetaData();
-				while (rs.next()) {
-					for (int i = 1; i <= metaData.getColumnCount(); i++) {
-						String columnName = metaData.getColumnName(i)
-								.toLowerCase();
-						dataMap.put(columnName, rs.getObject(i));
+				PreparedStatement statement = connection
+						.prepareStatement(projection.selectByKey);
+				try {
+					statement.setObject(1, pk);
+					ResultSet rs = statement.executeQuery();
+					try {
+						if (rs.next()) {
+							dataMap = readRow(rs);
+						}
+					} finally {
+						rs.close();
 					}
+				} finally {
+					statement.close();
 				}
-
 			} finally {
-				if (statement != null) {
+				connection.close();
+			}
+		} catch (SQLException e) {
+			throw new WteException("error in createModel (" + projection
+					+ ", " + pk + ")", e);
+		}
+		return new WteMapModel(dataMap);
+	}
+
+	/**
+	 * Creates the models of many rows with a few statements, each selecting up
+	 * to {@value #MAX_KEYS_PER_STATEMENT} rows by their primary keys.
+	 * 
+	 * @param template
+	 *            - the template to create the models for
+	 * @param input
+	 *            - the primary keys of the rows, see
+	 *            {@link #createModel(Template, Object)}
+	 * @return the models by primary key in the order of the given keys. Keys
+	 *         without a row in the view are not contained.
+	 */
+	public Map<Integer, WteDataModel> createModels(Template<?> template,
+			Collection<Integer> input) {
+		List<Integer> pks = new ArrayList<Integer>(input);
+		if (pks.isEmpty()) {
+			return new LinkedHashMap<Integer, WteDataModel>();
+		}
+		Projection projection = getProjection(template,
+				listReferencedKeys(template));
+		Map<Long, Map<String, Object>> rows = new HashMap<Long, Map<String, Object>>();
+		try {
+			Connection connection = ds.getConnection();
+			try {
+				PreparedStatement statement = connection
+						.prepareStatement(projection.selectByKeys);
+				try {
+					for (int i = 0; i < pks.size(); i += MAX_KEYS_PER_STATEMENT) {
+						List<Integer> pksOfStatement = pks.subList(i,
+								Math.min(pks.size(), i + MAX_KEYS_PER_STATEMENT));
+						selectRows(statement, projection, pksOfStatement, rows);
+					}
+				} finally {
 					statement.close();
 				}
-				if (connection != null) {
-					connection.close();
-				}
+			} finally {
+				connection.close();
 			}
 		} catch (SQLException e) {
-			throw new WteException("error in createModel (" + viewName + ", "
-					+ pkColumnName + ", " + pk + ")", e);
+			throw new WteException("error in createModels (" + projection
+					+ ", " + pks.size() + " rows)", e);
+		}
+
+		Map<Integer, WteDataModel> models = new LinkedHashMap<Integer, WteDataModel>();
+		for (Integer pk : pks) {
+			Map<String, Object> dataMap = rows.get(pk.longValue());
+			if (dataMap != null) {
+				models.put(pk, new WteMapModel(dataMap));
+			}
+		}
+		return models;
+	}
+
+	/**
+	 * Binds the keys to the statement. Unused parameters are bound to the
+	 * last key, so all statements have the same number of parameters.
+	 */
+	private void selectRows(PreparedStatement statement, Projection projection,
+			List<Integer> pks, Map<Long, Map<String, Object>> rows)
+			throws SQLException {
+		for (int i = 0; i < MAX_KEYS_PER_STATEMENT; i++) {
+			statement.setObject(i + 1, pks.get(Math.min(i, pks.size() - 1)));
+		}
+		ResultSet rs = statement.executeQuery();
+		try {
+			while (rs.next()) {
+				Map<String, Object> dataMap = readRow(rs);
+				Number pk = (Number) rs.getObject(projection.pkColumnName);
+				rows.put(pk.longValue(), dataMap);
+			}
+		} finally {
+			rs.close();
+		}
+	}
+
+	private Map<String, Object> readRow(ResultSet rs) throws SQLException {
+		Map<String, Object> dataMap = new HashMap<String, Object>();
+		ResultSetMetaData metaData = rs.getMetaData();
+		for (int i = 1; i <= metaData.getColumnCount(); i++) {
+			String columnName = metaData.getColumnLabel(i).toLowerCase();
+			dataMap.put(columnName, rs.getObject(i));
+		}
+		return dataMap;
+	}
+
+	/**
+	 * Returns the statements selecting the referenced columns of the view of
+	 * the template. The columns of the view are read once per view and set of
+	 * referenced model keys.
+	 */
+	private Projection getProjection(Template<?> template,
+			Set<String> referencedKeys) {
+		String viewName = template.getProperties().get(VIEW_NAME);
+		String pkColumnName = template.getProperties().get(
+				PRIMARY_KEY_COLUMN_NAME);
+		ProjectionKey key = new ProjectionKey(viewName, pkColumnName,
+				referencedKeys);
+		Projection projection = projections.get(key);
+		if (projection == null) {
+			try {
+				projection = new Projection(key, readColumns(viewName));
+			} catch (SQLException e) {
+				throw new WteException("error in view " + viewName, e);
+			}
+			projections.putIfAbsent(key, projection);
+		}
+		return projection;
+	}
+
+	/**
+	 * Lists the model keys of the content controls of a template in lower
+	 * case.
+	 */
+	private Set<String> listReferencedKeys(Template<?> template) {
+		Set<String> keys = new TreeSet<String>();
+		List<String> contentIds = template.listContentIds();
+		if (contentIds == null) {
+			return keys;
+		}
+		Map<String, MappingDetail> contentMapping = template
+				.getContentMapping();
+		for (String contentId : contentIds) {
+			WteExpression expression = new WteExpression();
+			expression.setExpressionString(contentId);
+			String modelKey = expression.getContentKey();
+			MappingDetail mappingDetail = contentMapping != null ? contentMapping
+					.get(modelKey) : null;
+			if (mappingDetail != null
+					&& StringUtils.isNotEmpty(mappingDetail.getModelKey())) {
+				modelKey = mappingDetail.getModelKey();
+			}
+			keys.add(modelKey.toLowerCase());
+		}
+		return keys;
+	}
+
+	/**
+	 * Discards the statements built for the views, e.g. after a view has
+	 * been changed.
+	 */
+	public void clearStatementCache() {
+		projections.clear();
+	}
+
+	private void removeProjections(String viewName) {
+		Iterator<ProjectionKey> iterator = projections.keySet().iterator();
+		while (iterator.hasNext()) {
+			if (iterator.next().viewName.equals(viewName)) {
+				iterator.remove();
+			}
+		}
+	}
+
+	private static String checkIdentifier(String identifier) {
+		if (identifier == null || !IDENTIFIER.matcher(identifier).matches()) {
+			throw new WteException("illegal view or column name: "
+					+ identifier);
+		}
+		return identifier;
+	}
+
+	private static class Column {
+		private final String name;
+		private final String key;
+		private final Class<?> type;
+
+		Column(String name, Class<?> type) {
+			this.name = name;
+			this.key = name.toLowerCase();
+			this.type = type;
+		}
+	}
+
+	private static class ProjectionKey {
+		private final String viewName;
+		private final String pkColumnName;
+		private final Set<String> referencedKeys;
+
+		ProjectionKey(String viewName, String pkColumnName,
+				Set<String> referencedKeys) {
+			this.viewName = checkIdentifier(viewName);
+			this.pkColumnName = checkIdentifier(pkColumnName);
+			this.referencedKeys = referencedKeys;
+		}
+
+		@Override
+		public int hashCode() {
+			final int prime = 31;
+			int result = 1;
+			result = prime * result + viewName.hashCode();
+			result = prime * result + pkColumnName.hashCode();
+			result = prime * result + referencedKeys.hashCode();
+			return result;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj)
+				return true;
+			if (!(obj instanceof ProjectionKey))
+				return false;
+			ProjectionKey other = (ProjectionKey) obj;
+			return viewName.equals(other.viewName)
+					&& pkColumnName.equals(other.pkColumnName)
+					&& referencedKeys.equals(other.referencedKeys);
+		}
+	}
+
+	/**
+	 * The statements selecting the referenced columns of a view. The primary
+	 * key column is always selected. If the template does not reference any
+	 * column of the view, all columns are selected.
+	 */
+	private static class Projection {
+		private final String viewName;
+		private final String pkColumnName;
+		private final String selectByKey;
+		private final String selectByKeys;
+
+		Projection(ProjectionKey key, List<Column> columns) {
+			viewName = key.viewName;
+			pkColumnName = key.pkColumnName;
+			if (columns.isEmpty()) {
+				throw new WteException("view " + viewName + " has no columns");
+			}
+			List<String> selected = new ArrayList<String>();
+			boolean pkSelected = false;
+			for (Column column : columns) {
+				if (key.referencedKeys.contains(column.key)) {
+					selected.add(quote(column.name));
+					pkSelected |= column.name.equalsIgnoreCase(pkColumnName);
+				}
+			}
+			if (selected.isEmpty()) {
+				selected.add("*");
+			} else if (!pkSelected) {
+				selected.add(pkColumnName);
+			}
+			String select = "select " + StringUtils.join(selected, ", ")
+					+ " from " + viewName + " where " + pkColumnName;
+			selectByKey = select + " = ?";
+			selectByKeys = select + " in ("
+					+ StringUtils.repeat("?", ", ", MAX_KEYS_PER_STATEMENT)
+					+ ")";
+		}
+
+		/**
+		 * Column names are read from the database metadata, names which are
+		 * not plain identifiers are quoted as they are.
+		 */
+		private static String quote(String columnName) {
+			if (IDENTIFIER.matcher(columnName).matches()) {
+				return columnName;
+			}
+			return "\"" + columnName.replace("\"", "\"\"") + "\"";
+		}
+
+		@Override
+		public String toString() {
+			return viewName + ", " + pkColumnName;
 		}
-		return new WteMapModel(dataMap);
 	}
 
 }
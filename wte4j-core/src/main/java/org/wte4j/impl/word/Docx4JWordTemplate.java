@@ -15,32 +15,43 @@
  */
 package org.wte4j.impl.word;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 import javax.xml.bind.JAXBException;
 
 import org.apache.commons.collections4.CollectionUtils;
 import org.apache.poi.util.IOUtils;
-import org.docx4j.Docx4J;
 import org.docx4j.XmlUtils;
-import org.docx4j.convert.out.FOSettings;
+import org.docx4j.convert.out.common.preprocess.PartialDeepCopy;
 import org.docx4j.jaxb.XPathBinderAssociationIsPartialException;
 import org.docx4j.model.structure.HeaderFooterPolicy;
 import org.docx4j.model.structure.SectionWrapper;
 import org.docx4j.openpackaging.exceptions.Docx4JException;
 import org.docx4j.openpackaging.io.SaveToZipFile;
 import org.docx4j.openpackaging.packages.WordprocessingMLPackage;
+import org.docx4j.openpackaging.parts.JaxbXmlPart;
+import org.docx4j.openpackaging.parts.Part;
+import org.docx4j.openpackaging.parts.WordprocessingML.BinaryPart;
 import org.docx4j.openpackaging.parts.WordprocessingML.FooterPart;
 import org.docx4j.openpackaging.parts.WordprocessingML.HeaderPart;
+import org.docx4j.openpackaging.parts.relationships.Namespaces;
 import org.docx4j.wml.ContentAccessor;
 import org.docx4j.wml.SdtBlock;
 import org.docx4j.wml.SdtElement;
 import org.wte4j.WteException;
+import org.wte4j.impl.word.RawZipFile.EntryContent;
 
 /**
  * Ein {@linkplain Docx4JWordTemplate} ist ein Word im OpenXml Format mit
@@ -49,11 +60,34 @@ import org.wte4j.WteException;
  */
 public class Docx4JWordTemplate {
 
+	/**
+	 * Relationship types of the parts which may contain content controls
+	 */
+	private static final Set<String> DYNAMIC_PART_TYPES = new HashSet<String>(
+			Arrays.asList(Namespaces.DOCUMENT, Namespaces.HEADER, Namespaces.FOOTER));
+
+	/**
+	 * Converter used if the caller does not provide one
+	 */
+	private static final PdfConverter DEFAULT_PDF_CONVERTER = new PdfConverter();
+
 	private final WordprocessingMLPackage wordMLPackage;
 	private List<PlainTextContent> plainTextContentControls;
+	/**
+	 * The zip file the package was loaded from, <code>null</code> if unknown
+	 * or not supported
+	 */
+	private final RawZipFile source;
+	/**
+	 * <code>true</code> if only the parts containing content controls may
+	 * differ from {@link #source}
+	 */
+	private final boolean workingCopy;
 
 	public Docx4JWordTemplate() {
 		try {
+			source = null;
+			workingCopy = false;
 			wordMLPackage = WordprocessingMLPackage.createPackage();
 			plainTextContentControls = new ArrayList<PlainTextContent>();
 		} catch (Docx4JException e) {
@@ -63,8 +97,22 @@ public class Docx4JWordTemplate {
 	}
 
 	public Docx4JWordTemplate(InputStream in) throws IOException {
+		this(IOUtils.toByteArray(in));
+	}
+
+	/**
+	 * Reads a template from the given docx content. The array is kept as the
+	 * source of the template and must not be changed afterwards.
+	 * 
+	 * @param content
+	 *            - the docx content
+	 */
+	public Docx4JWordTemplate(byte[] content) throws IOException {
 		try {
-			wordMLPackage = WordprocessingMLPackage.load(in);
+			source = RawZipFile.read(content);
+			workingCopy = false;
+			wordMLPackage = WordprocessingMLPackage.load(new ByteArrayInputStream(content));
+			loadParts();
 			initPlainTextControlList();
 		} catch (Docx4JException e) {
 			unwrapIOException(e);
@@ -72,12 +120,73 @@ public class Docx4JWordTemplate {
 		}
 	}
 
+	/**
+	 * Creates a template on a copy of an other template (see
+	 * {@link #copyPackage()}).
+	 * 
+	 * @param original
+	 *            - the template the package was copied from
+	 */
+	protected Docx4JWordTemplate(WordprocessingMLPackage wordMLPackage, Docx4JWordTemplate original) {
+		try {
+			this.wordMLPackage = wordMLPackage;
+			this.source = original.source;
+			this.workingCopy = true;
+			initPlainTextControlList();
+		} catch (Docx4JException e) {
+			throw new WteException("Error while reading document", e);
+		}
+	}
+
+	/**
+	 * Loads the content of all parts, so that concurrent copies (
+	 * {@link #copyPackage()}) only read the package.
+	 */
+	private void loadParts() throws Docx4JException {
+		for (Part part : wordMLPackage.getParts().getParts().values()) {
+			if (part instanceof JaxbXmlPart) {
+				((JaxbXmlPart<?>) part).getContents();
+			} else if (part instanceof BinaryPart) {
+				((BinaryPart) part).getBuffer();
+			}
+		}
+	}
+
+	/**
+	 * Creates a copy of the package in which the parts containing content
+	 * controls are deep copies. All other parts share their content with this
+	 * package and must not be modified.
+	 */
+	protected WordprocessingMLPackage copyPackage() {
+		try {
+			WordprocessingMLPackage copy = (WordprocessingMLPackage) PartialDeepCopy
+					.process(wordMLPackage, DYNAMIC_PART_TYPES);
+			for (Part part : copy.getParts().getParts().values()) {
+				if (part instanceof BinaryPart) {
+					// buffer positions are changed when writing
+					BinaryPart binaryPart = (BinaryPart) part;
+					binaryPart.setBinaryData(binaryPart.getBuffer().duplicate());
+				}
+			}
+			return copy;
+		} catch (Docx4JException e) {
+			throw new WteException("Can not copy document", e);
+		}
+	}
+
 	private static void unwrapIOException(Exception e) throws IOException {
 		if (e.getCause() instanceof IOException) {
 			throw (IOException) e.getCause();
 		}
 	}
 
+	/**
+	 * @return the zip file this template was loaded from or <code>null</code>
+	 */
+	RawZipFile getSource() {
+		return source;
+	}
+
 	protected WordprocessingMLPackage getWordMLPackage() {
 		return wordMLPackage;
 	}
@@ -232,14 +341,52 @@ public class Docx4JWordTemplate {
 	 */
 	public void writeAsOpenXML(OutputStream out) throws IOException {
 		try {
-			SaveToZipFile saveToZipFile = new SaveToZipFile(wordMLPackage);
-			saveToZipFile.save(out);
+			Map<String, byte[]> dynamicParts = workingCopy ? marshalDynamicParts() : null;
+			if (dynamicParts != null) {
+				Map<String, EntryContent> dynamicEntries = new HashMap<String, EntryContent>();
+				for (Map.Entry<String, byte[]> part : dynamicParts.entrySet()) {
+					dynamicEntries.put(part.getKey(), RawZipFile.content(part.getValue()));
+				}
+				source.write(out, dynamicEntries);
+			} else {
+				SaveToZipFile saveToZipFile = new SaveToZipFile(wordMLPackage);
+				saveToZipFile.save(out);
+			}
 		} catch (Docx4JException e) {
 			unwrapIOException(e);
 			throw new WteException("Can not marshall document", e);
+		} catch (JAXBException e) {
+			throw new WteException("Can not marshall document", e);
 		}
 	}
 
+	/**
+	 * Marshals the parts which may contain content controls. In a working copy
+	 * all other parts are unchanged and are copied from the original zip file
+	 * without being marshalled and compressed again.
+	 * 
+	 * @return the content of the parts by zip entry name or <code>null</code>
+	 *         if the parts are not found in the original zip file
+	 */
+	Map<String, byte[]> marshalDynamicParts() throws JAXBException {
+		if (source == null) {
+			return null;
+		}
+		Map<String, byte[]> entries = new HashMap<String, byte[]>();
+		for (Part part : wordMLPackage.getParts().getParts().values()) {
+			if (DYNAMIC_PART_TYPES.contains(part.getRelationshipType())) {
+				String entryName = part.getPartName().getName().substring(1);
+				if (!(part instanceof JaxbXmlPart) || !source.contains(entryName)) {
+					return null;
+				}
+				ByteArrayOutputStream content = new ByteArrayOutputStream();
+				((JaxbXmlPart<?>) part).marshal(content);
+				entries.put(entryName, content.toByteArray());
+			}
+		}
+		return entries;
+	}
+
 	/**
 	 * Writes this document as PDF to a OutputStream and closed the stream in
 	 * any case.
@@ -249,17 +396,24 @@ public class Docx4JWordTemplate {
 	 * @throws IOException
 	 */
 	public void writeAsPDF(OutputStream out) throws IOException {
+		writeAsPDF(out, DEFAULT_PDF_CONVERTER);
+	}
 
-        WordprocessingMLPackage mlPackage = getWordMLPackage();
-        
-        try {
-            FOSettings foSettings = Docx4J.createFOSettings();
-            foSettings.setWmlPackage(mlPackage);
-            Docx4J.toFO(foSettings, out, Docx4J.FLAG_EXPORT_PREFER_XSL);
-        } catch (Exception e) {
-        	throw new WteException("Unable to create PDF Document", e);
-        } finally {
-        	out.close();
-        }
+	/**
+	 * Writes this document as PDF to a OutputStream and closed the stream in
+	 * any case.
+	 * 
+	 * @param out
+	 *            - the Outputstream to write the document.
+	 * @param converter
+	 *            - the converter creating the PDF
+	 * @throws IOException
+	 */
+	public void writeAsPDF(OutputStream out, PdfConverter converter) throws IOException {
+		try {
+			converter.convert(getWordMLPackage(), out);
+		} finally {
+			out.close();
+		}
 	}
 }
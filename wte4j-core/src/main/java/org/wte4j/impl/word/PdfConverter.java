@@ -0,0 +1,226 @@
+/**
+ * Copyright (C) 2015 Born Informatik AG (www.born.ch)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wte4j.impl.word;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+
+import org.apache.commons.lang3.StringUtils;
+import org.apache.fop.apps.FOPException;
+import org.apache.fop.apps.FopFactory;
+import org.docx4j.Docx4J;
+import org.docx4j.convert.out.FOSettings;
+import org.docx4j.convert.out.fo.renderers.FORendererApacheFOP;
+import org.docx4j.fonts.IdentityPlusMapper;
+import org.docx4j.fonts.PhysicalFonts;
+import org.docx4j.openpackaging.packages.WordprocessingMLPackage;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+import org.wte4j.WteException;
+import org.wte4j.impl.cache.CacheStatistics;
+
+/**
+ * Converts word documents to PDF. The physical fonts of docx4j are global to
+ * the JVM, so they are discovered once for all converters with a single font
+ * expression (see {@link #setFontRegex(String)}). The FOP factories are
+ * cached per converter by their configuration, so documents using the
+ * same fonts share the font setup. The number of concurrent conversions is
+ * limited, further conversions wait for a free slot.
+ */
+@Component
+public class PdfConverter {
+
+	public static final int DEFAULT_MAX_FOP_FACTORIES = 16;
+
+	private static final Object FONT_LOCK = new Object();
+	private static volatile boolean fontsDiscovered;
+	private static volatile String fontRegex;
+
+	private final Logger logger = LoggerFactory.getLogger(getClass());
+
+	private final CachingFopRenderer renderer = new CachingFopRenderer();
+	private final CacheStatistics statistics = new CacheStatistics();
+	private volatile Semaphore conversions;
+	private int maxConcurrentConversions;
+
+	public PdfConverter() {
+		setMaxConcurrentConversions(Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * Converts a document to PDF
+	 * 
+	 * @param wordMLPackage
+	 *            - the document to convert, the document must not be modified
+	 *            during the conversion
+	 * @param out
+	 *            - the stream to write the PDF to, the stream is not closed
+	 * @throws InterruptedIOException
+	 *             if the thread is interrupted while waiting for a free slot
+	 */
+	public void convert(WordprocessingMLPackage wordMLPackage, OutputStream out) throws IOException {
+		discoverFonts();
+		Semaphore currentConversions = conversions;
+		try {
+			currentConversions.acquire();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("interrupted while waiting for a free PDF conversion");
+		}
+		try {
+			render(wordMLPackage, out);
+		} finally {
+			currentConversions.release();
+		}
+	}
+
+	void render(WordprocessingMLPackage wordMLPackage, OutputStream out) {
+		try {
+			FOSettings foSettings = Docx4J.createFOSettings();
+			foSettings.setWmlPackage(wordMLPackage);
+			foSettings.setCustomFoRenderer(renderer);
+			Docx4J.toFO(foSettings, out, Docx4J.FLAG_EXPORT_PREFER_XSL);
+		} catch (Exception e) {
+			throw new WteException("Unable to create PDF Document", e);
+		}
+	}
+
+	/**
+	 * Discovers the physical fonts, if not done yet. The fonts are discovered
+	 * once by the first conversion, call this method to discover them at
+	 * startup.
+	 */
+	public void discoverFonts() {
+		if (fontsDiscovered) {
+			return;
+		}
+		synchronized (FONT_LOCK) {
+			if (!fontsDiscovered) {
+				PhysicalFonts.setRegex(fontRegex);
+				// the mapper discovers the fonts when its class is initialized
+				new IdentityPlusMapper();
+				fontsDiscovered = true;
+				logger.debug("{} physical fonts discovered", PhysicalFonts.getPhysicalFonts().size());
+			}
+		}
+	}
+
+	public int getMaxConcurrentConversions() {
+		return maxConcurrentConversions;
+	}
+
+	/**
+	 * Sets the maximum number of documents converted at the same time. Default
+	 * is the number of available processors.
+	 */
+	public synchronized void setMaxConcurrentConversions(int maxConcurrentConversions) {
+		if (maxConcurrentConversions < 1) {
+			throw new IllegalArgumentException("maxConcurrentConversions must be greater than 0");
+		}
+		this.maxConcurrentConversions = maxConcurrentConversions;
+		this.conversions = new Semaphore(maxConcurrentConversions, true);
+	}
+
+	public String getFontRegex() {
+		return fontRegex;
+	}
+
+	/**
+	 * Restricts the physical fonts used in PDF documents to the fonts with a
+	 * name matching the given regular expression. All fonts are used if not
+	 * set. The expression is shared by all converters, like the fonts which
+	 * are discovered once.
+	 * 
+	 * @throws IllegalStateException
+	 *             if the fonts are already discovered with another expression
+	 */
+	public void setFontRegex(String fontRegex) throws IllegalStateException {
+		synchronized (FONT_LOCK) {
+			if (fontsDiscovered && !StringUtils.equals(PdfConverter.fontRegex, fontRegex)) {
+				throw new IllegalStateException("fonts are already discovered with the expression "
+						+ PdfConverter.fontRegex);
+			}
+			PdfConverter.fontRegex = fontRegex;
+		}
+	}
+
+	/**
+	 * @return the hit statistics of the cached FOP factories
+	 */
+	public CacheStatistics getStatistics() {
+		return statistics;
+	}
+
+	/**
+	 * @return the number of cached FOP factories
+	 */
+	public int getFopFactoryCount() {
+		return renderer.size();
+	}
+
+	/**
+	 * Renders the FO with FOP factories cached by their configuration. A
+	 * factory is thread safe, it holds the configured fonts.
+	 */
+	private class CachingFopRenderer extends FORendererApacheFOP {
+
+		private final Map<String, FopFactory> fopFactories = new LinkedHashMap<String, FopFactory>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, FopFactory> eldest) {
+				if (size() > DEFAULT_MAX_FOP_FACTORIES) {
+					statistics.recordEviction();
+					return true;
+				}
+				return false;
+			}
+		};
+
+		@Override
+		protected FopFactory getFopFactory(String userConfig) throws FOPException {
+			FopFactory fopFactory;
+			synchronized (fopFactories) {
+				fopFactory = fopFactories.get(userConfig);
+			}
+			if (fopFactory != null) {
+				statistics.recordHit();
+				return fopFactory;
+			}
+			statistics.recordMiss();
+			fopFactory = createFopFactory(userConfig);
+			synchronized (fopFactories) {
+				FopFactory existing = fopFactories.get(userConfig);
+				if (existing != null) {
+					return existing;
+				}
+				fopFactories.put(userConfig, fopFactory);
+			}
+			return fopFactory;
+		}
+
+		int size() {
+			synchronized (fopFactories) {
+				return fopFactories.size();
+			}
+		}
+	}
+}
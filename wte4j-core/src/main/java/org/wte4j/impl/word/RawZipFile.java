@@ -0,0 +1,378 @@
+/**
+ * Copyright (C) 2015 Born Informatik AG (www.born.ch)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wte4j.impl.word;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+/**
+ * Read only view on the entries of a zip file held in memory. The entries can
+ * be written to a new zip file without inflating and deflating them again,
+ * only replaced entries are compressed. Zip64 and encrypted files are not
+ * supported, see {@link #read(byte[])}.
+ */
+class RawZipFile {
+
+	private static final int LOCAL_HEADER_SIGNATURE = 0x04034b50;
+	private static final int CENTRAL_HEADER_SIGNATURE = 0x02014b50;
+	private static final int END_OF_CENTRAL_DIRECTORY_SIGNATURE = 0x06054b50;
+	private static final int DATA_DESCRIPTOR_SIGNATURE = 0x08074b50;
+	private static final int LOCAL_HEADER_LENGTH = 30;
+	private static final int CENTRAL_HEADER_LENGTH = 46;
+	private static final int END_OF_CENTRAL_DIRECTORY_LENGTH = 22;
+	private static final int DATA_DESCRIPTOR_LENGTH = 16;
+
+	private static final int FLAG_ENCRYPTED = 1;
+	private static final int FLAG_DATA_DESCRIPTOR = 1 << 3;
+	private static final int FLAG_UTF8 = 1 << 11;
+	private static final int METHOD_DEFLATED = 8;
+	private static final int VERSION_DEFLATED = 20;
+
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+	private static final Charset CP437_SUBSTITUTE = Charset.forName("ISO-8859-1");
+
+	private final byte[] data;
+	private final List<Entry> entries;
+	private final Map<String, Entry> entriesByName;
+
+	private RawZipFile(byte[] data, List<Entry> entries) {
+		this.data = data;
+		this.entries = Collections.unmodifiableList(entries);
+		entriesByName = new HashMap<String, Entry>();
+		for (Entry entry : entries) {
+			entriesByName.put(entry.name, entry);
+		}
+	}
+
+	/**
+	 * Reads the central directory of a zip file.
+	 * 
+	 * @param data
+	 *            - the content of the zip file, must not be modified afterwards
+	 * @return the entries of the file or <code>null</code> if the file is not a
+	 *         zip file or uses unsupported features
+	 */
+	static RawZipFile read(byte[] data) {
+		try {
+			int end = findEndOfCentralDirectory(data);
+			if (end < 0) {
+				return null;
+			}
+			int entryCount = readShort(data, end + 10);
+			long directoryOffset = readInt(data, end + 16);
+			if (entryCount == 0xFFFF || directoryOffset == 0xFFFFFFFFL) {
+				return null; // zip64
+			}
+			List<Entry> entries = new ArrayList<Entry>(entryCount);
+			int offset = (int) directoryOffset;
+			for (int i = 0; i < entryCount; i++) {
+				if (readInt(data, offset) != CENTRAL_HEADER_SIGNATURE) {
+					return null;
+				}
+				Entry entry = readEntry(data, offset);
+				if (entry == null) {
+					return null;
+				}
+				entries.add(entry);
+				offset += CENTRAL_HEADER_LENGTH + entry.rawName.length + readShort(data, offset + 30)
+						+ readShort(data, offset + 32);
+			}
+			return new RawZipFile(data, entries);
+		} catch (ArrayIndexOutOfBoundsException e) {
+			return null;
+		}
+	}
+
+	private static int findEndOfCentralDirectory(byte[] data) {
+		int minOffset = Math.max(0, data.length - END_OF_CENTRAL_DIRECTORY_LENGTH - 0xFFFF);
+		for (int offset = data.length - END_OF_CENTRAL_DIRECTORY_LENGTH; offset >= minOffset; offset--) {
+			if (readInt(data, offset) == END_OF_CENTRAL_DIRECTORY_SIGNATURE) {
+				return offset;
+			}
+		}
+		return -1;
+	}
+
+	private static Entry readEntry(byte[] data, int offset) {
+		Entry entry = new Entry();
+		entry.versionNeeded = readShort(data, offset + 6);
+		// sizes are known from the central directory, copies are written without data descriptor
+		entry.flags = readShort(data, offset + 8) & ~FLAG_DATA_DESCRIPTOR;
+		entry.method = readShort(data, offset + 10);
+		entry.time = readShort(data, offset + 12);
+		entry.date = readShort(data, offset + 14);
+		entry.crc = readInt(data, offset + 16);
+		entry.compressedSize = readInt(data, offset + 20);
+		entry.size = readInt(data, offset + 24);
+		int nameLength = readShort(data, offset + 28);
+		entry.internalAttributes = readShort(data, offset + 36);
+		entry.externalAttributes = readInt(data, offset + 38);
+		long localHeaderOffset = readInt(data, offset + 42);
+		if ((entry.flags & FLAG_ENCRYPTED) != 0 || entry.compressedSize == 0xFFFFFFFFL
+				|| entry.size == 0xFFFFFFFFL || localHeaderOffset == 0xFFFFFFFFL) {
+			return null;
+		}
+		entry.rawName = new byte[nameLength];
+		System.arraycopy(data, offset + CENTRAL_HEADER_LENGTH, entry.rawName, 0, nameLength);
+		Charset charset = (entry.flags & FLAG_UTF8) != 0 ? UTF8 : CP437_SUBSTITUTE;
+		entry.name = new String(entry.rawName, charset);
+
+		int localOffset = (int) localHeaderOffset;
+		if (readInt(data, localOffset) != LOCAL_HEADER_SIGNATURE) {
+			return null;
+		}
+		entry.dataOffset = localOffset + LOCAL_HEADER_LENGTH + readShort(data, localOffset + 26)
+				+ readShort(data, localOffset + 28);
+		if (entry.dataOffset + entry.compressedSize > data.length) {
+			return null;
+		}
+		return entry;
+	}
+
+	List<String> getEntryNames() {
+		List<String> names = new ArrayList<String>(entries.size());
+		for (Entry entry : entries) {
+			names.add(entry.name);
+		}
+		return names;
+	}
+
+	boolean contains(String name) {
+		return entriesByName.containsKey(name);
+	}
+
+	/**
+	 * Content of an entry written with {@link RawZipFile#write(OutputStream, Map)}
+	 */
+	interface EntryContent {
+		/**
+		 * Writes the uncompressed content of the entry
+		 * 
+		 * @param out
+		 *            - the stream to write to, must not be closed
+		 */
+		void writeTo(OutputStream out) throws IOException;
+	}
+
+	/**
+	 * Writes a zip file with the entries of this file in the same order.
+	 * Entries not contained in <code>replacements</code> are copied as they
+	 * are, the others are deflated while their content is written.
+	 * 
+	 * @param out
+	 *            - stream to write to, the stream is not closed
+	 * @param replacements
+	 *            - new content of entries by entry name
+	 */
+	void write(OutputStream out, Map<String, ? extends EntryContent> replacements) throws IOException {
+		ZipWriter writer = new ZipWriter(out);
+		for (Entry entry : entries) {
+			EntryContent replacement = replacements.get(entry.name);
+			if (replacement != null) {
+				writer.writeDeflatedEntry(entry, replacement);
+			} else {
+				writer.writeRawEntry(entry);
+			}
+		}
+		writer.finish();
+	}
+
+	/**
+	 * Creates the content of an entry from a byte array
+	 */
+	static EntryContent content(final byte[] bytes) {
+		return new EntryContent() {
+			@Override
+			public void writeTo(OutputStream out) throws IOException {
+				out.write(bytes);
+			}
+		};
+	}
+
+	private class ZipWriter {
+		private final OutputStream out;
+		private final List<Entry> writtenEntries = new ArrayList<Entry>();
+		private final List<Long> offsets = new ArrayList<Long>();
+		private final byte[] header = new byte[CENTRAL_HEADER_LENGTH];
+		private long written;
+
+		ZipWriter(OutputStream out) {
+			this.out = out;
+		}
+
+		void writeRawEntry(Entry entry) throws IOException {
+			writeLocalHeader(entry);
+			write(data, entry.dataOffset, (int) entry.compressedSize);
+		}
+
+		/**
+		 * Writes an entry with new content. The sizes and the checksum are
+		 * written in a data descriptor after the content.
+		 */
+		void writeDeflatedEntry(Entry original, EntryContent content) throws IOException {
+			Entry entry = new Entry();
+			entry.rawName = original.rawName;
+			entry.name = original.name;
+			entry.flags = (original.flags & FLAG_UTF8) | FLAG_DATA_DESCRIPTOR;
+			entry.versionNeeded = Math.max(original.versionNeeded, VERSION_DEFLATED);
+			entry.method = METHOD_DEFLATED;
+			entry.time = original.time;
+			entry.date = original.date;
+			entry.internalAttributes = original.internalAttributes;
+			entry.externalAttributes = original.externalAttributes;
+			writeLocalHeader(entry);
+
+			Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+			CRC32 crc = new CRC32();
+			try {
+				DeflaterOutputStream deflaterOut = new DeflaterOutputStream(new EntryDataStream(), deflater, 8192);
+				content.writeTo(new CheckedOutputStream(deflaterOut, crc));
+				deflaterOut.finish();
+				entry.crc = crc.getValue();
+				entry.size = deflater.getBytesRead();
+				entry.compressedSize = deflater.getBytesWritten();
+			} finally {
+				deflater.end();
+			}
+			writeInt(header, 0, DATA_DESCRIPTOR_SIGNATURE);
+			writeInt(header, 4, entry.crc);
+			writeInt(header, 8, entry.compressedSize);
+			writeInt(header, 12, entry.size);
+			write(header, 0, DATA_DESCRIPTOR_LENGTH);
+		}
+
+		private void writeLocalHeader(Entry entry) throws IOException {
+			offsets.add(written);
+			writtenEntries.add(entry);
+			boolean dataDescriptor = (entry.flags & FLAG_DATA_DESCRIPTOR) != 0;
+			writeInt(header, 0, LOCAL_HEADER_SIGNATURE);
+			writeShort(header, 4, entry.versionNeeded);
+			writeShort(header, 6, entry.flags);
+			writeShort(header, 8, entry.method);
+			writeShort(header, 10, entry.time);
+			writeShort(header, 12, entry.date);
+			writeInt(header, 14, dataDescriptor ? 0 : entry.crc);
+			writeInt(header, 18, dataDescriptor ? 0 : entry.compressedSize);
+			writeInt(header, 22, dataDescriptor ? 0 : entry.size);
+			writeShort(header, 26, entry.rawName.length);
+			writeShort(header, 28, 0);
+			write(header, 0, LOCAL_HEADER_LENGTH);
+			write(entry.rawName, 0, entry.rawName.length);
+		}
+
+		void finish() throws IOException {
+			long directoryOffset = written;
+			for (int i = 0; i < writtenEntries.size(); i++) {
+				Entry entry = writtenEntries.get(i);
+				writeInt(header, 0, CENTRAL_HEADER_SIGNATURE);
+				writeShort(header, 4, VERSION_DEFLATED);
+				writeShort(header, 6, entry.versionNeeded);
+				writeShort(header, 8, entry.flags);
+				writeShort(header, 10, entry.method);
+				writeShort(header, 12, entry.time);
+				writeShort(header, 14, entry.date);
+				writeInt(header, 16, entry.crc);
+				writeInt(header, 20, entry.compressedSize);
+				writeInt(header, 24, entry.size);
+				writeShort(header, 28, entry.rawName.length);
+				writeShort(header, 30, 0);
+				writeShort(header, 32, 0);
+				writeShort(header, 34, 0);
+				writeShort(header, 36, entry.internalAttributes);
+				writeInt(header, 38, entry.externalAttributes);
+				writeInt(header, 42, offsets.get(i));
+				write(header, 0, CENTRAL_HEADER_LENGTH);
+				write(entry.rawName, 0, entry.rawName.length);
+			}
+			long directorySize = written - directoryOffset;
+			writeInt(header, 0, END_OF_CENTRAL_DIRECTORY_SIGNATURE);
+			writeShort(header, 4, 0);
+			writeShort(header, 6, 0);
+			writeShort(header, 8, writtenEntries.size());
+			writeShort(header, 10, writtenEntries.size());
+			writeInt(header, 12, directorySize);
+			writeInt(header, 16, directoryOffset);
+			writeShort(header, 20, 0);
+			write(header, 0, END_OF_CENTRAL_DIRECTORY_LENGTH);
+			out.flush();
+		}
+
+		private void write(byte[] bytes, int offset, int length) throws IOException {
+			out.write(bytes, offset, length);
+			written += length;
+		}
+
+		/**
+		 * Passes the compressed data of an entry to the zip stream
+		 */
+		private class EntryDataStream extends OutputStream {
+
+			@Override
+			public void write(byte[] bytes, int offset, int length) throws IOException {
+				ZipWriter.this.write(bytes, offset, length);
+			}
+
+			@Override
+			public void write(int b) throws IOException {
+				write(new byte[] { (byte) b }, 0, 1);
+			}
+		}
+	}
+
+	private static int readShort(byte[] data, int offset) {
+		return (data[offset] & 0xFF) | (data[offset + 1] & 0xFF) << 8;
+	}
+
+	private static long readInt(byte[] data, int offset) {
+		return (readShort(data, offset) | (long) readShort(data, offset + 2) << 16) & 0xFFFFFFFFL;
+	}
+
+	private static void writeShort(byte[] buffer, int offset, int value) {
+		buffer[offset] = (byte) value;
+		buffer[offset + 1] = (byte) (value >>> 8);
+	}
+
+	private static void writeInt(byte[] buffer, int offset, long value) {
+		writeShort(buffer, offset, (int) value);
+		writeShort(buffer, offset + 2, (int) (value >>> 16));
+	}
+
+	private static class Entry {
+		String name;
+		byte[] rawName;
+		int versionNeeded;
+		int flags;
+		int method;
+		int time;
+		int date;
+		long crc;
+		long compressedSize;
+		long size;
+		int internalAttributes;
+		long externalAttributes;
+		int dataOffset;
+	}
+}
@@ -0,0 +1,277 @@
+/**
+ * Copyright (C) 2015 Born Informatik AG (www.born.ch)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wte4j.impl.word;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.xml.bind.JAXBException;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.wte4j.ExpressionError;
+import org.wte4j.InvalidTemplateException;
+import org.wte4j.impl.InvalidExpressionException;
+import org.wte4j.impl.TemplateContext;
+import org.wte4j.impl.word.RawZipFile.EntryContent;
+
+/**
+ * A template compiled for streaming documents. Each part containing plain text
+ * content controls is marshalled once with a marker in place of the content of
+ * each control. The marshalled part is split into static byte segments and
+ * value slots. A document is written by streaming the segments and the escaped
+ * values of the slots, all other parts are copied from the template file.
+ * <p>
+ * Instances are immutable and can be used by any number of threads.
+ */
+class SegmentTemplate {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(SegmentTemplate.class);
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	// characters of the unicode private use area
+	private static final char MARKER_START = '\uE000';
+	private static final char MARKER_END = '\uE001';
+	private static final byte[] MARKER_START_BYTES = String.valueOf(MARKER_START).getBytes(UTF8);
+	private static final byte[] MARKER_END_BYTES = String.valueOf(MARKER_END).getBytes(UTF8);
+
+	private final RawZipFile source;
+	private final String[] expressions;
+	private final Map<String, SegmentedPart> parts;
+
+	private SegmentTemplate(RawZipFile source, String[] expressions, Map<String, SegmentedPart> parts) {
+		this.source = source;
+		this.expressions = expressions;
+		this.parts = parts;
+	}
+
+	/**
+	 * Compiles a template.
+	 * 
+	 * @param template
+	 *            - the template to compile, the template is not modified
+	 * @return the compiled template or <code>null</code> if the template can
+	 *         not be compiled, e.g. if it was not loaded from a file or the
+	 *         content controls are nested.
+	 */
+	static SegmentTemplate compile(Docx4JWordTemplate template) {
+		if (template.getSource() == null) {
+			return null;
+		}
+		try {
+			Docx4JWordTemplate copy = new Docx4JWordTemplate(template.copyPackage(), template);
+			List<PlainTextContent> controls = copy.getPlainTextContent();
+			String[] expressions = new String[controls.size()];
+			for (int i = 0; i < expressions.length; i++) {
+				PlainTextContent control = controls.get(i);
+				expressions[i] = control.getExpression();
+				control.setContent(MARKER_START + Integer.toString(i) + MARKER_END);
+				control.hideMarkers();
+			}
+			Map<String, byte[]> marshalledParts = copy.marshalDynamicParts();
+			if (marshalledParts == null) {
+				return null;
+			}
+			boolean[] slotFound = new boolean[expressions.length];
+			Map<String, SegmentedPart> parts = new HashMap<String, SegmentedPart>();
+			for (Map.Entry<String, byte[]> part : marshalledParts.entrySet()) {
+				SegmentedPart segmentedPart = SegmentedPart.split(part.getValue(), slotFound);
+				if (segmentedPart == null) {
+					return null;
+				}
+				parts.put(part.getKey(), segmentedPart);
+			}
+			for (boolean found : slotFound) {
+				if (!found) {
+					return null;
+				}
+			}
+			return new SegmentTemplate(template.getSource(), expressions, parts);
+		} catch (JAXBException | RuntimeException e) {
+			LOGGER.debug("template can not be compiled", e);
+			return null;
+		}
+	}
+
+	/**
+	 * Resolves the values of the content controls and writes the document.
+	 * 
+	 * @param context
+	 *            - context to resolve the content of the controls
+	 * @param out
+	 *            - the stream to write the docx to, the stream is not closed
+	 * @throws InvalidTemplateException
+	 *             if a expression can not be resolved, nothing is written in
+	 *             this case
+	 */
+	void write(TemplateContext<?> context, OutputStream out) throws IOException, InvalidTemplateException {
+		final byte[][] values = new byte[expressions.length][];
+		Map<String, ExpressionError> errors = new HashMap<String, ExpressionError>();
+		for (int i = 0; i < expressions.length; i++) {
+			try {
+				values[i] = escape(context.resolveValue(expressions[i])).getBytes(UTF8);
+			} catch (InvalidExpressionException e) {
+				errors.put(expressions[i], e.getError());
+			}
+		}
+		if (!errors.isEmpty()) {
+			throw new InvalidTemplateException(errors);
+		}
+		Map<String, EntryContent> entries = new HashMap<String, EntryContent>();
+		for (Map.Entry<String, SegmentedPart> part : parts.entrySet()) {
+			final SegmentedPart segmentedPart = part.getValue();
+			entries.put(part.getKey(), new EntryContent() {
+				@Override
+				public void writeTo(OutputStream entryOut) throws IOException {
+					segmentedPart.write(entryOut, values);
+				}
+			});
+		}
+		source.write(out, entries);
+	}
+
+	/**
+	 * Escapes text content like the JAXB marshaller
+	 */
+	static String escape(String value) {
+		StringBuilder escaped = null;
+		for (int i = 0; i < value.length(); i++) {
+			char c = value.charAt(i);
+			String replacement;
+			switch (c) {
+			case '&':
+				replacement = "&amp;";
+				break;
+			case '<':
+				replacement = "&lt;";
+				break;
+			case '>':
+				replacement = "&gt;";
+				break;
+			default:
+				replacement = null;
+			}
+			if (replacement != null && escaped == null) {
+				escaped = new StringBuilder(value.length() + 16);
+				escaped.append(value, 0, i);
+			}
+			if (escaped != null) {
+				if (replacement != null) {
+					escaped.append(replacement);
+				} else {
+					escaped.append(c);
+				}
+			}
+		}
+		return escaped != null ? escaped.toString() : value;
+	}
+
+	/**
+	 * A marshalled part split in static segments and slots. Segment
+	 * <code>i</code> is followed by the value of slot <code>i</code>, the last
+	 * segment has no slot.
+	 */
+	private static class SegmentedPart {
+		private final byte[][] segments;
+		private final int[] slots;
+
+		SegmentedPart(byte[][] segments, int[] slots) {
+			this.segments = segments;
+			this.slots = slots;
+		}
+
+		/**
+		 * @param slotFound
+		 *            - the slots found in other parts, the slots found in this
+		 *            part are added
+		 * @return the segmented part or <code>null</code> if the markers are
+		 *         not valid
+		 */
+		static SegmentedPart split(byte[] content, boolean[] slotFound) {
+			List<byte[]> segments = new ArrayList<byte[]>();
+			List<Integer> slots = new ArrayList<Integer>();
+			int segmentStart = 0;
+			int markerStart = indexOf(content, MARKER_START_BYTES, 0);
+			while (markerStart >= 0) {
+				int slotStart = markerStart + MARKER_START_BYTES.length;
+				int markerEnd = indexOf(content, MARKER_END_BYTES, slotStart);
+				if (markerEnd < 0) {
+					return null;
+				}
+				int slot = parseSlot(content, slotStart, markerEnd);
+				if (slot < 0 || slot >= slotFound.length || slotFound[slot]) {
+					return null;
+				}
+				slotFound[slot] = true;
+				segments.add(copy(content, segmentStart, markerStart));
+				slots.add(slot);
+				segmentStart = markerEnd + MARKER_END_BYTES.length;
+				markerStart = indexOf(content, MARKER_START_BYTES, segmentStart);
+			}
+			segments.add(copy(content, segmentStart, content.length));
+
+			int[] slotArray = new int[slots.size()];
+			for (int i = 0; i < slotArray.length; i++) {
+				slotArray[i] = slots.get(i);
+			}
+			return new SegmentedPart(segments.toArray(new byte[segments.size()][]), slotArray);
+		}
+
+		private static int parseSlot(byte[] content, int start, int end) {
+			if (start == end || end - start > 9) {
+				return -1;
+			}
+			int slot = 0;
+			for (int i = start; i < end; i++) {
+				if (content[i] < '0' || content[i] > '9') {
+					return -1;
+				}
+				slot = slot * 10 + content[i] - '0';
+			}
+			return slot;
+		}
+
+		private static byte[] copy(byte[] content, int start, int end) {
+			return Arrays.copyOfRange(content, start, end);
+		}
+
+		private static int indexOf(byte[] content, byte[] pattern, int from) {
+			outer: for (int i = from; i <= content.length - pattern.length; i++) {
+				for (int j = 0; j < pattern.length; j++) {
+					if (content[i + j] != pattern[j]) {
+						continue outer;
+					}
+				}
+				return i;
+			}
+			return -1;
+		}
+
+		void write(OutputStream out, byte[][] values) throws IOException {
+			for (int i = 0; i < slots.length; i++) {
+				out.write(segments[i]);
+				out.write(values[slots[i]]);
+			}
+			out.write(segments[slots.length]);
+		}
+	}
+}
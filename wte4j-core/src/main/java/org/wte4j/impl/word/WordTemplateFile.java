@@ -21,10 +21,12 @@ import java.io.InputStream;
 import java.io.OutputStream;
 import java.nio.file.Files;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
+import org.docx4j.openpackaging.packages.WordprocessingMLPackage;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.wte4j.ExpressionError;
@@ -43,6 +45,10 @@ public class WordTemplateFile extends Docx4JWordTemplate implements TemplateFile
 
 	private final Logger logger = LoggerFactory.getLogger(getClass());
 
+	private SegmentTemplate segmentTemplate;
+	private volatile boolean segmentTemplateCompiled;
+	private volatile List<String> contentIds;
+
 	public WordTemplateFile() {
 		super();
 	}
@@ -51,6 +57,64 @@ public class WordTemplateFile extends Docx4JWordTemplate implements TemplateFile
 		super(in);
 	}
 
+	public WordTemplateFile(byte[] content) throws IOException {
+		super(content);
+	}
+
+	protected WordTemplateFile(WordprocessingMLPackage wordMLPackage, WordTemplateFile original) {
+		super(wordMLPackage, original);
+	}
+
+	/**
+	 * Creates a copy of this file to fill in content. Only the parts containing
+	 * content controls are copied, so that this file can be shared by any
+	 * number of concurrent copies, as long as it is not modified itself.
+	 * 
+	 * @return a new file with the same content
+	 */
+	public WordTemplateFile createWorkingCopy() {
+		return new WordTemplateFile(copyPackage(), this);
+	}
+
+	/**
+	 * Fills in the content of a copy of this file and writes the copy as docx.
+	 * The content controls of this file are compiled once to stream the
+	 * documents, if this is not possible (e.g. nested content controls) the
+	 * content is filled in a working copy.
+	 * 
+	 * @param context
+	 *            - context to resolve the content of the controls
+	 * @param out
+	 *            - the stream to write the document to, the stream is not
+	 *            closed
+	 */
+	public void writeDocument(TemplateContext<?> context, OutputStream out)
+			throws IOException, InvalidTemplateException {
+		SegmentTemplate compiled = getSegmentTemplate();
+		if (compiled != null) {
+			compiled.write(context, out);
+		} else {
+			WordTemplateFile workingCopy = createWorkingCopy();
+			workingCopy.updateDynamicContent(context);
+			workingCopy.writeAsOpenXML(out);
+		}
+	}
+
+	private SegmentTemplate getSegmentTemplate() {
+		if (!segmentTemplateCompiled) {
+			synchronized (this) {
+				if (!segmentTemplateCompiled) {
+					segmentTemplate = SegmentTemplate.compile(this);
+					segmentTemplateCompiled = true;
+					if (segmentTemplate == null) {
+						logger.debug("content controls can not be compiled, documents are filled in working copies");
+					}
+				}
+			}
+		}
+		return segmentTemplate;
+	}
+
 	public void validate(TemplateContext<?> context) throws InvalidTemplateException {
 		Map<String, ExpressionError> errors = new HashMap<String, ExpressionError>();
 		for (PlainTextContent content : getPlainTextContent()) {
@@ -93,15 +157,30 @@ public class WordTemplateFile extends Docx4JWordTemplate implements TemplateFile
 		}
 	}
 
+	/**
+	 * Lists the content keys of the content controls. Like the compiled
+	 * content controls, the keys are read once, each call returns a new list.
+	 */
 	@Override
 	public List<String> listContentIds() {
-		WteExpression expression = new WteExpression();
-		List<String> contendIds = new ArrayList<String>();
-		for (PlainTextContent content : getPlainTextContent()) {
-			expression.setExpressionString(content.getExpression());
-			contendIds.add(expression.getContentKey());
+		List<String> current = contentIds;
+		if (current == null) {
+			WteExpression expression = new WteExpression();
+			List<String> contendIds = new ArrayList<String>();
+			for (PlainTextContent content : getPlainTextContent()) {
+				expression.setExpressionString(content.getExpression());
+				contendIds.add(expression.getContentKey());
+			}
+			current = Collections.unmodifiableList(contendIds);
+			contentIds = current;
 		}
-		return contendIds;
+		return new ArrayList<String>(current);
+	}
+
+	@Override
+	public PlainTextContent addPlainTextContent() {
+		contentIds = null;
+		return super.addPlainTextContent();
 	}
 
 	@Override
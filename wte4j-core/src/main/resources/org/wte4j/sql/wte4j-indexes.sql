@@ -0,0 +1,21 @@
+--
+-- Copyright (C) 2015 Born Informatik AG (www.born.ch)
+--
+-- Licensed under the Apache License, Version 2.0 (the "License");
+-- you may not use this file except in compliance with the License.
+-- You may obtain a copy of the License at
+--
+--         http://www.apache.org/licenses/LICENSE-2.0
+--
+-- Unless required by applicable law or agreed to in writing, software
+-- distributed under the License is distributed on an "AS IS" BASIS,
+-- WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+-- See the License for the specific language governing permissions and
+-- limitations under the License.
+--
+
+-- Indexes OpenJPA does not create when it builds the schema from the mapping.
+-- Run this script once after the wte4j tables have been created.
+
+-- serves the property lookups of TemplateQuery.hasProperties
+CREATE INDEX I_WT4JRTS_PROPERTY ON wte4j_template_properties (property_key, property_value, template_id);
@@ -38,6 +38,7 @@ public class EmbeddedDataBaseConfig {
 				.setName(this.toString())
 				.setType(EmbeddedDatabaseType.HSQL).ignoreFailedDrops(true)
 				.addScript("classpath:sql/create-schema.sql")
+				.addScript("classpath:org/wte4j/sql/wte4j-indexes.sql")
 				.addScript("classpath:sql/wte4j_template.sql")
 				.addScript("classpath:sql/wte4j_template_properties.sql").build();
 	}
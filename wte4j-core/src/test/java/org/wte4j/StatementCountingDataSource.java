@@ -0,0 +1,98 @@
+/**
+ * Copyright (C) 2015 Born Informatik AG (www.born.ch)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wte4j;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.sql.DataSource;
+
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+/**
+ * Counts the statements prepared on the connections of a data source and
+ * records the SQL of the prepared ones.
+ */
+public class StatementCountingDataSource extends DelegatingDataSource {
+
+	private final AtomicInteger statementCount = new AtomicInteger();
+	private final List<String> preparedSql = Collections
+			.synchronizedList(new ArrayList<String>());
+
+	public StatementCountingDataSource(DataSource targetDataSource) {
+		super(targetDataSource);
+	}
+
+	public int getStatementCount() {
+		return statementCount.get();
+	}
+
+	public List<String> getPreparedSql() {
+		synchronized (preparedSql) {
+			return new ArrayList<String>(preparedSql);
+		}
+	}
+
+	public void reset() {
+		statementCount.set(0);
+		preparedSql.clear();
+	}
+
+	@Override
+	public Connection getConnection() throws SQLException {
+		return countStatements(super.getConnection());
+	}
+
+	@Override
+	public Connection getConnection(String username, String password)
+			throws SQLException {
+		return countStatements(super.getConnection(username, password));
+	}
+
+	private Connection countStatements(final Connection connection) {
+		InvocationHandler handler = new InvocationHandler() {
+
+			@Override
+			public Object invoke(Object proxy, Method method, Object[] args)
+					throws Throwable {
+				String name = method.getName();
+				if (name.equals("prepareStatement")
+						|| name.equals("createStatement")
+						|| name.equals("prepareCall")) {
+					statementCount.incrementAndGet();
+					if (args != null && args.length > 0) {
+						preparedSql.add((String) args[0]);
+					}
+				}
+				try {
+					return method.invoke(connection, args);
+				} catch (InvocationTargetException e) {
+					throw e.getTargetException();
+				}
+			}
+		};
+		return (Connection) Proxy.newProxyInstance(getClass()
+				.getClassLoader(), new Class<?>[] { Connection.class }, handler);
+	}
+}
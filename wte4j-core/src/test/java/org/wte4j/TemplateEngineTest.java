@@ -15,20 +15,31 @@
  */
 package org.wte4j;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.io.StringWriter;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.sql.Time;
 import java.sql.Timestamp;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
 
 import org.docx4j.TextUtils;
 import org.docx4j.openpackaging.packages.WordprocessingMLPackage;
@@ -43,6 +54,7 @@ import org.springframework.test.annotation.DirtiesContext;
 import org.springframework.test.context.ContextConfiguration;
 import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
 import org.springframework.transaction.annotation.EnableTransactionManagement;
+import org.springframework.util.concurrent.ListenableFuture;
 import org.wte4j.impl.service.WteMapModel;
 
 @RunWith(SpringJUnit4ClassRunner.class)
@@ -53,6 +65,12 @@ public class TemplateEngineTest {
 	@Autowired
 	TemplateEngine wte;
 
+	@Autowired
+	BatchTemplateEngine batchWte;
+
+	@Autowired
+	AsyncTemplateEngine asyncWte;
+
 	@Test
 	public void createDocumentWithBasicDynamicContent() throws Exception {
 		final String documentName = "basic_values";
@@ -84,6 +102,110 @@ public class TemplateEngineTest {
 		}
 	}
 
+	@Test
+	public void lockAndUnlockTemplate() throws Exception {
+		final String documentName = "lock_unlock";
+		final String language = "de";
+		final Path templateDocument = Paths.get(ClassLoader.getSystemResource("org/wte4j/basic-values-template.docx").toURI());
+
+		Template<Integer> template = wte.getTemplateBuilder(Integer.class)
+				.setDocumentName(documentName)
+				.setLanguage(language)
+				.setAuthor(new User("hw", "Hans Wurst"))
+				.setTemplateFile(templateDocument)
+				.build();
+		TemplateRepository repository = wte.getTemplateRepository();
+		repository.persist(template);
+
+		User user = new User("lock", "Lock User");
+		repository.lockForEdit(repository.getTemplate(documentName, language), user);
+		assertEquals(user, repository.getTemplate(documentName, language).getLockingUser());
+
+		repository.unlock(repository.getTemplate(documentName, language));
+		assertNull(repository.getTemplate(documentName, language).getLockingUser());
+	}
+
+	@Test
+	public void createDocumentsInBatch() throws Exception {
+		final String documentName = "basic_values_batch";
+		final String language = "de";
+		final Path templateDocument = Paths.get(ClassLoader.getSystemResource("org/wte4j/basic-values-template.docx").toURI());
+
+		Template<Integer> template = wte.getTemplateBuilder(Integer.class)
+				.setDocumentName(documentName)
+				.setLanguage(language)
+				.setAuthor(new User("hw", "Hans Wurst"))
+				.setTemplateFile(templateDocument)
+				.build();
+		wte.getTemplateRepository().persist(template);
+
+		final Map<Long, ByteArrayOutputStream> documents = new ConcurrentHashMap<Long, ByteArrayOutputStream>();
+		BatchResult result = batchWte.createDocuments(documentName, language, Arrays.asList(1, 2, 3, 4, 5), new DocumentSink() {
+
+			@Override
+			public OutputStream open(long index, Object data) throws IOException {
+				ByteArrayOutputStream out = new ByteArrayOutputStream();
+				documents.put(index, out);
+				return out;
+			}
+
+			@Override
+			public void documentCreated(long index, Object data) {
+			}
+
+			@Override
+			public void documentFailed(long index, Object data, Exception cause) {
+				throw new AssertionError(cause);
+			}
+		});
+
+		assertEquals(5, result.getCreatedCount());
+		for (ByteArrayOutputStream document : documents.values()) {
+			WordprocessingMLPackage wordMLPackage = WordprocessingMLPackage
+					.load(new ByteArrayInputStream(document.toByteArray()));
+			StringWriter writer = new StringWriter();
+			TextUtils.extractText(
+					wordMLPackage.getMainDocumentPart().getContents(), writer);
+			assertTrue(!writer.toString().contains("toReplace"));
+		}
+	}
+
+	@Test
+	public void createDocumentAsync() throws Exception {
+		final String documentName = "basic_values_async";
+		final String language = "de";
+		final Path templateDocument = Paths.get(ClassLoader.getSystemResource("org/wte4j/basic-values-template.docx").toURI());
+
+		Template<Integer> template = wte.getTemplateBuilder(Integer.class)
+				.setDocumentName(documentName)
+				.setLanguage(language)
+				.setAuthor(new User("hw", "Hans Wurst"))
+				.setTemplateFile(templateDocument)
+				.build();
+		wte.getTemplateRepository().persist(template);
+
+		Path file = asyncWte.createDocumentAsync(documentName, language, 1, 1, TimeUnit.MINUTES).get();
+		try (InputStream in = Files.newInputStream(file)) {
+			WordprocessingMLPackage wordMLPackage = WordprocessingMLPackage.load(in);
+			StringWriter writer = new StringWriter();
+			TextUtils.extractText(wordMLPackage.getMainDocumentPart().getContents(), writer);
+			assertTrue(!writer.toString().contains("toReplace"));
+		} finally {
+			Files.deleteIfExists(file);
+		}
+	}
+
+	@Test
+	public void createDocumentAsyncWithoutTemplate() throws Exception {
+		ListenableFuture<Path> future = asyncWte.createDocumentAsync("no_template", "de", 1);
+		try {
+			future.get();
+			fail("ExecutionException expected");
+		} catch (ExecutionException e) {
+			assertTrue(e.getCause() instanceof IllegalArgumentException);
+		}
+	}
+
 	@Configuration
 	@ComponentScan(basePackages = { "org.wte4j.impl" })
 	@Import(EmbeddedDataBaseConfig.class)
@@ -0,0 +1,180 @@
+/**
+ * Copyright (C) 2015 Born Informatik AG (www.born.ch)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wte4j.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Mockito.mock;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.PostConstruct;
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionCallbackWithoutResult;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.wte4j.EmbeddedDataBaseConfig;
+import org.wte4j.User;
+
+/**
+ * Persists templates with identical new content in two concurrent
+ * transactions, which both try to insert the content.
+ */
+@RunWith(SpringJUnit4ClassRunner.class)
+@ContextConfiguration(classes = { ConcurrentContentTest.MvccConfig.class })
+public class ConcurrentContentTest {
+
+	private static final byte[] CONTENT = "concurrent content"
+			.getBytes(StandardCharsets.UTF_8);
+
+	@PersistenceContext
+	EntityManager entityManager;
+
+	@Autowired
+	PlatformTransactionManager transactionManager;
+
+	@After
+	public void deleteTemplates() {
+		new TransactionTemplate(transactionManager)
+				.execute(new TransactionCallbackWithoutResult() {
+
+					@Override
+					protected void doInTransactionWithoutResult(
+							TransactionStatus status) {
+						entityManager
+								.createQuery(
+										"DELETE FROM PersistentTemplate t WHERE t.documentName LIKE 'concurrent%'")
+								.executeUpdate();
+						entityManager.createQuery(
+								"DELETE FROM PersistentContent c")
+								.executeUpdate();
+					}
+				});
+	}
+
+	@Test
+	public void identicalContentIsInsertedOnce() throws Exception {
+		final CountDownLatch bothInserting = new CountDownLatch(2);
+		final WordTemplateRepository repository = new WordTemplateRepository(
+				entityManager, mock(TemplateContextFactory.class)) {
+
+			@Override
+			void insertContent(String digest, byte[] content)
+					throws SQLException {
+				bothInserting.countDown();
+				try {
+					bothInserting.await(10, TimeUnit.SECONDS);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+				super.insertContent(digest, content);
+			}
+		};
+
+		ExecutorService executor = Executors.newFixedThreadPool(2);
+		try {
+			List<Future<Object>> results = new ArrayList<Future<Object>>();
+			for (String documentName : new String[] { "concurrent1",
+					"concurrent2" }) {
+				results.add(executor.submit(persist(repository, documentName)));
+			}
+			for (Future<Object> result : results) {
+				result.get(30, TimeUnit.SECONDS);
+			}
+		} finally {
+			executor.shutdownNow();
+		}
+
+		final String digest = PersistentContent.digest(CONTENT);
+		assertEquals(2L, new TransactionTemplate(transactionManager)
+				.execute(new TransactionCallback<Long>() {
+
+					@Override
+					public Long doInTransaction(TransactionStatus status) {
+						return entityManager.find(PersistentContent.class,
+								digest).getReferenceCount();
+					}
+				}).longValue());
+	}
+
+	private Callable<Object> persist(final WordTemplateRepository repository,
+			final String documentName) {
+		return new Callable<Object>() {
+
+			@Override
+			public Object call() {
+				return new TransactionTemplate(transactionManager)
+						.execute(new TransactionCallback<Object>() {
+
+							@Override
+							public Object doInTransaction(
+									TransactionStatus status) {
+								return repository
+										.persist(newTemplate(documentName));
+							}
+						});
+			}
+		};
+	}
+
+	private static WordTemplate<Object> newTemplate(String documentName) {
+		PersistentTemplate template = new PersistentTemplate();
+		template.setDocumentName(documentName);
+		template.setLanguage("de");
+		template.setContent(CONTENT);
+		template.setCreatedAt(new Date());
+		template.setEditedAt(new Date());
+		template.setEditor(new User("user", "user"));
+		return new WordTemplate<Object>(template,
+				mock(TemplateContextFactory.class));
+	}
+
+	/**
+	 * Uses row locks, so the second insert of a content waits for the
+	 * transaction of the first insert instead of the whole table being
+	 * locked by the first statement on it.
+	 */
+	@Configuration
+	static class MvccConfig extends EmbeddedDataBaseConfig {
+
+		@PostConstruct
+		public void useRowLocks() {
+			new JdbcTemplate(super.dataSource())
+					.execute("SET DATABASE TRANSACTION CONTROL MVCC");
+		}
+	}
+}
@@ -0,0 +1,185 @@
+/**
+ * Copyright (C) 2015 Born Informatik AG (www.born.ch)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wte4j.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.wte4j.BatchResult;
+import org.wte4j.DocumentSink;
+import org.wte4j.Template;
+import org.wte4j.WteException;
+
+public class DocumentBatchTest {
+	private static final int RECORDS = 100;
+	private static final int MAX_PENDING = 4;
+
+	private ExecutorService executor;
+	private Template<Object> template;
+	private final AtomicInteger pending = new AtomicInteger();
+	private final AtomicInteger maxPending = new AtomicInteger();
+
+	@SuppressWarnings("unchecked")
+	@Before
+	public void initTemplate() throws Exception {
+		executor = Executors.newFixedThreadPool(8);
+		template = mock(Template.class);
+		doAnswer(new Answer<Void>() {
+			@Override
+			public Void answer(InvocationOnMock invocation) throws Throwable {
+				Integer record = (Integer) invocation.getArguments()[0];
+				if (record % 10 == 0) {
+					throw new WteException("failed " + record);
+				}
+				OutputStream out = (OutputStream) invocation.getArguments()[1];
+				out.write(record.toString().getBytes());
+				return null;
+			}
+		}).when(template).toDocument(any(), any(OutputStream.class));
+	}
+
+	@After
+	public void shutdown() {
+		executor.shutdown();
+	}
+
+	@Test
+	public void generateAllRecords() throws Exception {
+		CollectingSink sink = new CollectingSink();
+		DocumentBatch batch = new DocumentBatch(template, sink, executor, MAX_PENDING);
+
+		BatchResult result = batch.run(records().iterator());
+
+		assertEquals(RECORDS - RECORDS / 10, result.getCreatedCount());
+		assertEquals(RECORDS / 10, result.getFailedCount());
+		assertEquals(result.getCreatedCount(), sink.documents.size());
+		assertEquals(result.getFailedCount(), sink.failures.size());
+		assertEquals("11", sink.documents.get(11L));
+		assertEquals("failed 20", sink.failures.get(20L).getMessage());
+	}
+
+	@Test
+	public void pendingDocumentsAreLimited() throws Exception {
+		DocumentBatch batch = new DocumentBatch(template, new CollectingSink() {
+			@Override
+			public OutputStream open(long index, Object data) throws IOException {
+				int current = pending.incrementAndGet();
+				synchronized (maxPending) {
+					maxPending.set(Math.max(maxPending.get(), current));
+				}
+				return super.open(index, data);
+			}
+
+			@Override
+			public void documentCreated(long index, Object data) {
+				pending.decrementAndGet();
+				super.documentCreated(index, data);
+			}
+
+			@Override
+			public void documentFailed(long index, Object data, Exception cause) {
+				pending.decrementAndGet();
+				super.documentFailed(index, data, cause);
+			}
+		}, executor, MAX_PENDING);
+
+		batch.run(records().iterator());
+
+		assertTrue(maxPending.get() <= MAX_PENDING);
+		assertEquals(0, pending.get());
+	}
+
+	@Test
+	public void failingSinkDoesNotAbortBatch() throws Exception {
+		DocumentBatch batch = new DocumentBatch(template, new CollectingSink() {
+			@Override
+			public OutputStream open(long index, Object data) throws IOException {
+				if (index == 5) {
+					throw new IOException("disk full");
+				}
+				return super.open(index, data);
+			}
+		}, executor, MAX_PENDING);
+
+		BatchResult result = batch.run(records().iterator());
+
+		assertEquals(RECORDS, result.getRecordCount());
+		assertEquals(RECORDS / 10 + 1, result.getFailedCount());
+	}
+
+	@Test
+	public void rejectedRecordsAreReported() throws Exception {
+		executor.shutdown();
+		CollectingSink sink = new CollectingSink();
+		DocumentBatch batch = new DocumentBatch(template, sink, executor, MAX_PENDING);
+
+		BatchResult result = batch.run(records().iterator());
+
+		assertEquals(RECORDS, result.getFailedCount());
+		assertEquals(RECORDS, sink.failures.size());
+	}
+
+	private static List<Integer> records() {
+		List<Integer> records = new ArrayList<Integer>();
+		for (int i = 0; i < RECORDS; i++) {
+			records.add(i);
+		}
+		return records;
+	}
+
+	private static class CollectingSink implements DocumentSink {
+		final Map<Long, ByteArrayOutputStream> streams = new ConcurrentHashMap<Long, ByteArrayOutputStream>();
+		final Map<Long, String> documents = new ConcurrentHashMap<Long, String>();
+		final Map<Long, Exception> failures = new ConcurrentHashMap<Long, Exception>();
+
+		@Override
+		public OutputStream open(long index, Object data) throws IOException {
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			streams.put(index, out);
+			return out;
+		}
+
+		@Override
+		public void documentCreated(long index, Object data) {
+			documents.put(index, streams.remove(index).toString());
+		}
+
+		@Override
+		public void documentFailed(long index, Object data, Exception cause) {
+			failures.put(index, cause);
+		}
+	}
+}
@@ -0,0 +1,173 @@
+/**
+ * Copyright (C) 2015 Born Informatik AG (www.born.ch)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wte4j.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class DocumentTaskTest {
+
+	private ExecutorService executor;
+	private final CountDownLatch started = new CountDownLatch(1);
+	private final CountDownLatch interrupted = new CountDownLatch(1);
+
+	@Before
+	public void createExecutor() {
+		executor = Executors.newSingleThreadExecutor();
+	}
+
+	@After
+	public void shutdown() {
+		executor.shutdownNow();
+	}
+
+	@Test
+	public void completesWithDocument() throws Exception {
+		Path document = Files.createTempFile("document", ".docx");
+		try {
+			DocumentTask task = new FixedDocumentTask(document);
+			executor.execute(task);
+
+			assertEquals(document, task.get(10, TimeUnit.SECONDS));
+		} finally {
+			Files.deleteIfExists(document);
+		}
+	}
+
+	@Test
+	public void failsWithException() throws Exception {
+		DocumentTask task = new DocumentTask() {
+			@Override
+			protected Path createDocument() throws Exception {
+				throw new IOException("disk full");
+			}
+		};
+		executor.execute(task);
+
+		try {
+			task.get(10, TimeUnit.SECONDS);
+			fail("ExecutionException expected");
+		} catch (ExecutionException e) {
+			assertEquals("disk full", e.getCause().getMessage());
+		}
+	}
+
+	@Test
+	public void expireInterruptsGeneration() throws Exception {
+		DocumentTask task = new BlockingDocumentTask();
+		executor.execute(task);
+		started.await(10, TimeUnit.SECONDS);
+
+		assertTrue(task.expire());
+
+		assertTrue(interrupted.await(10, TimeUnit.SECONDS));
+		try {
+			task.get();
+			fail("ExecutionException expected");
+		} catch (ExecutionException e) {
+			assertTrue(e.getCause() instanceof TimeoutException);
+		}
+	}
+
+	@Test
+	public void cancelInterruptsGeneration() throws Exception {
+		DocumentTask task = new BlockingDocumentTask();
+		executor.execute(task);
+		started.await(10, TimeUnit.SECONDS);
+
+		task.cancel(true);
+
+		assertTrue(interrupted.await(10, TimeUnit.SECONDS));
+		try {
+			task.get();
+			fail("CancellationException expected");
+		} catch (CancellationException e) {
+			// expected
+		}
+	}
+
+	@Test
+	public void cancelledTaskIsNotStarted() throws Exception {
+		DocumentTask task = new BlockingDocumentTask();
+		task.cancel(true);
+		executor.execute(task);
+		executor.shutdown();
+
+		assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+		assertEquals(1, started.getCount());
+	}
+
+	@Test
+	public void documentOfExpiredTaskIsDeleted() throws Exception {
+		final Path document = Files.createTempFile("document", ".docx");
+		DocumentTask task = new FixedDocumentTask(document) {
+			@Override
+			protected Path createDocument() throws Exception {
+				expire();
+				return super.createDocument();
+			}
+		};
+		executor.execute(task);
+		executor.shutdown();
+
+		assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+		assertFalse(Files.exists(document));
+	}
+
+	private static class FixedDocumentTask extends DocumentTask {
+		private final Path document;
+
+		FixedDocumentTask(Path document) {
+			this.document = document;
+		}
+
+		@Override
+		protected Path createDocument() throws Exception {
+			return document;
+		}
+	}
+
+	private class BlockingDocumentTask extends DocumentTask {
+		@Override
+		protected Path createDocument() throws Exception {
+			started.countDown();
+			try {
+				Thread.sleep(TimeUnit.MINUTES.toMillis(1));
+			} catch (InterruptedException e) {
+				interrupted.countDown();
+				throw e;
+			}
+			return null;
+		}
+	}
+}
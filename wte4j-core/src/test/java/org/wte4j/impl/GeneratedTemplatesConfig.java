@@ -0,0 +1,106 @@
+/**
+ * Copyright (C) 2015 Born Informatik AG (www.born.ch)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wte4j.impl;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+
+import javax.annotation.PostConstruct;
+import javax.sql.DataSource;
+
+import org.springframework.context.annotation.Bean;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.wte4j.EmbeddedDataBaseConfig;
+import org.wte4j.StatementCountingDataSource;
+
+/**
+ * Embedded database with generated templates for tests and benchmarks of
+ * queries on many templates. The issued statements are recorded by a
+ * {@link StatementCountingDataSource}.
+ */
+abstract class GeneratedTemplatesConfig extends EmbeddedDataBaseConfig {
+
+	static final int FIRST_ID = 100;
+
+	@Bean
+	@Override
+	public DataSource dataSource() {
+		return new StatementCountingDataSource(super.dataSource());
+	}
+
+	@PostConstruct
+	public void insertTemplates() {
+		JdbcTemplate jdbcTemplate = new JdbcTemplate(super.dataSource());
+		jdbcTemplate
+				.batchUpdate(
+						"INSERT INTO WTE4J_TEMPLATE (ID, CONTENT, CREATED_AT, DOCUMENT_NAME, EDITED_AT, EDITOR_DISPLAY_NAME, EDITOR_USER_ID, INPUT_CLASS_NAME, LANGUAGE, VERSION) VALUES (?, null, ?, ?, ?, 'Generated User', 'generated_user', 'java.lang.String', ?, 0)",
+						new TemplateRows() {
+
+							@Override
+							void setValues(PreparedStatement ps, int row,
+									long id, String name) throws SQLException {
+								Timestamp now = new Timestamp(System
+										.currentTimeMillis());
+								ps.setLong(1, id);
+								ps.setTimestamp(2, now);
+								ps.setString(3, name);
+								ps.setTimestamp(4, now);
+								ps.setString(5, getLanguage());
+							}
+						});
+		insertCollections(jdbcTemplate);
+	}
+
+	/**
+	 * @return the number of generated templates
+	 */
+	abstract int getTemplateCount();
+
+	/**
+	 * @return the prefix of the document names, which is followed by the row
+	 *         number
+	 */
+	abstract String getNamePrefix();
+
+	abstract String getLanguage();
+
+	/**
+	 * Inserts the properties and the content mapping of the generated
+	 * templates.
+	 */
+	abstract void insertCollections(JdbcTemplate jdbcTemplate);
+
+	/**
+	 * Sets the values of one row for each generated template
+	 */
+	abstract class TemplateRows implements BatchPreparedStatementSetter {
+
+		@Override
+		public void setValues(PreparedStatement ps, int i) throws SQLException {
+			setValues(ps, i, FIRST_ID + i, getNamePrefix() + i);
+		}
+
+		abstract void setValues(PreparedStatement ps, int row, long id,
+				String name) throws SQLException;
+
+		@Override
+		public int getBatchSize() {
+			return getTemplateCount();
+		}
+	}
+}
@@ -0,0 +1,105 @@
+/**
+ * Copyright (C) 2015 Born Informatik AG (www.born.ch)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wte4j.impl;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.List;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.wte4j.StatementCountingDataSource;
+
+/**
+ * Measures the time to look up a template by a unique and a shared property
+ * among the templates generated for {@link PropertyLookupTest}. Run as java
+ * application with an optional number of lookups.
+ */
+public class PropertyLookupBenchmark {
+
+	private static final int WARM_UP_LOOKUPS = 200;
+
+	public static void main(String[] args) throws Exception {
+		int lookups = args.length > 0 ? Integer.parseInt(args[0]) : 2000;
+
+		AnnotationConfigApplicationContext context = new AnnotationConfigApplicationContext(
+				PropertyLookupTest.PropertyLookupConfig.class);
+		try {
+			StatementCountingDataSource dataSource = context
+					.getBean(StatementCountingDataSource.class);
+			String sql = lookupSql(
+					context.getBean(EntityManagerFactory.class), dataSource);
+			Connection connection = dataSource.getConnection();
+			try {
+				PreparedStatement lookup = connection.prepareStatement(sql);
+				run(lookup, WARM_UP_LOOKUPS);
+				long nanos = run(lookup, lookups);
+				System.out.printf("%d lookups %10.3f ms/lookup%n", lookups,
+						nanos / 1e6 / lookups);
+			} finally {
+				connection.close();
+			}
+		} finally {
+			context.close();
+		}
+	}
+
+	/**
+	 * @return the SQL issued by {@link WordTemplateQuery} to count the
+	 *         templates with the given properties
+	 */
+	private static String lookupSql(EntityManagerFactory entityManagerFactory,
+			StatementCountingDataSource dataSource) {
+		EntityManager entityManager = entityManagerFactory
+				.createEntityManager();
+		try {
+			dataSource.reset();
+			new WordTemplateQuery(null, entityManager.getCriteriaBuilder())
+					.hasProperties(PropertyLookupTest.nameAndType(1)).count(
+							entityManager);
+			List<String> sql = dataSource.getPreparedSql();
+			return sql.get(sql.size() - 1);
+		} finally {
+			entityManager.close();
+		}
+	}
+
+	private static long run(PreparedStatement lookup, int lookups)
+			throws SQLException {
+		long start = System.nanoTime();
+		for (int i = 0; i < lookups; i++) {
+			String name = "bench-" + (i % PropertyLookupTest.TEMPLATE_COUNT);
+			lookup.setString(1, "name");
+			lookup.setString(2, name);
+			lookup.setString(3, "type");
+			lookup.setString(4, "bench");
+			ResultSet resultSet = lookup.executeQuery();
+			try {
+				resultSet.next();
+				if (resultSet.getLong(1) != 1) {
+					throw new IllegalStateException(name + " not found");
+				}
+			} finally {
+				resultSet.close();
+			}
+		}
+		return System.nanoTime() - start;
+	}
+}
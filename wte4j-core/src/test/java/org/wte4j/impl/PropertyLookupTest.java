@@ -0,0 +1,170 @@
+/**
+ * Copyright (C) 2015 Born Informatik AG (www.born.ch)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wte4j.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceUtils;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+import org.springframework.test.context.transaction.TransactionConfiguration;
+import org.springframework.transaction.annotation.Transactional;
+import org.wte4j.StatementCountingDataSource;
+import org.wte4j.TemplateMetadata;
+
+/**
+ * Runs {@link WordTemplateQuery#hasProperties(Map)} against 100'000 property
+ * rows and checks that the lookup is served by the property index. The time
+ * of a lookup is measured by {@link PropertyLookupBenchmark}.
+ */
+@RunWith(SpringJUnit4ClassRunner.class)
+@ContextConfiguration(classes = { PropertyLookupTest.PropertyLookupConfig.class })
+@TransactionConfiguration(defaultRollback = true)
+@Transactional
+public class PropertyLookupTest {
+
+	static final int TEMPLATE_COUNT = 25000;
+
+	@PersistenceContext
+	EntityManager entityManager;
+
+	@Autowired
+	StatementCountingDataSource dataSource;
+
+	@Before
+	public void resetCounter() {
+		entityManager.clear();
+		dataSource.reset();
+	}
+
+	@Test
+	public void findByProperties() {
+		Map<String, String> properties = new LinkedHashMap<String, String>();
+		properties.put("group", "g7");
+		properties.put("owner", "u7");
+
+		List<TemplateMetadata> result = query().hasProperties(properties)
+				.listMetadata(entityManager);
+
+		assertEquals(TEMPLATE_COUNT / 500, result.size());
+		for (TemplateMetadata template : result) {
+			assertEquals("g7", template.getProperties().get("group"));
+			assertEquals("u7", template.getProperties().get("owner"));
+		}
+	}
+
+	@Test
+	public void lookupUsesPropertyIndex() throws SQLException {
+		assertEquals(1, query().hasProperties(nameAndType(1))
+				.count(entityManager));
+		String sql = dataSource.getPreparedSql().get(0);
+		Connection connection = DataSourceUtils.getConnection(dataSource);
+		PreparedStatement explain = connection
+				.prepareStatement("EXPLAIN PLAN FOR " + sql);
+		try {
+			String plan = readAll(explain.executeQuery());
+			assertTrue(plan, plan.contains("I_WT4JRTS_PROPERTY"));
+		} finally {
+			explain.close();
+		}
+	}
+
+	/**
+	 * @return the properties to look up a template by its unique name and a
+	 *         property shared by all generated templates
+	 */
+	static Map<String, String> nameAndType(int row) {
+		Map<String, String> properties = new LinkedHashMap<String, String>();
+		properties.put("name", "bench-" + row);
+		properties.put("type", "bench");
+		return properties;
+	}
+
+	private static String readAll(ResultSet resultSet) throws SQLException {
+		StringBuilder content = new StringBuilder();
+		try {
+			while (resultSet.next()) {
+				content.append(resultSet.getString(1)).append('\n');
+			}
+		} finally {
+			resultSet.close();
+		}
+		return content.toString();
+	}
+
+	private WordTemplateQuery query() {
+		return new WordTemplateQuery(null, entityManager.getCriteriaBuilder());
+	}
+
+	@Configuration
+	static class PropertyLookupConfig extends GeneratedTemplatesConfig {
+
+		@Override
+		int getTemplateCount() {
+			return TEMPLATE_COUNT;
+		}
+
+		@Override
+		String getNamePrefix() {
+			return "bench-";
+		}
+
+		@Override
+		String getLanguage() {
+			return "yy";
+		}
+
+		@Override
+		void insertCollections(JdbcTemplate jdbcTemplate) {
+			jdbcTemplate
+					.batchUpdate(
+							"INSERT INTO WTE4J_TEMPLATE_PROPERTIES (TEMPLATE_ID, PROPERTY_KEY, PROPERTY_VALUE) VALUES (?, 'name', ?), (?, 'group', ?), (?, 'owner', ?), (?, 'type', 'bench')",
+							new TemplateRows() {
+
+								@Override
+								void setValues(PreparedStatement ps, int row,
+										long id, String name)
+										throws SQLException {
+									ps.setLong(1, id);
+									ps.setString(2, name);
+									ps.setLong(3, id);
+									ps.setString(4, "g" + (row % 50));
+									ps.setLong(5, id);
+									ps.setString(6, "u" + (row % 500));
+									ps.setLong(7, id);
+								}
+							});
+		}
+	}
+}
@@ -0,0 +1,148 @@
+/**
+ * Copyright (C) 2015 Born Informatik AG (www.born.ch)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wte4j.impl;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Test;
+import org.springframework.core.task.SyncTaskExecutor;
+import org.wte4j.Template;
+import org.wte4j.impl.cache.TemplateFileCache;
+
+public class TemplateWarmerTest {
+
+	private TemplateWarmer warmer = new TemplateWarmer();
+
+	@After
+	public void shutdown() {
+		warmer.shutdown();
+	}
+
+	@Test
+	public void warmUpAllTemplates() throws Exception {
+		List<Template<?>> templates = new ArrayList<Template<?>>();
+		for (int i = 0; i < 20; i++) {
+			templates.add(template("document" + i));
+		}
+		assertFalse(warmer.isReady());
+
+		warmer.warmUpAll(templates);
+
+		assertTrue(warmer.awaitReady(10, TimeUnit.SECONDS));
+		for (Template<?> template : templates) {
+			verify(template, times(1)).toTestDocument(any(OutputStream.class));
+		}
+	}
+
+	@Test
+	public void readyWithoutTemplates() throws Exception {
+		warmer.warmUpAll(Collections.<Template<?>> emptyList());
+		assertTrue(warmer.isReady());
+	}
+
+	@Test
+	public void readyIfWarmUpFails() throws Exception {
+		Template<?> invalid = template("invalid");
+		doThrow(new IOException("invalid")).when(invalid)
+				.toTestDocument(any(OutputStream.class));
+		Template<?> valid = template("valid");
+		warmer.setExecutor(new SyncTaskExecutor());
+
+		warmer.warmUpAll(Arrays.asList(invalid, valid));
+
+		assertTrue(warmer.isReady());
+		verify(valid, times(1)).toTestDocument(any(OutputStream.class));
+	}
+
+	@Test
+	public void warmUpConfiguredDocuments() throws Exception {
+		Template<?> selected = template("selected");
+		Template<?> other = template("other");
+		warmer.setExecutor(new SyncTaskExecutor());
+		warmer.setDocumentNames(Arrays.asList("selected"));
+
+		warmer.warmUpAll(Arrays.asList(selected, other));
+
+		assertTrue(warmer.isReady());
+		verify(selected, times(1)).toTestDocument(any(OutputStream.class));
+		verify(other, never()).toTestDocument(any(OutputStream.class));
+	}
+
+	@Test
+	public void warmUpIsLimitedToCacheSize() throws Exception {
+		TemplateFileCache cache = new TemplateFileCache();
+		cache.setMaxEntries(2);
+		warmer.setTemplateFileCache(cache);
+		warmer.setExecutor(new SyncTaskExecutor());
+		List<Template<?>> templates = Arrays.asList(template("first"),
+				template("second"), template("third"));
+
+		warmer.warmUpAll(templates);
+
+		assertTrue(warmer.isReady());
+		verify(templates.get(0), times(1)).toTestDocument(any(OutputStream.class));
+		verify(templates.get(1), times(1)).toTestDocument(any(OutputStream.class));
+		verify(templates.get(2), never()).toTestDocument(any(OutputStream.class));
+	}
+
+	@Test
+	public void disabled() throws Exception {
+		Template<?> template = template("document");
+		warmer.setExecutor(new SyncTaskExecutor());
+		warmer.setEnabled(false);
+
+		warmer.warmUpAll(Arrays.asList(template));
+		warmer.warmUp(template);
+
+		assertTrue(warmer.isReady());
+		verify(template, never()).toTestDocument(any(OutputStream.class));
+	}
+
+	@Test
+	public void warmUpSingleTemplate() throws Exception {
+		Template<?> template = template("document");
+		warmer.setExecutor(new SyncTaskExecutor());
+
+		warmer.warmUp(template);
+
+		verify(template, times(1)).toTestDocument(any(OutputStream.class));
+		assertFalse(warmer.isReady());
+	}
+
+	private Template<?> template(String documentName) {
+		Template<?> template = mock(Template.class);
+		when(template.getDocumentName()).thenReturn(documentName);
+		when(template.getLanguage()).thenReturn("de");
+		return template;
+	}
+}
@@ -0,0 +1,176 @@
+/**
+ * Copyright (C) 2015 Born Informatik AG (www.born.ch)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wte4j.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.List;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+import org.springframework.test.context.transaction.TransactionConfiguration;
+import org.springframework.transaction.annotation.Transactional;
+import org.wte4j.PagedTemplateQuery.SortKey;
+import org.wte4j.StatementCountingDataSource;
+
+/**
+ * Checks that querying templates issues a constant number of SQL statements,
+ * independent of the number of templates found.
+ */
+@RunWith(SpringJUnit4ClassRunner.class)
+@ContextConfiguration(classes = { WordTemplateQueryScaleTest.ScaleTestConfig.class })
+@TransactionConfiguration(defaultRollback = true)
+@Transactional
+public class WordTemplateQueryScaleTest {
+
+	private static final int TEMPLATE_COUNT = 2000;
+
+	@PersistenceContext
+	EntityManager entityManager;
+
+	@Autowired
+	StatementCountingDataSource dataSource;
+
+	@Before
+	public void resetCounter() {
+		entityManager.clear();
+		dataSource.reset();
+	}
+
+	@Test
+	public void listAll() {
+		List<PersistentTemplate> result = query().list(entityManager);
+		int statements = dataSource.getStatementCount();
+
+		assertEquals(TEMPLATE_COUNT + 4, result.size());
+		assertTrue("statements: " + statements, statements <= 3);
+	}
+
+	@Test
+	public void statementCountIndependentOfResultSize() {
+		List<PersistentTemplate> few = query().documentName("scale-1").list(
+				entityManager);
+		int statementsForFew = dataSource.getStatementCount();
+
+		entityManager.clear();
+		dataSource.reset();
+		List<PersistentTemplate> many = query().language("xx").list(
+				entityManager);
+		int statementsForMany = dataSource.getStatementCount();
+
+		assertEquals(1, few.size());
+		assertEquals(TEMPLATE_COUNT, many.size());
+		assertEquals(statementsForFew, statementsForMany);
+	}
+
+	@Test
+	public void listPage() {
+		List<PersistentTemplate> result = query().language("xx")
+				.orderBy(SortKey.DOCUMENT_NAME, true).offset(100).limit(20)
+				.list(entityManager);
+		assertEquals(20, result.size());
+		assertEquals(2, result.get(0).getProperties().size());
+		assertEquals(3, dataSource.getStatementCount());
+	}
+
+	@Test
+	public void count() {
+		assertEquals(TEMPLATE_COUNT, query().language("xx").count(entityManager));
+		assertEquals(1, dataSource.getStatementCount());
+	}
+
+	@Test
+	public void collectionsAreLoaded() {
+		List<PersistentTemplate> result = query().language("xx").list(
+				entityManager);
+		for (PersistentTemplate template : result) {
+			assertEquals(2, template.getProperties().size());
+			assertEquals(template.getDocumentName(),
+					template.getProperties().get("name"));
+			assertEquals(2, template.getContentMapping().size());
+			assertEquals("key-" + template.getDocumentName(), template
+					.getContentMapping().get("control1").getModelKey());
+		}
+		assertTrue(dataSource.getStatementCount() <= 3);
+	}
+
+	private WordTemplateQuery query() {
+		return new WordTemplateQuery(null, entityManager.getCriteriaBuilder());
+	}
+
+	@Configuration
+	static class ScaleTestConfig extends GeneratedTemplatesConfig {
+
+		@Override
+		int getTemplateCount() {
+			return TEMPLATE_COUNT;
+		}
+
+		@Override
+		String getNamePrefix() {
+			return "scale-";
+		}
+
+		@Override
+		String getLanguage() {
+			return "xx";
+		}
+
+		@Override
+		void insertCollections(JdbcTemplate jdbcTemplate) {
+			jdbcTemplate
+					.batchUpdate(
+							"INSERT INTO WTE4J_TEMPLATE_PROPERTIES (TEMPLATE_ID, PROPERTY_KEY, PROPERTY_VALUE) VALUES (?, 'name', ?), (?, 'type', 'scale')",
+							new TemplateRows() {
+
+								@Override
+								void setValues(PreparedStatement ps, int row,
+										long id, String name)
+										throws SQLException {
+									ps.setLong(1, id);
+									ps.setString(2, name);
+									ps.setLong(3, id);
+								}
+							});
+			jdbcTemplate
+					.batchUpdate(
+							"INSERT INTO WTE4J_TEMPLATE_CONTENT_MAPPING (TEMPLATE_ID, CONENTEND_CONTROL_ID, MODEL_KEY) VALUES (?, 'control1', ?), (?, 'control2', 'key')",
+							new TemplateRows() {
+
+								@Override
+								void setValues(PreparedStatement ps, int row,
+										long id, String name)
+										throws SQLException {
+									ps.setLong(1, id);
+									ps.setString(2, "key-" + name);
+									ps.setLong(3, id);
+								}
+							});
+		}
+	}
+}
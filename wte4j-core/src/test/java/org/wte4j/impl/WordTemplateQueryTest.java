@@ -16,8 +16,10 @@
 package org.wte4j.impl;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 
+import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -32,6 +34,10 @@ import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
 import org.springframework.test.context.transaction.TransactionConfiguration;
 import org.springframework.transaction.annotation.Transactional;
 import org.wte4j.EmbeddedDataBaseConfig;
+import org.wte4j.MappingDetail;
+import org.wte4j.PagedTemplateQuery.SortKey;
+import org.wte4j.TemplateMetadata;
+import org.wte4j.User;
 
 @RunWith(SpringJUnit4ClassRunner.class)
 @ContextConfiguration(classes={EmbeddedDataBaseConfig.class})
@@ -118,6 +124,161 @@ public class WordTemplateQueryTest  {
 				.containsAll(properties.entrySet()));
 	}
 
+	@Test
+	public void listMetadataAll() {
+		List<TemplateMetadata> result = query().listMetadata(entityManager);
+		assertEquals(4, result.size());
+	}
+
+	@Test
+	public void listMetadataProperty() {
+		Map<String, String> properties = new HashMap<String, String>();
+		properties.put("key1", "value1");
+		properties.put("key2", "value2");
+		List<TemplateMetadata> result = query().hasProperties(properties)
+				.listMetadata(entityManager);
+		assertEquals(1, result.size());
+
+		TemplateMetadata metadata = result.get(0);
+		assertEquals("test2", metadata.getDocumentName());
+		assertEquals("de", metadata.getLanguage());
+		assertEquals(Long.class, metadata.getInputType());
+		assertEquals(new User("test_user2", "Test User 2"),
+				metadata.getEditor());
+		assertEquals(new User("test_user", "Test User"),
+				metadata.getLockingUser());
+		assertEquals(3, metadata.getProperties().size());
+		assertEquals("value3", metadata.getProperties().get("key3"));
+		assertTrue(metadata.getContentMapping().isEmpty());
+	}
+
+	@Test
+	public void listMetadataNotLocked() {
+		List<TemplateMetadata> result = query().documentName("test1")
+				.listMetadata(entityManager);
+		assertEquals(1, result.size());
+		assertNull(result.get(0).getLockingUser());
+	}
+
+	@Test
+	public void listMetadataContentMapping() {
+		PersistentTemplate template = new PersistentTemplate();
+		template.setDocumentName("mapped");
+		template.setLanguage("de");
+		template.setContent(new byte[] { 1, 2, 3 });
+		template.setCreatedAt(new Date());
+		template.setEditedAt(new Date());
+		template.setEditor(new User("user", "user"));
+		template.setProperties(new HashMap<String, String>());
+		MappingDetail detail = new MappingDetail();
+		detail.setModelKey("modelKey");
+		detail.setFormatterDefinition("formatter");
+		Map<String, MappingDetail> mapping = new HashMap<String, MappingDetail>();
+		mapping.put("control", detail);
+		template.setContentMapping(mapping);
+		entityManager.persist(template);
+		entityManager.flush();
+		entityManager.clear();
+
+		List<TemplateMetadata> result = query().documentName("mapped")
+				.listMetadata(entityManager);
+		assertEquals(1, result.size());
+		assertEquals(mapping, result.get(0).getContentMapping());
+		assertTrue(result.get(0).getProperties().isEmpty());
+	}
+
+	@Test
+	public void fetchPlan() {
+		PersistentTemplate template = new PersistentTemplate();
+		template.setDocumentName("fetched");
+		template.setLanguage("de");
+		template.setContent(new byte[] { 1, 2, 3 });
+		template.setCreatedAt(new Date());
+		template.setEditedAt(new Date());
+		template.setEditor(new User("user", "user"));
+		template.setProperties(new HashMap<String, String>());
+		template.setContentMapping(new HashMap<String, MappingDetail>());
+		entityManager.persist(new PersistentContent(template
+				.getContentDigest(), template.getContent()));
+		entityManager.persist(template);
+		entityManager.flush();
+		entityManager.clear();
+
+		PersistentTemplate full = query().documentName("fetched")
+				.fetchPlan(TemplateFetchPlan.FULL).list(entityManager).get(0);
+		assertEquals(3, full.getContent().length);
+		assertEquals(template.getVersion(), full.getVersion());
+
+		PersistentTemplate metadata = query().documentName("fetched")
+				.fetchPlan(TemplateFetchPlan.METADATA).list(entityManager)
+				.get(0);
+		assertNull(metadata.getContent());
+		assertEquals(template.getId(), metadata.getId());
+		assertEquals(template.getVersion(), metadata.getVersion());
+	}
+
+	@Test
+	public void orderByDocumentName() {
+		List<PersistentTemplate> result = query().orderBy(
+				SortKey.DOCUMENT_NAME, true).list(entityManager);
+		assertEquals(4, result.size());
+		assertEquals("document1", result.get(0).getDocumentName());
+		assertEquals("test1", result.get(1).getDocumentName());
+		assertEquals("test2", result.get(2).getDocumentName());
+		assertEquals("test2", result.get(3).getDocumentName());
+	}
+
+	@Test
+	public void orderByEditedAtDescending() {
+		List<PersistentTemplate> result = query().orderBy(SortKey.EDITED_AT,
+				false).list(entityManager);
+		assertEquals("test1", result.get(0).getDocumentName());
+		assertEquals("document1", result.get(3).getDocumentName());
+	}
+
+	@Test
+	public void orderByNameAndLanguage() {
+		List<PersistentTemplate> result = query().documentName("test2")
+				.orderBy(SortKey.LANGUAGE, false).list(entityManager);
+		assertEquals("fr", result.get(0).getLanguage());
+		assertEquals("de", result.get(1).getLanguage());
+	}
+
+	@Test
+	public void listPage() {
+		List<PersistentTemplate> result = query()
+				.orderBy(SortKey.DOCUMENT_NAME, true).offset(1).limit(2)
+				.list(entityManager);
+		assertEquals(2, result.size());
+		assertEquals("test1", result.get(0).getDocumentName());
+		assertEquals(2, result.get(0).getProperties().size());
+		assertEquals("test2", result.get(1).getDocumentName());
+		assertEquals("de", result.get(1).getLanguage());
+		assertEquals(3, result.get(1).getProperties().size());
+	}
+
+	@Test
+	public void listMetadataPage() {
+		List<TemplateMetadata> result = query()
+				.orderBy(SortKey.EDITOR, true).offset(3).limit(10)
+				.listMetadata(entityManager);
+		assertEquals(1, result.size());
+		assertEquals("Test User 2", result.get(0).getEditor()
+				.getDisplayName());
+	}
+
+	@Test
+	public void count() {
+		assertEquals(4, query().count(entityManager));
+		assertEquals(2, query().language("de").count(entityManager));
+		assertEquals(4, query().limit(1).count(entityManager));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void negativeLimit() {
+		query().limit(-1);
+	}
+
 	private WordTemplateQuery query() {
 		return new WordTemplateQuery(null, entityManager.getCriteriaBuilder());
 	}
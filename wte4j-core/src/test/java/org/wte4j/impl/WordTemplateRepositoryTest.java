@@ -26,23 +26,30 @@ import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.anyString;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyZeroInteractions;
 import static org.mockito.Mockito.when;
 
 import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.util.Arrays;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.regex.Pattern;
 
 import javax.persistence.EntityManager;
 import javax.persistence.PersistenceContext;
 import javax.persistence.PersistenceException;
+import javax.sql.DataSource;
 
 import org.apache.commons.collections4.map.HashedMap;
 import org.apache.commons.io.FileUtils;
@@ -50,37 +57,54 @@ import org.apache.commons.io.IOUtils;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.event.ContextRefreshedEvent;
+import org.springframework.context.support.GenericApplicationContext;
+import org.springframework.core.task.SyncTaskExecutor;
 import org.springframework.test.context.ContextConfiguration;
 import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
 import org.springframework.test.context.transaction.TransactionConfiguration;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronizationUtils;
 import org.wte4j.EmbeddedDataBaseConfig;
 import org.wte4j.FileStore;
+import org.wte4j.StatementCountingDataSource;
 import org.wte4j.LockingException;
 import org.wte4j.MappingDetail;
+import org.wte4j.ReadableFileStore;
 import org.wte4j.Template;
 import org.wte4j.TemplateQuery;
 import org.wte4j.User;
 import org.wte4j.WteModelService;
+import org.wte4j.impl.cache.TemplateFileCache;
+import org.wte4j.impl.cache.TemplateIndex;
+import org.wte4j.impl.service.LocalFileStore;
 
 @RunWith(SpringJUnit4ClassRunner.class)
-@ContextConfiguration(classes = { EmbeddedDataBaseConfig.class })
+@ContextConfiguration(classes = { WordTemplateRepositoryTest.RecordingConfig.class })
 @TransactionConfiguration(defaultRollback = true)
 @Transactional
 public class WordTemplateRepositoryTest {
 	private static final long LOCKED_TEMPLATE = 2;
 	private static final long UNLOCKED_TEMPLATE = 1;
+	private static final Pattern CONTENT_WRITE = Pattern
+			.compile("wte4j_template_content\\b|\\bcontent(_digest)?\\s*=");
 	@PersistenceContext
 	EntityManager entityManager;
 	TemplateContextFactory contextFactory = mock(TemplateContextFactory.class);
 	WteModelService modelService = mock(WteModelService.class);
 	WordTemplateRepository repository;
+	@Autowired
+	StatementCountingDataSource dataSource;
 
 	@Before
 	public void initTest() throws Exception {
 		repository = new WordTemplateRepository(entityManager, contextFactory);
 		repository.em = entityManager;
 		repository.contextFactory = contextFactory;
+		repository.setFileStoreExecutor(new SyncTaskExecutor());
 	}
 
 	@Test
@@ -113,6 +137,114 @@ public class WordTemplateRepositoryTest {
 		assertNull(template);
 	}
 
+	@Test
+	@Transactional
+	public void getIndexedTemplate() {
+		TemplateIndex index = new TemplateIndex();
+		index.put(getTemplateInContext(UNLOCKED_TEMPLATE));
+		repository.setTemplateIndex(index);
+		repository.em = mock(EntityManager.class);
+
+		Template<?> template = repository.getTemplate("test1", "en");
+
+		assertNotNull(template);
+		verifyZeroInteractions(repository.em);
+	}
+
+	@Test
+	@Transactional
+	public void getMissingIndexedTemplate() {
+		TemplateIndex index = new TemplateIndex();
+		index.putMissing("XXXX", "XX");
+		repository.setTemplateIndex(index);
+		repository.em = mock(EntityManager.class);
+
+		assertNull(repository.getTemplate("XXXX", "XX"));
+		verifyZeroInteractions(repository.em);
+	}
+
+	@Test
+	@Transactional
+	public void uncommittedReadsAreNotIndexed() {
+		TemplateIndex index = new TemplateIndex();
+		repository.setTemplateIndex(index);
+
+		assertNotNull(repository.getTemplate("test1", "en"));
+		assertNull(repository.getTemplate("XXXX", "XX"));
+
+		assertEquals(0, index.size());
+	}
+
+	@Test
+	@Transactional
+	public void lockIndexedTemplate() {
+		TemplateIndex index = new TemplateIndex();
+		PersistentTemplate inContext = getTemplateInContext(UNLOCKED_TEMPLATE);
+		index.put(inContext);
+		entityManager.detach(inContext);
+		repository.setTemplateIndex(index);
+
+		Template<?> template = repository.getTemplate("test1", "en");
+		User lockingUser = new User("locking", "Locking User");
+		Template<?> locked = repository.lockForEdit(template, lockingUser);
+
+		assertEquals(lockingUser, locked.getLockingUser());
+		assertTrue(isVersionIncontext(locked));
+		assertNull(index.lookup("test1", "en"));
+	}
+
+	@Test
+	@Transactional
+	public void indexHoldsNoContent() throws Exception {
+		TemplateIndex index = new TemplateIndex();
+		repository.setTemplateIndex(index);
+		repository.persist(newTemplate());
+		TransactionSynchronizationUtils.triggerAfterCommit();
+
+		PersistentTemplate indexed = index.lookup("test3", "de").getTemplate();
+		assertFalse(indexed.isContentLoaded());
+		assertTrue(Arrays.equals(getContent("empty.docx"),
+				indexed.getContent()));
+	}
+
+	@Test
+	@Transactional
+	public void lockConflictRemovesIndexedTemplate() {
+		TemplateIndex index = new TemplateIndex();
+		PersistentTemplate inContext = getTemplateInContext(UNLOCKED_TEMPLATE);
+		index.put(inContext);
+		entityManager.detach(inContext);
+		repository.setTemplateIndex(index);
+		// changed by an other node
+		entityManager
+				.createQuery(
+						"UPDATE PersistentTemplate t SET t.version = t.version + 1 WHERE t.id = :id")
+				.setParameter("id", UNLOCKED_TEMPLATE).executeUpdate();
+
+		Template<?> stale = repository.getTemplate("test1", "en");
+		try {
+			repository.lockForEdit(stale, new User("locking", "Locking User"));
+			fail(LockingException.class + " expected");
+		} catch (LockingException e) {
+			assertNull(index.lookup("test1", "en"));
+		}
+	}
+
+	@Test
+	@Transactional
+	public void refreshOfChildContextIsIgnored() {
+		TemplateIndex index = new TemplateIndex();
+		repository.setTemplateIndex(index);
+		repository.em = mock(EntityManager.class);
+		GenericApplicationContext child = new GenericApplicationContext(
+				new GenericApplicationContext());
+
+		repository.onApplicationEvent(new ContextRefreshedEvent(child));
+
+		verifyZeroInteractions(repository.em);
+		assertEquals(0, index.size());
+	}
+
 	@Test(expected = IllegalArgumentException.class)
 	@Transactional
 	public void getTemplateWithWrongInputType() {
@@ -174,6 +306,63 @@ public class WordTemplateRepositoryTest {
 		assertTrue(isVersionIncontext(unlocked));
 	}
 
+	@Test
+	@Transactional
+	public void lockingUpdatesLockColumnsOnly() {
+		WordTemplate<?> template = unlockedTemplate();
+		dataSource.reset();
+		Template<?> locked = repository.lockForEdit(template, new User(
+				"locking", "Locking User"));
+		Template<?> unlocked = repository.unlock(locked);
+
+		for (String sql : dataSource.getPreparedSql()) {
+			assertFalse(sql, sql.contains("content"));
+		}
+		assertTrue(isVersionIncontext(unlocked));
+	}
+
+	@Test
+	@Transactional
+	public void lockingManagedTemplate() {
+		PersistentTemplate inContext = getTemplateInContext(UNLOCKED_TEMPLATE);
+		WordTemplate<?> template = new WordTemplate<Object>(inContext,
+				contextFactory);
+		User lockingUser = new User("locking", "Locking User");
+		Template<?> locked = repository.lockForEdit(template, lockingUser);
+		assertFalse(entityManager.contains(inContext));
+		assertTrue(isVersionIncontext(locked));
+		assertEquals(lockingUser, getTemplateInContext(UNLOCKED_TEMPLATE)
+				.getLockingUser());
+	}
+
+	@Test
+	@Transactional
+	public void persistWithoutContentChange() throws Exception {
+		repository.persist(newTemplate());
+		entityManager.clear();
+		byte[] content = getContent("empty.docx");
+
+		WordTemplate<?> template = (WordTemplate<?>) repository.getTemplate(
+				"test3", "de");
+		assertTrue(Arrays.equals(content, template.getPersistentData()
+				.getContent()));
+		template.getPersistentData().getProperties().put("new", "value");
+		entityManager.clear();
+		dataSource.reset();
+		Template<?> persisted = repository.persist(template);
+
+		assertFalse(dataSource.getPreparedSql().isEmpty());
+		assertNoContentWritten();
+		assertTrue(isVersionIncontext(persisted));
+		entityManager.clear();
+		PersistentTemplate inDatabase = getTemplateInContext(template
+				.getPersistentData().getId());
+		assertEquals("value", inDatabase.getProperties().get("new"));
+		String digest = PersistentContent.digest(content);
+		assertEquals(digest, inDatabase.getContentDigest());
+		assertEquals(1, getContentInContext(digest).getReferenceCount());
+	}
+
 	@Test
 	@Transactional
 	public void persistNewTemplate() {
@@ -194,6 +383,9 @@ public class WordTemplateRepositoryTest {
 		repository.setFileStore(fileStore);
 		try {
 			repository.persist(template);
+			TransactionSynchronizationUtils.triggerAfterCommit();
+			verify(fileStore).getOutStream(
+					template.getPersistentData().getTemplateFileName());
 			File epected = FileUtils.toFile(getClass()
 					.getResource("empty.docx"));
 			assertTrue(FileUtils.contentEquals(epected, file));
@@ -202,6 +394,112 @@ public class WordTemplateRepositoryTest {
 		}
 	}
 
+	@Test
+	@Transactional
+	public void fileStoreIsWrittenAfterCommit() throws Exception {
+		FileStore fileStore = mock(FileStore.class);
+		repository.setFileStore(fileStore);
+		repository.persist(newTemplate());
+		verify(fileStore, never()).getOutStream(anyString());
+	}
+
+	@Test
+	@Transactional
+	public void persistedTemplateIsWarmedUpAfterCommit() throws Exception {
+		TemplateWarmer warmer = mock(TemplateWarmer.class);
+		repository.setTemplateWarmer(warmer);
+		repository.persist(newTemplate());
+		verify(warmer, never()).warmUp(any(Template.class));
+		TransactionSynchronizationUtils.triggerAfterCommit();
+		verify(warmer, times(1)).warmUp(any(Template.class));
+	}
+
+	@Test
+	@Transactional
+	public void identicalContentIsStoredOnce() {
+		WordTemplate<?> first = newTemplate();
+		WordTemplate<?> second = newTemplate();
+		second.getPersistentData().setDocumentName("test4");
+		repository.persist(first);
+		repository.persist(second);
+
+		String digest = first.getPersistentData().getContentDigest();
+		assertEquals(digest, second.getPersistentData().getContentDigest());
+		entityManager.clear();
+		assertEquals(2, getContentInContext(digest).getReferenceCount());
+		assertEquals(1, entityManager
+				.createQuery("SELECT COUNT(c) FROM PersistentContent c",
+						Long.class).getSingleResult().longValue());
+	}
+
+	@Test
+	@Transactional
+	public void changeContentReleasesReplacedContent() throws Exception {
+		WordTemplate<?> template = newTemplate();
+		repository.persist(template);
+		String replacedDigest = template.getPersistentData().getContentDigest();
+		entityManager.clear();
+
+		WordTemplate<?> toChange = (WordTemplate<?>) repository.getTemplate(
+				"test3", "de");
+		toChange.getPersistentData().setContent(new byte[] { 1, 2, 3 });
+		repository.persist(toChange);
+
+		entityManager.clear();
+		assertNull(getContentInContext(replacedDigest));
+		String digest = toChange.getPersistentData().getContentDigest();
+		assertEquals(1, getContentInContext(digest).getReferenceCount());
+	}
+
+	@Test
+	@Transactional
+	public void deleteReleasesContent() {
+		WordTemplate<?> first = newTemplate();
+		WordTemplate<?> second = newTemplate();
+		second.getPersistentData().setDocumentName("test4");
+		repository.persist(first);
+		repository.persist(second);
+		String digest = first.getPersistentData().getContentDigest();
+
+		repository.delete(first);
+		entityManager.clear();
+		assertEquals(1, getContentInContext(digest).getReferenceCount());
+
+		repository.delete(repository.getTemplate("test4", "de"));
+		entityManager.clear();
+		assertNull(getContentInContext(digest));
+	}
+
+	@Test
+	@Transactional
+	public void legacyContentIsMigrated() throws Exception {
+		byte[] content = getContent("empty.docx");
+		entityManager
+				.createNativeQuery(
+						"UPDATE wte4j_template SET content = ? WHERE id = ?")
+				.setParameter(1, content).setParameter(2, UNLOCKED_TEMPLATE)
+				.executeUpdate();
+		entityManager.clear();
+
+		WordTemplate<?> template = (WordTemplate<?>) repository.getTemplate(
+				"test1", "en");
+		assertTrue(Arrays.equals(content, template.getPersistentData()
+				.getContent()));
+		repository.persist(template);
+
+		entityManager.clear();
+		PersistentTemplate inDatabase = getTemplateInContext(UNLOCKED_TEMPLATE);
+		assertEquals(PersistentContent.digest(content),
+				inDatabase.getContentDigest());
+		assertNull(entityManager
+				.createNativeQuery(
+						"SELECT content FROM wte4j_template WHERE id = ?")
+				.setParameter(1, UNLOCKED_TEMPLATE).getSingleResult());
+		assertTrue(Arrays.equals(content,
+				getContentInContext(inDatabase.getContentDigest())
+						.getContent()));
+	}
+
 	@Test
 	@Transactional
 	public void persistOfLocked() throws Exception {
@@ -242,6 +540,7 @@ public class WordTemplateRepositoryTest {
 		template.getPersistentData().setContent(getContent("empty.docx"));
 		try {
 			repository.persist(template);
+			TransactionSynchronizationUtils.triggerAfterCommit();
 			File expected = FileUtils.toFile(getClass().getResource(
 					"empty.docx"));
 			assertTrue(FileUtils.contentEquals(expected, file));
@@ -250,6 +549,17 @@ public class WordTemplateRepositoryTest {
 		}
 	}
 
+	@Test
+	@Transactional
+	public void persistInvalidatesCache() throws Exception {
+		TemplateFileCache cache = mock(TemplateFileCache.class);
+		repository.setTemplateFileCache(cache);
+		WordTemplate<?> template = unlockedTemplate();
+		template.getPersistentData().setContent(getContent("empty.docx"));
+		repository.persist(template);
+		verify(cache, times(1)).invalidate("test1", "en");
+	}
+
 	@Test
 	@Transactional
 	public void deleteTemplate() {
@@ -277,6 +587,8 @@ public class WordTemplateRepositoryTest {
 		repository.setFileStore(fileStore);
 		WordTemplate<?> template = unlockedTemplate();
 		repository.delete(template);
+		verify(fileStore, never()).deleteFile(anyString());
+		TransactionSynchronizationUtils.triggerAfterCommit();
 		verify(fileStore, times(1)).deleteFile(anyString());
 		verify(fileStore, times(1)).deleteFile(
 				template.getPersistentData().getTemplateFileName());
@@ -284,6 +596,127 @@ public class WordTemplateRepositoryTest {
 				isVersionIncontext(template));
 	}
 
+	@Test
+	@Transactional
+	public void filesByDigest() throws Exception {
+		FileStore fileStore = mock(FileStore.class);
+		when(fileStore.getOutStream(anyString())).thenReturn(
+				new ByteArrayOutputStream());
+		repository.setFileStore(fileStore);
+		repository.setStoreFilesByDigest(true);
+		WordTemplate<?> template = newTemplate();
+		repository.persist(template);
+		String fileName = PersistentContent.fileName(template
+				.getPersistentData().getContentDigest());
+		repository.delete(template);
+		TransactionSynchronizationUtils.triggerAfterCommit();
+		verify(fileStore).getOutStream(fileName);
+		verify(fileStore, times(1)).deleteFile(anyString());
+		verify(fileStore).deleteFile(fileName);
+	}
+
+	@Test
+	@Transactional
+	public void filesByNameAreNotRead() throws Exception {
+		repository.persist(newTemplate());
+		entityManager.clear();
+		ReadableFileStore fileStore = mock(ReadableFileStore.class);
+		repository.setFileStore(fileStore);
+
+		WordTemplate<?> template = (WordTemplate<?>) repository.getTemplate(
+				"test3", "de");
+
+		assertTrue(Arrays.equals(getContent("empty.docx"), template
+				.getPersistentData().getContent()));
+		verify(fileStore, never()).getChannel(anyString());
+		verify(fileStore, never()).getInStream(anyString());
+	}
+
+	@Test
+	@Transactional
+	public void sharedFileIsKeptOnDelete() throws Exception {
+		WordTemplate<?> first = newTemplate();
+		WordTemplate<?> second = newTemplate();
+		second.getPersistentData().setDocumentName("test4");
+		repository.persist(first);
+		repository.persist(second);
+		FileStore fileStore = mock(FileStore.class);
+		repository.setFileStore(fileStore);
+		repository.setStoreFilesByDigest(true);
+		repository.delete(first);
+		TransactionSynchronizationUtils.triggerAfterCommit();
+		verify(fileStore, never()).deleteFile(anyString());
+	}
+
+	@Test
+	@Transactional
+	public void contentIsReadFromFileStore() throws Exception {
+		WordTemplate<?> persisted = newTemplate();
+		repository.persist(persisted);
+		entityManager.clear();
+		byte[] stored = new byte[] { 1, 2, 3 };
+		ReadableFileStore fileStore = mock(ReadableFileStore.class);
+		String fileName = PersistentContent.fileName(persisted
+				.getPersistentData().getContentDigest());
+		when(fileStore.getChannel(fileName)).thenReturn(
+				Channels.newChannel(new ByteArrayInputStream(stored)));
+		repository.setFileStore(fileStore);
+		repository.setStoreFilesByDigest(true);
+
+		WordTemplate<?> template = (WordTemplate<?>) repository.getTemplate(
+				"test3", "de");
+
+		assertTrue(Arrays.equals(stored, template.getPersistentData()
+				.getContent()));
+	}
+
+	@Test
+	@Transactional
+	public void writeTransfersStoredFile() throws Exception {
+		WordTemplate<?> persisted = newTemplate();
+		repository.persist(persisted);
+		entityManager.clear();
+		File directory = FileUtils.getTempDirectory();
+		File stored = new File(directory, PersistentContent.fileName(persisted
+				.getPersistentData().getContentDigest()));
+		FileUtils.writeByteArrayToFile(stored, new byte[] { 1, 2, 3 });
+		try {
+			LocalFileStore fileStore = new LocalFileStore();
+			fileStore.setTemplateDirectory(directory);
+			repository.setFileStore(fileStore);
+			repository.setStoreFilesByDigest(true);
+
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			repository.getTemplate("test3", "de").write(out);
+
+			assertTrue(Arrays.equals(new byte[] { 1, 2, 3 }, out.toByteArray()));
+		} finally {
+			stored.delete();
+		}
+	}
+
+	@Test
+	@Transactional
+	public void missingFileIsReadFromDatabase() throws Exception {
+		repository.persist(newTemplate());
+		entityManager.clear();
+		ReadableFileStore fileStore = mock(ReadableFileStore.class);
+		when(fileStore.getChannel(anyString())).thenThrow(
+				new FileNotFoundException());
+		repository.setFileStore(fileStore);
+		repository.setStoreFilesByDigest(true);
+
+		WordTemplate<?> template = (WordTemplate<?>) repository.getTemplate(
+				"test3", "de");
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		template.write(out);
+
+		byte[] content = getContent("empty.docx");
+		assertTrue(Arrays.equals(content, out.toByteArray()));
+		assertTrue(Arrays.equals(content, template.getPersistentData()
+				.getContent()));
+	}
+
 	@Test
 	@Transactional
 	public void errorsWithFileStore() throws Exception {
@@ -358,6 +791,23 @@ public class WordTemplateRepositoryTest {
 		}
 	}
 
+	/**
+	 * Asserts that no statement writes the content table or the content
+	 * columns of a template.
+	 */
+	private void assertNoContentWritten() {
+		for (String sql : dataSource.getPreparedSql()) {
+			String statement = sql.trim().toLowerCase();
+			if (!statement.startsWith("select")) {
+				assertFalse(sql, CONTENT_WRITE.matcher(statement).find());
+			}
+		}
+	}
+
+	private PersistentContent getContentInContext(String digest) {
+		return entityManager.find(PersistentContent.class, digest);
+	}
+
 	PersistentTemplate getTemplateInContext(long id) {
 		return entityManager.find(PersistentTemplate.class, id);
 	}
@@ -372,4 +822,14 @@ public class WordTemplateRepositoryTest {
 		return inContext.getVersion() == wordTemplate.getPersistentData()
 				.getVersion();
 	}
+
+	@Configuration
+	static class RecordingConfig extends EmbeddedDataBaseConfig {
+
+		@Bean
+		@Override
+		public DataSource dataSource() {
+			return new StatementCountingDataSource(super.dataSource());
+		}
+	}
 }
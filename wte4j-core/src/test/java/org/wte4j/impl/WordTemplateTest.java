@@ -23,14 +23,24 @@ import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.anyString;
 import static org.mockito.Mockito.when;
 
+import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
 
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.IOUtils;
@@ -225,6 +235,62 @@ public class WordTemplateTest {
 		wordTemplate.toTestDocument(out);
 	}
 
+	@Test
+	public void concurrentRendering() throws Exception {
+		final int inputCount = 8;
+		final WordTemplate<String> wordTemplate = createWordTemplate("org/wte4j/impl/simpleTemplate.docx",
+				new EchoContextFactory());
+		final List<Map<String, byte[]>> expected = new ArrayList<Map<String, byte[]>>();
+		for (int i = 0; i < inputCount; i++) {
+			expected.add(render(wordTemplate, "input-" + i));
+		}
+
+		ExecutorService executor = Executors.newFixedThreadPool(8);
+		try {
+			List<Future<Boolean>> results = new ArrayList<Future<Boolean>>();
+			for (int i = 0; i < 200; i++) {
+				final int input = i % inputCount;
+				results.add(executor.submit(new Callable<Boolean>() {
+					@Override
+					public Boolean call() throws Exception {
+						Map<String, byte[]> rendered = render(wordTemplate, "input-" + input);
+						return equalEntries(expected.get(input), rendered);
+					}
+				}));
+			}
+			for (Future<Boolean> result : results) {
+				assertTrue("generated document differs", result.get());
+			}
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	private static Map<String, byte[]> render(WordTemplate<String> template, String input) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		template.toDocument(input, out);
+		Map<String, byte[]> entries = new HashMap<String, byte[]>();
+		try (ZipInputStream zipIn = new ZipInputStream(new ByteArrayInputStream(out.toByteArray()))) {
+			ZipEntry entry;
+			while ((entry = zipIn.getNextEntry()) != null) {
+				entries.put(entry.getName(), IOUtils.toByteArray(zipIn));
+			}
+		}
+		return entries;
+	}
+
+	private static boolean equalEntries(Map<String, byte[]> expected, Map<String, byte[]> actual) {
+		if (!expected.keySet().equals(actual.keySet())) {
+			return false;
+		}
+		for (Map.Entry<String, byte[]> entry : expected.entrySet()) {
+			if (!Arrays.equals(entry.getValue(), actual.get(entry.getKey()))) {
+				return false;
+			}
+		}
+		return true;
+	}
+
 	private static void updateContent(WordTemplate<?> template, User user,
 			String fileName) throws IOException {
 		InputStream in = ClassLoader.getSystemResourceAsStream(fileName);
@@ -247,6 +313,11 @@ public class WordTemplateTest {
 
 	private WordTemplate<String> createWordTemplate(String pathToTemplateFile)
 			throws IOException {
+		return createWordTemplate(pathToTemplateFile, contextFactory);
+	}
+
+	private static WordTemplate<String> createWordTemplate(String pathToTemplateFile,
+			TemplateContextFactory contextFactory) throws IOException {
 		File templateDocument = FileUtils.toFile(ClassLoader
 				.getSystemResource(pathToTemplateFile));
 		byte[] templateContent = FileUtils
@@ -264,4 +335,31 @@ public class WordTemplateTest {
 		return wordTemplate;
 	}
 
+	/**
+	 * Creates contexts resolving every expression to the bound input
+	 */
+	private static class EchoContextFactory implements TemplateContextFactory {
+
+		@Override
+		public <E> TemplateContext<E> createTemplateContext(Template<E> template) {
+			return new TemplateContext<E>() {
+				private E data;
+
+				@Override
+				public void bind(E someData) {
+					data = someData;
+				}
+
+				@Override
+				public String resolveValue(String expression) {
+					return expression + ": " + data;
+				}
+
+				@Override
+				public ExpressionError validate(String expression) {
+					return null;
+				}
+			};
+		}
+	}
 }
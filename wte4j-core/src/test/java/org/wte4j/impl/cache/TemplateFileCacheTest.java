@@ -0,0 +1,135 @@
+/**
+ * Copyright (C) 2015 Born Informatik AG (www.born.ch)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wte4j.impl.cache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.Before;
+import org.junit.Test;
+import org.wte4j.impl.PersistentTemplate;
+import org.wte4j.impl.word.WordTemplateFile;
+
+public class TemplateFileCacheTest {
+
+	private byte[] content;
+	private TemplateFileCache cache;
+
+	@Before
+	public void init() throws IOException {
+		InputStream in = getClass().getResourceAsStream("/org/wte4j/impl/empty.docx");
+		try {
+			content = IOUtils.toByteArray(in);
+		} finally {
+			IOUtils.closeQuietly(in);
+		}
+		cache = new TemplateFileCache();
+	}
+
+	@Test
+	public void cachesSameVersion() throws IOException {
+		WordTemplateFile first = cache.getTemplateFile(template("doc", "de", 1));
+		WordTemplateFile second = cache.getTemplateFile(template("doc", "de", 1));
+		assertSame(first, second);
+		assertEquals(1, cache.getStatistics().getMissCount());
+		assertEquals(1, cache.getStatistics().getHitCount());
+		assertEquals(content.length, cache.getWeight());
+	}
+
+	@Test
+	public void newVersionIsReloaded() throws IOException {
+		WordTemplateFile first = cache.getTemplateFile(template("doc", "de", 1));
+		WordTemplateFile second = cache.getTemplateFile(template("doc", "de", 2));
+		assertNotSame(first, second);
+		assertEquals(2, cache.getStatistics().getMissCount());
+	}
+
+	@Test
+	public void newTemplatesAreNotCached() throws IOException {
+		PersistentTemplate template = template("doc", "de", 0);
+		when(template.getId()).thenReturn(null);
+		cache.getTemplateFile(template);
+		assertEquals(0, cache.size());
+	}
+
+	@Test
+	public void identicalContentIsCachedOnce() throws IOException {
+		PersistentTemplate german = template("doc", "de", 1);
+		PersistentTemplate french = template("doc", "fr", 3);
+		when(german.getContentDigest()).thenReturn("digest");
+		when(french.getContentDigest()).thenReturn("digest");
+		WordTemplateFile first = cache.getTemplateFile(german);
+		WordTemplateFile second = cache.getTemplateFile(french);
+		assertSame(first, second);
+		assertEquals(1, cache.size());
+	}
+
+	@Test
+	public void invalidate() throws IOException {
+		cache.getTemplateFile(template("doc", "de", 1));
+		cache.getTemplateFile(template("doc", "de", 2));
+		cache.getTemplateFile(template("doc", "fr", 1));
+		cache.invalidate("doc", "de");
+		assertEquals(1, cache.size());
+		assertEquals(content.length, cache.getWeight());
+	}
+
+	@Test
+	public void evictLeastRecentlyUsedEntry() throws IOException {
+		cache.setMaxEntries(2);
+		WordTemplateFile first = cache.getTemplateFile(template("doc1", "de", 1));
+		cache.getTemplateFile(template("doc2", "de", 1));
+		cache.getTemplateFile(template("doc1", "de", 1));
+		cache.getTemplateFile(template("doc3", "de", 1));
+		assertEquals(2, cache.size());
+		assertEquals(1, cache.getStatistics().getEvictionCount());
+		assertSame(first, cache.getTemplateFile(template("doc1", "de", 1)));
+	}
+
+	@Test
+	public void evictByWeight() throws IOException {
+		cache.setMaxWeight(content.length * 2);
+		cache.getTemplateFile(template("doc1", "de", 1));
+		cache.getTemplateFile(template("doc2", "de", 1));
+		cache.getTemplateFile(template("doc3", "de", 1));
+		assertEquals(2, cache.size());
+		assertEquals(content.length * 2, cache.getWeight());
+	}
+
+	@Test
+	public void tooHeavyTemplatesAreNotCached() throws IOException {
+		cache.setMaxWeight(content.length - 1);
+		cache.getTemplateFile(template("doc", "de", 1));
+		assertEquals(0, cache.size());
+	}
+
+	private PersistentTemplate template(String documentName, String language, long version) {
+		PersistentTemplate template = mock(PersistentTemplate.class);
+		when(template.getId()).thenReturn(1L);
+		when(template.getDocumentName()).thenReturn(documentName);
+		when(template.getLanguage()).thenReturn(language);
+		when(template.getVersion()).thenReturn(version);
+		when(template.getContent()).thenReturn(content);
+		return template;
+	}
+}
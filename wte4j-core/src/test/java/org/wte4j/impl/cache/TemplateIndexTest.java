@@ -0,0 +1,158 @@
+/**
+ * Copyright (C) 2015 Born Informatik AG (www.born.ch)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wte4j.impl.cache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashMap;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.wte4j.impl.PersistentTemplate;
+
+public class TemplateIndexTest {
+
+	private TemplateIndex index;
+
+	@Before
+	public void init() {
+		index = new TemplateIndex();
+	}
+
+	@Test
+	public void lookupReturnsCopies() {
+		PersistentTemplate template = template("doc", "de", 1);
+		index.put(template);
+
+		TemplateIndex.Lookup lookup = index.lookup("doc", "de");
+
+		assertFalse(lookup.isMissing());
+		PersistentTemplate first = lookup.getTemplate();
+		PersistentTemplate second = lookup.getTemplate();
+		assertNotSame(template, first);
+		assertNotSame(first, second);
+		assertEquals(1L, first.getVersion());
+		first.getProperties().put("key", "changed");
+		assertEquals("value", index.lookup("doc", "de").getTemplate().getProperties().get("key"));
+		assertEquals(2, index.getStatistics().getHitCount());
+	}
+
+	@Test
+	public void indexedTemplatesExpire() {
+		index.setTimeToLiveMillis(0);
+		index.put(template("doc", "de", 1));
+
+		assertNull(index.lookup("doc", "de"));
+		assertEquals(0, index.size());
+	}
+
+	@Test
+	public void unknownTemplate() {
+		assertNull(index.lookup("doc", "de"));
+		assertEquals(1, index.getStatistics().getMissCount());
+	}
+
+	@Test
+	public void olderVersionIsNotIndexed() {
+		index.put(template("doc", "de", 2));
+		index.put(template("doc", "de", 1));
+
+		assertEquals(2L, index.lookup("doc", "de").getTemplate().getVersion());
+	}
+
+	@Test
+	public void missingTemplate() {
+		index.putMissing("doc", "de");
+
+		assertTrue(index.lookup("doc", "de").isMissing());
+		assertNull(index.lookup("doc", "de").getTemplate());
+	}
+
+	@Test
+	public void missingDoesNotReplaceTemplate() {
+		index.put(template("doc", "de", 1));
+		index.putMissing("doc", "de");
+
+		assertFalse(index.lookup("doc", "de").isMissing());
+	}
+
+	@Test
+	public void templateReplacesMissing() {
+		index.putMissing("doc", "de");
+		index.put(template("doc", "de", 0));
+
+		assertFalse(index.lookup("doc", "de").isMissing());
+	}
+
+	@Test
+	public void missingExpires() throws InterruptedException {
+		index.setMissTimeToLiveMillis(1);
+		index.putMissing("doc", "de");
+		Thread.sleep(5);
+
+		assertNull(index.lookup("doc", "de"));
+		assertEquals(0, index.size());
+	}
+
+	@Test
+	public void deletedVersionIsNotIndexed() {
+		index.put(template("doc", "de", 3));
+		index.putDeleted("doc", "de", 3);
+		index.put(template("doc", "de", 3));
+
+		assertTrue(index.lookup("doc", "de").isMissing());
+	}
+
+	@Test
+	public void missesAreLimited() {
+		index.setMaxMisses(2);
+		index.putMissing("doc1", "de");
+		index.putMissing("doc2", "de");
+		index.putMissing("doc3", "de");
+
+		assertEquals(2, index.size());
+		assertNull(index.lookup("doc3", "de"));
+		assertEquals(1, index.getStatistics().getEvictionCount());
+	}
+
+	@Test
+	public void invalidate() {
+		index.put(template("doc", "de", 1));
+		index.putMissing("other", "de");
+
+		index.invalidate("doc", "de");
+		index.invalidate("other", "de");
+
+		assertNull(index.lookup("doc", "de"));
+		assertNull(index.lookup("other", "de"));
+		assertEquals(0, index.size());
+	}
+
+	private static PersistentTemplate template(String documentName, String language, long version) {
+		PersistentTemplate template = new PersistentTemplate();
+		template.setDocumentName(documentName);
+		template.setLanguage(language);
+		template.setProperties(new HashMap<String, String>());
+		template.getProperties().put("key", "value");
+		ReflectionTestUtils.setField(template, "version", version);
+		return template;
+	}
+}
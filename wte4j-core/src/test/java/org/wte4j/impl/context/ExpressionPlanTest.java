@@ -0,0 +1,141 @@
+/**
+ * Copyright (C) 2015 Born Informatik AG (www.born.ch)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wte4j.impl.context;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import static org.mockito.Matchers.anyList;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.wte4j.ExpressionError;
+import org.wte4j.Formatter;
+import org.wte4j.FormatterFactory;
+import org.wte4j.MappingDetail;
+import org.wte4j.UnknownFormatterException;
+
+public class ExpressionPlanTest {
+	private static final Map<String, Class<?>> ELEMENTS = Collections
+			.<String, Class<?>> singletonMap("key", Integer.class);
+
+	private FormatterFactory formatterFactory;
+
+	@Before
+	public void initMocks() {
+		formatterFactory = mock(FormatterFactory.class);
+		when(formatterFactory.createDefaultFormatter(Integer.class)).thenReturn(mock(Formatter.class));
+		when(formatterFactory.createFormatter("formatter", Arrays.asList("arg1", "arg2"))).thenReturn(
+				mock(Formatter.class));
+	}
+
+	@Test
+	public void resolveExpression() {
+		ExpressionPlan plan = new ExpressionPlan(formatterFactory, ELEMENTS, null);
+
+		ResolvedExpression resolved = plan.resolve("format:formatter(arg1, arg2) key");
+
+		assertEquals("key", resolved.getModelKey());
+		assertEquals("formatter", resolved.getFormatterName());
+		assertEquals(Arrays.asList("arg1", "arg2"), resolved.getFormatterArgs());
+		assertNull(resolved.getError());
+	}
+
+	@Test
+	public void resolveMappedExpression() {
+		MappingDetail mappingDetail = new MappingDetail();
+		mappingDetail.setModelKey("key");
+		mappingDetail.setFormatterDefinition(" formatter(arg1,arg2) ");
+		ExpressionPlan plan = new ExpressionPlan(formatterFactory, ELEMENTS,
+				Collections.singletonMap("contentKey", mappingDetail));
+
+		ResolvedExpression resolved = plan.resolve("contentKey");
+
+		assertEquals("contentKey", resolved.getExpression());
+		assertEquals("key", resolved.getModelKey());
+		assertEquals("formatter", resolved.getFormatterName());
+		assertEquals(Arrays.asList("arg1", "arg2"), resolved.getFormatterArgs());
+		assertNull(resolved.getError());
+	}
+
+	@Test
+	public void resolveInvalidExpressions() {
+		when(formatterFactory.createFormatter(anyString(), anyList())).thenThrow(new UnknownFormatterException(""));
+		ExpressionPlan plan = new ExpressionPlan(formatterFactory, ELEMENTS, null);
+
+		assertEquals(ExpressionError.ILLEGAL_CONTENT_KEY, plan.resolve("unknown").getError());
+		assertEquals(ExpressionError.UNKNOWN_FORMATTER, plan.resolve("format:unknown key").getError());
+	}
+
+	@Test
+	public void expressionIsCompiledOnce() {
+		ExpressionPlan plan = new ExpressionPlan(formatterFactory, ELEMENTS, null);
+		String expression = "format:formatter(arg1, arg2) key";
+
+		ResolvedExpression first = plan.resolve(expression);
+		ResolvedExpression second = plan.resolve(expression);
+
+		assertSame(first, second);
+		assertEquals(1, plan.size());
+		verify(formatterFactory, times(1)).createFormatter("formatter", Arrays.asList("arg1", "arg2"));
+	}
+
+	@Test
+	public void modelKeysOfValidExpressions() {
+		MappingDetail mappingDetail = new MappingDetail();
+		mappingDetail.setModelKey("key");
+		ExpressionPlan plan = new ExpressionPlan(formatterFactory, ELEMENTS,
+				Collections.singletonMap("contentKey", mappingDetail));
+		List<String> contentIds = Arrays.asList("contentKey", "format:formatter(arg1, arg2) key", "unknown");
+
+		Set<String> modelKeys = plan.getModelKeys(contentIds);
+
+		assertEquals(Collections.singleton("key"), new HashSet<String>(modelKeys));
+		assertSame(modelKeys, plan.getModelKeys(Arrays.asList("contentKey", "format:formatter(arg1, arg2) key",
+				"unknown")));
+		assertTrue(plan.getModelKeys(Collections.<String> emptyList()).isEmpty());
+	}
+
+	@Test
+	public void modelKeysAreKeptForLimitedLists() {
+		ExpressionPlan plan = new ExpressionPlan(formatterFactory, ELEMENTS, null);
+		for (int i = 0; i < ExpressionPlan.MAX_MODEL_KEY_LISTS; i++) {
+			plan.getModelKeys(Arrays.asList("key", "content" + i));
+		}
+		List<String> contentIds = Arrays.asList("key", "other");
+
+		Set<String> modelKeys = plan.getModelKeys(contentIds);
+
+		assertEquals(Collections.singleton("key"), new HashSet<String>(modelKeys));
+		assertNotSame(modelKeys, plan.getModelKeys(contentIds));
+	}
+
+}
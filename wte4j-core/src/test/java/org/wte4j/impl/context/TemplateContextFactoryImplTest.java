@@ -0,0 +1,132 @@
+/**
+ * Copyright (C) 2015 Born Informatik AG (www.born.ch)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wte4j.impl.context;
+
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.wte4j.FormatterFactory;
+import org.wte4j.MappingDetail;
+import org.wte4j.Template;
+import org.wte4j.WteModelService;
+import org.wte4j.impl.service.CachingModelService;
+
+public class TemplateContextFactoryImplTest {
+
+	private WteModelService modelService;
+	private TemplateContextFactoryImpl contextFactory;
+
+	@Before
+	public void initFactory() {
+		modelService = mock(WteModelService.class);
+		when(modelService.listModelElements(String.class, Collections.<String, String> emptyMap())).thenReturn(
+				Collections.<String, Class<?>> singletonMap("key", String.class));
+
+		contextFactory = new TemplateContextFactoryImpl();
+		contextFactory.setFormatterFactory(mock(FormatterFactory.class));
+		contextFactory.setModelService(modelService);
+	}
+
+	@Test
+	public void planIsSharedByEqualTemplates() {
+		Template<String> template1 = createTemplate(new HashMap<String, MappingDetail>());
+		Template<String> template2 = createTemplate(new HashMap<String, MappingDetail>());
+
+		ExpressionPlan plan = contextFactory.getExpressionPlan(template1);
+		contextFactory.createTemplateContext(template1);
+
+		assertSame(plan, contextFactory.getExpressionPlan(template2));
+		verify(modelService, times(1)).listModelElements(String.class, Collections.<String, String> emptyMap());
+	}
+
+	@Test
+	public void newPlanOnChangedMapping() {
+		Map<String, MappingDetail> contentMapping = new HashMap<String, MappingDetail>();
+		MappingDetail mappingDetail = new MappingDetail();
+		mappingDetail.setModelKey("key");
+		contentMapping.put("content", mappingDetail);
+		Template<String> template = createTemplate(contentMapping);
+		ExpressionPlan plan = contextFactory.getExpressionPlan(template);
+
+		mappingDetail.setFormatterDefinition("formatter");
+
+		assertNotSame(plan, contextFactory.getExpressionPlan(template));
+	}
+
+	@Test
+	public void storedPlanKeepsMapping() {
+		Map<String, MappingDetail> contentMapping = new HashMap<String, MappingDetail>();
+		MappingDetail mappingDetail = new MappingDetail();
+		mappingDetail.setModelKey("key");
+		contentMapping.put("content", mappingDetail);
+		ExpressionPlan plan = contextFactory.getExpressionPlan(createTemplate(contentMapping));
+
+		mappingDetail.setModelKey("other");
+		contentMapping.put("content2", null);
+
+		MappingDetail unchanged = new MappingDetail();
+		unchanged.setModelKey("key");
+		assertSame(plan, contextFactory.getExpressionPlan(createTemplate(Collections.singletonMap("content", unchanged))));
+	}
+
+	@Test
+	public void newPlanOnInvalidatedModelElements() {
+		CachingModelService cachingModelService = new CachingModelService(modelService);
+		contextFactory.setModelService(cachingModelService);
+		Template<String> template = createTemplate(new HashMap<String, MappingDetail>());
+
+		ExpressionPlan plan = contextFactory.getExpressionPlan(template);
+		assertSame(plan, contextFactory.getExpressionPlan(template));
+
+		cachingModelService.invalidate(String.class);
+
+		assertNotSame(plan, contextFactory.getExpressionPlan(template));
+		verify(modelService, times(2)).listModelElements(String.class, Collections.<String, String> emptyMap());
+	}
+
+	@Test
+	public void maxPlans() {
+		contextFactory.setMaxPlans(1);
+		Template<String> template1 = createTemplate(new HashMap<String, MappingDetail>());
+		Template<String> template2 = createTemplate(Collections.singletonMap("content", new MappingDetail()));
+
+		ExpressionPlan plan = contextFactory.getExpressionPlan(template1);
+		contextFactory.getExpressionPlan(template2);
+
+		assertNotSame(plan, contextFactory.getExpressionPlan(template1));
+	}
+
+	@SuppressWarnings("unchecked")
+	private Template<String> createTemplate(Map<String, MappingDetail> contentMapping) {
+		Template<String> template = mock(Template.class);
+		when(template.getLanguage()).thenReturn("de");
+		when(template.getInputType()).thenReturn((Class) String.class);
+		when(template.getProperties()).thenReturn(Collections.<String, String> emptyMap());
+		when(template.getContentMapping()).thenReturn(contentMapping);
+		return template;
+	}
+}
@@ -21,11 +21,15 @@ import static org.junit.Assert.fail;
 import static org.mockito.Matchers.anyList;
 import static org.mockito.Matchers.anyString;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Set;
 
 import org.junit.Before;
 import org.junit.Test;
@@ -39,7 +43,9 @@ import org.wte4j.FormatterInstantiationException;
 import org.wte4j.MappingDetail;
 import org.wte4j.Template;
 import org.wte4j.UnknownFormatterException;
+import org.wte4j.WteBatchDataModel;
 import org.wte4j.WteDataModel;
+import org.wte4j.WteDemandModelService;
 import org.wte4j.WteModelService;
 import org.wte4j.impl.InvalidExpressionException;
 
@@ -157,4 +163,58 @@ public class TemplateContextImplTest {
 		}
 	}
 
+	@Test
+	public void batchModelValuesAreReadOnce() {
+		WteBatchDataModel batchModel = mock(WteBatchDataModel.class);
+		Set<String> keys = Collections.singleton(KEY);
+		when(batchModel.getValues(keys)).thenReturn(
+				Collections.<String, Object> singletonMap(KEY, VALUE));
+		when(modelService.createModel(template, "batch")).thenReturn(batchModel);
+		when(template.listContentIds()).thenReturn(
+				Arrays.asList("format:formatter(arg) key", "unknown"));
+
+		TemplateContextImpl<String> templateContextImpl = new TemplateContextImpl<>(formatterFactory, modelService, template);
+		templateContextImpl.bind("batch");
+
+		assertEquals(FORMATED_VALUE, templateContextImpl.resolveValue("format:formatter(arg) key"));
+		verify(batchModel).getValues(keys);
+		verify(batchModel, never()).getValue(KEY);
+	}
+
+	@Test
+	public void missingBatchValuesAreReadByKey() {
+		WteBatchDataModel batchModel = mock(WteBatchDataModel.class);
+		when(batchModel.getValues(Collections.singleton(KEY))).thenReturn(
+				Collections.<String, Object> emptyMap());
+		when(batchModel.getValue(KEY)).thenReturn(VALUE);
+		when(modelService.createModel(template, "batch")).thenReturn(batchModel);
+		when(template.listContentIds()).thenReturn(
+				Arrays.asList("format:formatter(arg) key"));
+
+		TemplateContextImpl<String> templateContextImpl = new TemplateContextImpl<>(formatterFactory, modelService, template);
+		templateContextImpl.bind("batch");
+
+		assertEquals(FORMATED_VALUE, templateContextImpl.resolveValue("format:formatter(arg) key"));
+		verify(batchModel).getValue(KEY);
+	}
+
+	@Test
+	public void demandModelServiceReceivesModelKeys() {
+		WteDemandModelService demandModelService = mock(WteDemandModelService.class);
+		when(demandModelService.listModelElements(template.getInputType(), template.getProperties())).thenReturn(
+				ELEMENTS);
+		WteDataModel model = mock(WteDataModel.class);
+		when(model.getValue(KEY)).thenReturn(VALUE);
+		Set<String> keys = Collections.singleton(KEY);
+		when(demandModelService.createModel(template, "demand", keys)).thenReturn(model);
+		when(template.listContentIds()).thenReturn(
+				Arrays.asList("format:formatter(arg) key", "unknown"));
+
+		TemplateContextImpl<String> templateContextImpl = new TemplateContextImpl<>(formatterFactory,
+				demandModelService, template);
+		templateContextImpl.bind("demand");
+
+		assertEquals(FORMATED_VALUE, templateContextImpl.resolveValue("format:formatter(arg) key"));
+		verify(demandModelService).createModel(template, "demand", keys);
+	}
 }
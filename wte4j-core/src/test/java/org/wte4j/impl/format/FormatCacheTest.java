@@ -0,0 +1,55 @@
+/**
+ * Copyright (C) 2015 Born Informatik AG (www.born.ch)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wte4j.impl.format;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import java.text.NumberFormat;
+import java.util.Locale;
+
+import org.junit.Test;
+import org.wte4j.impl.format.FormatCache.NumberStyle;
+
+public class FormatCacheTest {
+
+	@Test
+	public void dateFormatsAreShared() {
+		assertSame(FormatCache.getDateFormat("dd.MM.yyyy", Locale.GERMAN),
+				FormatCache.getDateFormat("dd.MM.yyyy", Locale.GERMAN));
+		assertNotSame(FormatCache.getDateFormat("dd.MM.yyyy", Locale.GERMAN),
+				FormatCache.getDateFormat("dd.MM.yyyy", Locale.FRENCH));
+	}
+
+	@Test
+	public void numberFormatsAreCopiesOfPrototype() {
+		NumberStyle style = new NumberStyle(Locale.GERMAN, 2, false);
+		NumberFormat format = FormatCache.getNumberFormat(style);
+		NumberFormat other = FormatCache.getNumberFormat(new NumberStyle(Locale.GERMAN, 2, false));
+
+		assertNotSame(format, other);
+		assertEquals(format, other);
+		assertEquals("1234,50", format.format(1234.5));
+	}
+
+	@Test
+	public void formatDateFromMillis() {
+		long millis = 0;
+		assertEquals(FormatCache.getDateFormat("yyyy", Locale.GERMAN).format(millis),
+				FormatCache.formatDate(FormatCache.getDateFormat("yyyy", Locale.GERMAN), Integer.valueOf(0)));
+	}
+}
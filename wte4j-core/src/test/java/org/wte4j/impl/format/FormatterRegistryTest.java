@@ -16,12 +16,14 @@
 package org.wte4j.impl.format;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
 
 import java.util.Arrays;
 import java.util.Collections;
 
 import org.junit.Test;
 import org.wte4j.Formatter;
+import org.wte4j.FormatterInstantiationException;
 import org.wte4j.impl.AnnotatedCustomFormatter;
 import org.wte4j.impl.IllegalDefaultFormatter;
 import org.wte4j.impl.Simple;
@@ -80,4 +82,33 @@ public class FormatterRegistryTest {
 		assertEquals(23, formatter.value);
 	}
 
+	@Test
+	public void constructorIsResolvedOnce() {
+		FormatterRegistry registry = new FormatterRegistry();
+		registry.registerClass(TwoArgFormatter.class);
+
+		Formatter first = registry.createFormatter("TwoArgFormatter", Arrays.asList("a", "b"));
+		Formatter second = registry.createFormatter("TwoArgFormatter", Arrays.asList("a", "b"));
+		registry.createFormatter("TwoArgFormatter", Arrays.asList("a", "c"));
+
+		assertNotSame(first, second);
+		assertEquals(1, registry.getStatistics().getHitCount());
+		assertEquals(2, registry.getStatistics().getMissCount());
+	}
+
+	@Test
+	public void multipleConvertedArgs() {
+		FormatterRegistry registry = new FormatterRegistry();
+		registry.initBuildInFormatter();
+
+		Formatter formatter = registry.createFormatter("number", Arrays.asList("1", "true"));
+
+		assertEquals("1'000.0", formatter.format(1000));
+	}
+
+	@Test(expected = FormatterInstantiationException.class)
+	public void illegalArg() {
+		FormatterRegistry.createFormatter(IntArgFormatter.class, Arrays.asList("a"));
+	}
+
 }
@@ -0,0 +1,185 @@
+/**
+ * Copyright (C) 2015 Born Informatik AG (www.born.ch)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wte4j.impl.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+import org.wte4j.WteDataModel;
+
+public class BeanAccessorTest {
+
+	@Test
+	public void readSimpleProperty() {
+		Customer customer = new Customer("Muster", null);
+		assertEquals("Muster", BeanAccessor.getValue(customer, "name"));
+	}
+
+	@Test
+	public void readPrimitiveProperty() {
+		Address address = new Address("Bern", 3000);
+		assertEquals(3000, BeanAccessor.getValue(address, "zipCode"));
+	}
+
+	@Test
+	public void readNestedProperty() {
+		Customer customer = new Customer("Muster", new Address("Bern", 3000));
+		assertEquals("Bern", BeanAccessor.getValue(customer, "address.city"));
+	}
+
+	@Test
+	public void nestedPropertyOfNullIsNull() {
+		Customer customer = new Customer("Muster", null);
+		assertNull(BeanAccessor.getValue(customer, "address.city"));
+	}
+
+	@Test
+	public void readMapValue() {
+		Map<String, Object> map = Collections.<String, Object> singletonMap(
+				"customer", new Customer("Muster", null));
+		assertEquals("Muster", BeanAccessor.getValue(map, "customer.name"));
+	}
+
+	@Test
+	public void readIndexedProperty() {
+		Customer customer = new Customer("Muster", null);
+		assertEquals("first", BeanAccessor.getValue(customer, "notes[0]"));
+	}
+
+	@Test
+	public void readPropertyOfNonPublicClass() {
+		Named named = new HiddenName();
+		assertEquals("hidden", BeanAccessor.getValue(named, "name"));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void unknownProperty() {
+		BeanAccessor.getValue(new Customer("Muster", null), "unknown");
+	}
+
+	@Test
+	public void accessorIsCreatedOncePerClass() {
+		BeanAccessor accessor = BeanAccessor.forClass(Customer.class);
+		assertSame(accessor, BeanAccessor.forClass(Customer.class));
+		assertTrue(accessor.hasProperty("address"));
+		assertFalse(accessor.hasProperty("unknown"));
+	}
+
+	@Test
+	public void modelServiceListsNestedElements() {
+		FlatBeanModelService service = new FlatBeanModelService();
+		Map<String, Class<?>> flat = service.listModelElements(Customer.class,
+				null);
+		assertTrue(flat.containsKey("address"));
+		assertFalse(flat.containsKey("address.city"));
+
+		service.setNestingDepth(1);
+		Map<String, Class<?>> nested = service.listModelElements(
+				Customer.class, null);
+		assertEquals(String.class, nested.get("address.city"));
+		assertEquals(int.class, nested.get("address.zipCode"));
+	}
+
+	@Test
+	public void modelServiceReadsNestedValues() {
+		FlatBeanModelService service = new FlatBeanModelService();
+		WteDataModel model = service.createModel(null, new Customer("Muster",
+				new Address("Bern", 3000)));
+		assertEquals("Muster", model.getValue("name"));
+		assertEquals("Bern", model.getValue("address.city"));
+	}
+
+	@Test
+	public void modelServiceReadsValuesOnDemandOnce() {
+		FlatBeanModelService service = new FlatBeanModelService();
+		CountingBean bean = new CountingBean();
+		WteDataModel model = service.createModel(null, bean);
+		assertEquals(0, bean.reads);
+
+		assertEquals("value", model.getValue("value"));
+		assertEquals("value", model.getValue("value"));
+		assertEquals(1, bean.reads);
+	}
+
+	public static class Customer {
+		private final String name;
+		private final Address address;
+
+		public Customer(String name, Address address) {
+			this.name = name;
+			this.address = address;
+		}
+
+		public String getName() {
+			return name;
+		}
+
+		public Address getAddress() {
+			return address;
+		}
+
+		public List<String> getNotes() {
+			return Arrays.asList("first", "second");
+		}
+	}
+
+	public static class Address {
+		private final String city;
+		private final int zipCode;
+
+		public Address(String city, int zipCode) {
+			this.city = city;
+			this.zipCode = zipCode;
+		}
+
+		public String getCity() {
+			return city;
+		}
+
+		public int getZipCode() {
+			return zipCode;
+		}
+	}
+
+	public static class CountingBean {
+		private int reads;
+
+		public String getValue() {
+			reads++;
+			return "value";
+		}
+	}
+
+	public interface Named {
+		String getName();
+	}
+
+	private static class HiddenName implements Named {
+		@Override
+		public String getName() {
+			return "hidden";
+		}
+	}
+}
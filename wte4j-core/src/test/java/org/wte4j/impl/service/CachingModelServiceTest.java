@@ -0,0 +1,209 @@
+/**
+ * Copyright (C) 2015 Born Informatik AG (www.born.ch)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wte4j.impl.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.wte4j.Template;
+import org.wte4j.WteDataModel;
+import org.wte4j.WteDemandModelService;
+import org.wte4j.WteModelService;
+
+public class CachingModelServiceTest {
+
+	private WteModelService delegate;
+	private Map<String, String> properties;
+
+	@Before
+	public void initDelegate() {
+		delegate = mock(WteModelService.class);
+		properties = new HashMap<String, String>();
+		properties.put("viewName", "person");
+		Map<String, Class<?>> elements = Collections
+				.<String, Class<?>> singletonMap("name", String.class);
+		when(delegate.listModelElements(String.class, properties)).thenReturn(
+				elements);
+	}
+
+	@Test
+	public void modelElementsAreListedOnce() {
+		CachingModelService service = new CachingModelService(delegate);
+
+		Map<String, Class<?>> first = service.listModelElements(String.class,
+				properties);
+		Map<String, Class<?>> second = service.listModelElements(
+				String.class, new HashMap<String, String>(properties));
+
+		assertSame(first, second);
+		assertEquals(String.class, first.get("name"));
+		verify(delegate, times(1)).listModelElements(String.class, properties);
+		assertEquals(1, service.getStatistics().getHitCount());
+	}
+
+	@Test
+	public void propertiesArePartOfTheKey() {
+		CachingModelService service = new CachingModelService(delegate);
+		service.listModelElements(String.class, properties);
+
+		Map<String, String> otherProperties = Collections.singletonMap(
+				"viewName", "address");
+		service.listModelElements(String.class, otherProperties);
+
+		verify(delegate, times(1)).listModelElements(String.class,
+				otherProperties);
+		assertEquals(2, service.size());
+	}
+
+	@Test
+	public void invalidate() {
+		CachingModelService service = new CachingModelService(delegate);
+		service.listModelElements(String.class, properties);
+
+		service.invalidate(String.class);
+		service.listModelElements(String.class, properties);
+
+		verify(delegate, times(2)).listModelElements(String.class, properties);
+	}
+
+	@Test
+	public void expiredModelElementsAreListedAgain() throws Exception {
+		CachingModelService service = new CachingModelService(delegate, 1);
+		service.listModelElements(String.class, properties);
+
+		Thread.sleep(5);
+		service.listModelElements(String.class, properties);
+
+		verify(delegate, times(2)).listModelElements(String.class, properties);
+	}
+
+	@Test
+	public void modelsAreCreatedByDelegate() {
+		Template<?> template = mock(Template.class);
+		WteDataModel model = mock(WteDataModel.class);
+		when(delegate.createModel(template, "input")).thenReturn(model);
+		CachingModelService service = new CachingModelService(delegate);
+
+		assertSame(model, service.createModel(template, "input"));
+		assertSame(model, service.createModel(template, "input"));
+		verify(delegate, times(2)).createModel(template, "input");
+	}
+
+	@Test
+	public void modelKeysArePassedToDemandModelService() {
+		Template<?> template = mock(Template.class);
+		WteDataModel model = mock(WteDataModel.class);
+		Set<String> modelKeys = Collections.singleton("name");
+		WteDemandModelService demandDelegate = mock(WteDemandModelService.class);
+		when(demandDelegate.createModel(template, "input", modelKeys))
+				.thenReturn(model);
+		when(delegate.createModel(template, "input")).thenReturn(model);
+
+		assertSame(model, new CachingModelService(demandDelegate).createModel(
+				template, "input", modelKeys));
+		assertSame(model, new CachingModelService(delegate).createModel(
+				template, "input", modelKeys));
+		verify(demandDelegate).createModel(template, "input", modelKeys);
+		verify(delegate).createModel(template, "input");
+	}
+
+	@Test
+	public void postProcessorWrapsModelServices() {
+		ModelServiceCachePostProcessor postProcessor = new ModelServiceCachePostProcessor();
+
+		Object wrapped = postProcessor.postProcessAfterInitialization(delegate,
+				"wteModelService");
+		assertTrue(wrapped instanceof ModelElementCache);
+		WteModelService modelService = (WteModelService) wrapped;
+		modelService.listModelElements(String.class, properties);
+		modelService.listModelElements(String.class, properties);
+		verify(delegate, times(1)).listModelElements(String.class, properties);
+		assertEquals(1, ((ModelElementCache) wrapped).size());
+
+		assertSame(wrapped, postProcessor.postProcessAfterInitialization(
+				wrapped, "wteModelService"));
+		Object other = new Object();
+		assertSame(other,
+				postProcessor.postProcessAfterInitialization(other, "other"));
+	}
+
+	@Test
+	public void postProcessorKeepsMethodsOfModelServices() {
+		ModelServiceCachePostProcessor postProcessor = new ModelServiceCachePostProcessor();
+		ExtendedModelService bean = new ExtendedModelService(delegate);
+
+		Object wrapped = postProcessor.postProcessAfterInitialization(bean,
+				"wteModelService");
+
+		assertTrue(wrapped instanceof Runnable);
+		((Runnable) wrapped).run();
+		assertEquals(1, bean.runs);
+		assertEquals("extended", ((ExtendedModelService) wrapped).extension());
+		((WteModelService) wrapped).listModelElements(String.class, properties);
+		((WteModelService) wrapped).listModelElements(String.class, properties);
+		verify(delegate, times(1)).listModelElements(String.class, properties);
+		((ModelElementCache) wrapped).invalidateAll();
+		assertEquals(0, ((ModelElementCache) wrapped).size());
+	}
+
+	public static class ExtendedModelService implements WteModelService,
+			Runnable {
+		private final WteModelService delegate;
+		private int runs;
+
+		public ExtendedModelService(WteModelService delegate) {
+			this.delegate = delegate;
+		}
+
+		@Override
+		public Map<String, Class<?>> listModelElements(Class<?> inputClass,
+				Map<String, String> properties) {
+			return delegate.listModelElements(inputClass, properties);
+		}
+
+		@Override
+		public List<String> listRequiredModelProperties() {
+			return delegate.listRequiredModelProperties();
+		}
+
+		@Override
+		public WteDataModel createModel(Template<?> template, Object input) {
+			return delegate.createModel(template, input);
+		}
+
+		@Override
+		public void run() {
+			runs++;
+		}
+
+		public String extension() {
+			return "extended";
+		}
+	}
+}
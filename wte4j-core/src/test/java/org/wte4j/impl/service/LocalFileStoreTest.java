@@ -21,10 +21,13 @@ import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
 import java.io.File;
+import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.IOUtils;
@@ -66,6 +69,7 @@ public class LocalFileStoreTest {
 			out = fileStore.getOutStream(fileName);
 			in = FileUtils.openInputStream(testFile);
 			IOUtils.copy(in, out);
+			out.close();
 
 			File[] filesInDir = tempDir.listFiles();
 			assertEquals(1, filesInDir.length);
@@ -103,4 +107,66 @@ public class LocalFileStoreTest {
 		fileStore.deleteFile(fileName + "bla");
 		fail("Exception Expected");
 	}
+
+	@Test
+	public void fileIsReplacedWhenClosed() throws IOException {
+		final String fileName = "fileStoreTest.txt";
+		File file = new File(tempDir, fileName);
+		FileUtils.writeStringToFile(file, "old");
+
+		LocalFileStore fileStore = new LocalFileStore();
+		fileStore.setTemplateDirectory(tempDir);
+
+		OutputStream out = fileStore.getOutStream(fileName);
+		try {
+			IOUtils.write("new", out);
+			assertEquals("old", FileUtils.readFileToString(file));
+		} finally {
+			out.close();
+		}
+		assertEquals("new", FileUtils.readFileToString(file));
+		assertEquals(1, tempDir.listFiles().length);
+	}
+
+	@Test
+	public void readFile() throws IOException {
+		final String fileName = "fileStoreTest.txt";
+		FileUtils.writeStringToFile(new File(tempDir, fileName), "content");
+
+		LocalFileStore fileStore = new LocalFileStore();
+		fileStore.setTemplateDirectory(tempDir);
+
+		InputStream in = fileStore.getInStream(fileName);
+		try {
+			assertEquals("content", IOUtils.toString(in));
+		} finally {
+			in.close();
+		}
+	}
+
+	@Test
+	public void readFileWithChannel() throws IOException {
+		final String fileName = "fileStoreTest.txt";
+		FileUtils.writeStringToFile(new File(tempDir, fileName), "content");
+
+		LocalFileStore fileStore = new LocalFileStore();
+		fileStore.setTemplateDirectory(tempDir);
+
+		FileChannel channel = fileStore.getChannel(fileName);
+		try {
+			ByteBuffer buffer = ByteBuffer.allocate((int) channel.size());
+			channel.read(buffer);
+			assertEquals("content", new String(buffer.array(), "UTF-8"));
+		} finally {
+			channel.close();
+		}
+	}
+
+	@Test(expected = FileNotFoundException.class)
+	public void readNoExistingFile() throws IOException {
+		LocalFileStore fileStore = new LocalFileStore();
+		fileStore.setTemplateDirectory(tempDir);
+
+		fileStore.getInStream("fileStoreTest.txt");
+	}
 }
@@ -15,12 +15,17 @@
  */
 package org.wte4j.impl.service;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -30,9 +35,11 @@ import org.junit.Before;
 import org.junit.Test;
 import org.mockito.invocation.InvocationOnMock;
 import org.mockito.stubbing.Answer;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
 import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
 import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType;
+import org.wte4j.MappingDetail;
 import org.wte4j.Template;
 import org.wte4j.WteDataModel;
 
@@ -111,5 +118,83 @@ public class SimpleDbViewModelServiceTest {
 		assertNotNull(model.getValue("testdecimal"));
 	}
 
-	
+	@Test
+	public void modelContainsReferencedColumns() throws SQLException {
+		SimpleDbViewModelService ms = new SimpleDbViewModelService(ds);
+		Template<Integer> template = viewTemplate("testint",
+				"format:number testreal");
+
+		WteDataModel model = ms.createModel(template, 1);
+		assertEquals(1, model.getValue("testint"));
+		assertNotNull(model.getValue("testreal"));
+		assertNotNull(model.getValue("id"));
+		assertNull(model.getValue("testvarchar255"));
+	}
+
+	@Test
+	public void modelContainsMappedColumns() throws SQLException {
+		SimpleDbViewModelService ms = new SimpleDbViewModelService(ds);
+		Template<Integer> template = viewTemplate("amount");
+		MappingDetail detail = new MappingDetail();
+		detail.setModelKey("testdecimal");
+		when(template.getContentMapping()).thenReturn(
+				Collections.singletonMap("amount", detail));
+
+		WteDataModel model = ms.createModel(template, 1);
+		assertNotNull(model.getValue("testdecimal"));
+		assertNull(model.getValue("testint"));
+	}
+
+	@Test
+	public void modelContainsDemandedColumns() throws SQLException {
+		SimpleDbViewModelService ms = new SimpleDbViewModelService(ds);
+		Template<Integer> template = viewTemplate("testint");
+
+		WteDataModel model = ms.createModel(template, 1,
+				Collections.singleton("TESTREAL"));
+		assertNotNull(model.getValue("testreal"));
+		assertNull(model.getValue("testint"));
+	}
+
+	@Test
+	public void statementsFollowModelElements() throws SQLException {
+		SimpleDbViewModelService ms = new SimpleDbViewModelService(ds);
+		Template<Integer> template = viewTemplate("testint", "testreal");
+		assertEquals(1, ms.createModel(template, 1).getValue("testint"));
+
+		new JdbcTemplate(ds).execute("alter table testDbView drop column testInt");
+		ms.listModelElements(Integer.class, template.getProperties());
+
+		WteDataModel model = ms.createModel(template, 1);
+		assertNull(model.getValue("testint"));
+		assertNotNull(model.getValue("testreal"));
+	}
+
+	@Test
+	public void createModels() throws SQLException {
+		SimpleDbViewModelService ms = new SimpleDbViewModelService(ds);
+		Template<Integer> template = viewTemplate("testint");
+		List<Integer> pks = new ArrayList<Integer>();
+		for (int i = 250; i > 0; i--) {
+			pks.add(i);
+		}
+
+		Map<Integer, WteDataModel> models = ms.createModels(template, pks);
+		assertEquals(1, models.size());
+		assertEquals(1, models.get(1).getValue("testint"));
+		assertTrue(ms.createModels(template, Arrays.<Integer> asList())
+				.isEmpty());
+	}
+
+	private Template<Integer> viewTemplate(String... contentIds) {
+		@SuppressWarnings("unchecked")
+		Template<Integer> template = mock(Template.class);
+		Map<String, String> modelProperties = new HashMap<String, String>();
+		modelProperties.put(SimpleDbViewModelService.VIEW_NAME, "TESTDBVIEW");
+		modelProperties.put(SimpleDbViewModelService.PRIMARY_KEY_COLUMN_NAME,
+				"ID");
+		when(template.getProperties()).thenReturn(modelProperties);
+		when(template.listContentIds()).thenReturn(Arrays.asList(contentIds));
+		return template;
+	}
 }
@@ -15,15 +15,20 @@
  */
 package org.wte4j.impl.word;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.util.List;
+import java.util.Map;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipFile;
 
@@ -114,4 +119,29 @@ public class Docx4JWordTemplateTest {
 		}
 	}
 
+	@Test
+	public void writeWorkingCopyAsOpenXMLTest() throws IOException {
+		InputStream in = getClass().getResourceAsStream(
+				"PlainTextContentControls.docx");
+		byte[] original;
+		try {
+			original = IOUtils.toByteArray(in);
+		} finally {
+			IOUtils.closeQuietly(in);
+		}
+		Docx4JWordTemplate doc = new Docx4JWordTemplate(new ByteArrayInputStream(original));
+		Docx4JWordTemplate copy = new Docx4JWordTemplate(doc.copyPackage(), doc);
+		copy.getPlainTextContent().get(0).setContent("new content");
+
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		copy.writeAsOpenXML(out);
+
+		Map<String, byte[]> originalEntries = RawZipFileTest.unzip(original);
+		Map<String, byte[]> writtenEntries = RawZipFileTest.unzip(out.toByteArray());
+		assertEquals(originalEntries.keySet(), writtenEntries.keySet());
+		assertArrayEquals(originalEntries.get("word/styles.xml"), writtenEntries.get("word/styles.xml"));
+		assertFalse(new String(originalEntries.get("word/document.xml"), "UTF-8").contains("new content"));
+		assertTrue(new String(writtenEntries.get("word/document.xml"), "UTF-8").contains("new content"));
+	}
+
 }
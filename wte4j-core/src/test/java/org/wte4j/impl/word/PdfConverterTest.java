@@ -0,0 +1,122 @@
+/**
+ * Copyright (C) 2015 Born Informatik AG (www.born.ch)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wte4j.impl.word;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.docx4j.openpackaging.packages.WordprocessingMLPackage;
+import org.junit.Test;
+
+public class PdfConverterTest {
+
+	@Test
+	public void fopFactoryIsReused() throws Exception {
+		PdfConverter converter = new PdfConverter();
+
+		String first = convert(converter);
+		String second = convert(converter);
+
+		assertTrue(first.startsWith("%PDF"));
+		assertTrue(second.startsWith("%PDF"));
+		assertEquals(1, converter.getFopFactoryCount());
+		assertEquals(1, converter.getStatistics().getMissCount());
+		assertEquals(1, converter.getStatistics().getHitCount());
+	}
+
+	@Test
+	public void concurrentConversionsAreLimited() throws Exception {
+		final AtomicInteger running = new AtomicInteger();
+		final AtomicInteger maxRunning = new AtomicInteger();
+		final PdfConverter converter = new PdfConverter() {
+			@Override
+			void render(WordprocessingMLPackage wordMLPackage, OutputStream out) {
+				int current = running.incrementAndGet();
+				synchronized (maxRunning) {
+					maxRunning.set(Math.max(maxRunning.get(), current));
+				}
+				try {
+					Thread.sleep(20);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				} finally {
+					running.decrementAndGet();
+				}
+			}
+		};
+		converter.setMaxConcurrentConversions(2);
+
+		ExecutorService executor = Executors.newFixedThreadPool(8);
+		try {
+			for (int i = 0; i < 32; i++) {
+				executor.execute(new Runnable() {
+					@Override
+					public void run() {
+						try {
+							converter.convert(null, new ByteArrayOutputStream());
+						} catch (IOException e) {
+							throw new IllegalStateException(e);
+						}
+					}
+				});
+			}
+		} finally {
+			executor.shutdown();
+		}
+		assertTrue(executor.awaitTermination(30, TimeUnit.SECONDS));
+		assertEquals(2, maxRunning.get());
+	}
+
+	@Test
+	public void fontRegexIsSharedByConverters() {
+		PdfConverter first = new PdfConverter();
+		first.discoverFonts();
+		PdfConverter second = new PdfConverter();
+		assertEquals(first.getFontRegex(), second.getFontRegex());
+
+		second.setFontRegex(first.getFontRegex());
+		try {
+			second.setFontRegex("^Unknown Font.*");
+			fail("fonts are already discovered");
+		} catch (IllegalStateException e) {
+			assertEquals(first.getFontRegex(), second.getFontRegex());
+		}
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void maxConcurrentConversionsMustBePositive() {
+		new PdfConverter().setMaxConcurrentConversions(0);
+	}
+
+	private String convert(PdfConverter converter) throws IOException {
+		try (InputStream in = getClass().getResourceAsStream("PlainTextContentControls.docx")) {
+			Docx4JWordTemplate template = new Docx4JWordTemplate(in);
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			template.writeAsPDF(out, converter);
+			return new String(out.toByteArray(), 0, 4, "ISO-8859-1");
+		}
+	}
+}
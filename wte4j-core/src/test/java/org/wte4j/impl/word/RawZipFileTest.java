@@ -0,0 +1,101 @@
+/**
+ * Copyright (C) 2015 Born Informatik AG (www.born.ch)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wte4j.impl.word;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.Before;
+import org.junit.Test;
+import org.wte4j.impl.word.RawZipFile.EntryContent;
+
+public class RawZipFileTest {
+
+	private byte[] docx;
+
+	@Before
+	public void readDocx() throws IOException {
+		try (InputStream in = getClass().getResourceAsStream("PlainTextContentControls.docx")) {
+			docx = IOUtils.toByteArray(in);
+		}
+	}
+
+	@Test
+	public void readEntries() throws IOException {
+		RawZipFile zipFile = RawZipFile.read(docx);
+
+		assertEquals(unzip(docx).keySet().toString(), zipFile.getEntryNames().toString());
+	}
+
+	@Test
+	public void copyEntries() throws IOException {
+		RawZipFile zipFile = RawZipFile.read(docx);
+
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		zipFile.write(out, Collections.<String, EntryContent> emptyMap());
+
+		assertEntriesEqual(unzip(docx), unzip(out.toByteArray()));
+	}
+
+	@Test
+	public void replaceEntry() throws IOException {
+		RawZipFile zipFile = RawZipFile.read(docx);
+		byte[] replacement = "<replaced/>".getBytes("UTF-8");
+
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		zipFile.write(out, Collections.singletonMap("word/document.xml", RawZipFile.content(replacement)));
+
+		Map<String, byte[]> expected = unzip(docx);
+		expected.put("word/document.xml", replacement);
+		assertEntriesEqual(expected, unzip(out.toByteArray()));
+	}
+
+	@Test
+	public void readNoZip() {
+		assertNull(RawZipFile.read("no zip file".getBytes()));
+		assertNull(RawZipFile.read(new byte[0]));
+	}
+
+	private static void assertEntriesEqual(Map<String, byte[]> expected, Map<String, byte[]> actual) {
+		assertEquals(expected.keySet().toString(), actual.keySet().toString());
+		for (Map.Entry<String, byte[]> entry : expected.entrySet()) {
+			assertArrayEquals(entry.getKey(), entry.getValue(), actual.get(entry.getKey()));
+		}
+	}
+
+	static Map<String, byte[]> unzip(byte[] zip) throws IOException {
+		Map<String, byte[]> entries = new LinkedHashMap<String, byte[]>();
+		try (ZipInputStream in = new ZipInputStream(new ByteArrayInputStream(zip))) {
+			ZipEntry entry;
+			while ((entry = in.getNextEntry()) != null) {
+				entries.put(entry.getName(), IOUtils.toByteArray(in));
+			}
+		}
+		return entries;
+	}
+}
@@ -0,0 +1,124 @@
+/**
+ * Copyright (C) 2015 Born Informatik AG (www.born.ch)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wte4j.impl.word;
+
+import java.io.ByteArrayInputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.output.NullOutputStream;
+import org.wte4j.impl.TemplateContext;
+import org.wte4j.impl.word.SegmentTemplateTest.ValueContext;
+
+/**
+ * Compares the time and memory used to write documents from a compiled
+ * {@link SegmentTemplate} and by filling in a working copy. Run as java
+ * application with an optional path to a docx template and the number of
+ * documents to write.
+ */
+public class RenderBenchmark {
+
+	private static final int WARM_UP_DOCUMENTS = 200;
+
+	public static void main(String[] args) throws Exception {
+		byte[] docx = readTemplate(args.length > 0 ? args[0] : null);
+		int documents = args.length > 1 ? Integer.parseInt(args[1]) : 2000;
+
+		WordTemplateFile template = new WordTemplateFile(new ByteArrayInputStream(docx));
+		final SegmentTemplate segmentTemplate = SegmentTemplate.compile(template);
+		if (segmentTemplate == null) {
+			System.out.println("template can not be compiled");
+			return;
+		}
+		TemplateContext<Object> context = new ValueContext("benchmark value <&>");
+
+		Renderer streaming = new Renderer("segments") {
+			@Override
+			void render(WordTemplateFile template, TemplateContext<?> context, OutputStream out) throws IOException {
+				segmentTemplate.write(context, out);
+			}
+		};
+		Renderer docx4j = new Renderer("working copy") {
+			@Override
+			void render(WordTemplateFile template, TemplateContext<?> context, OutputStream out) throws IOException {
+				WordTemplateFile workingCopy = template.createWorkingCopy();
+				workingCopy.updateDynamicContent(context);
+				workingCopy.writeAsOpenXML(out);
+			}
+		};
+
+		for (Renderer renderer : new Renderer[] { streaming, docx4j }) {
+			renderer.run(template, context, WARM_UP_DOCUMENTS);
+		}
+		for (Renderer renderer : new Renderer[] { streaming, docx4j }) {
+			renderer.run(template, context, documents);
+			renderer.print(documents);
+		}
+	}
+
+	private static byte[] readTemplate(String path) throws IOException {
+		InputStream in = path != null
+				? new FileInputStream(path)
+				: RenderBenchmark.class.getResourceAsStream("PlainTextContentControls.docx");
+		try {
+			return IOUtils.toByteArray(in);
+		} finally {
+			in.close();
+		}
+	}
+
+	private abstract static class Renderer {
+		private final String name;
+		private long nanos;
+		private long allocatedBytes;
+
+		Renderer(String name) {
+			this.name = name;
+		}
+
+		abstract void render(WordTemplateFile template, TemplateContext<?> context, OutputStream out)
+				throws IOException;
+
+		void run(WordTemplateFile template, TemplateContext<?> context, int documents) throws IOException {
+			OutputStream out = new NullOutputStream();
+			long allocatedBefore = allocatedBytes();
+			long start = System.nanoTime();
+			for (int i = 0; i < documents; i++) {
+				render(template, context, out);
+			}
+			nanos = System.nanoTime() - start;
+			allocatedBytes = allocatedBytes() - allocatedBefore;
+		}
+
+		void print(int documents) {
+			System.out.printf("%-14s %10.1f documents/s %12d bytes allocated/document%n",
+					name, documents * 1e9 / nanos, allocatedBytes / documents);
+		}
+	}
+
+	private static long allocatedBytes() {
+		ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+		if (threadBean instanceof com.sun.management.ThreadMXBean) {
+			return ((com.sun.management.ThreadMXBean) threadBean).getThreadAllocatedBytes(Thread.currentThread().getId());
+		}
+		return 0;
+	}
+}
@@ -0,0 +1,152 @@
+/**
+ * Copyright (C) 2015 Born Informatik AG (www.born.ch)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wte4j.impl.word;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Map;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.Before;
+import org.junit.Test;
+import org.wte4j.ExpressionError;
+import org.wte4j.InvalidTemplateException;
+import org.wte4j.impl.InvalidExpressionException;
+import org.wte4j.impl.TemplateContext;
+
+public class SegmentTemplateTest {
+
+	private byte[] docx;
+
+	@Before
+	public void readDocx() throws IOException {
+		try (InputStream in = getClass().getResourceAsStream("PlainTextContentControls.docx")) {
+			docx = IOUtils.toByteArray(in);
+		}
+	}
+
+	@Test
+	public void writeEqualsWorkingCopy() throws IOException {
+		WordTemplateFile template = new WordTemplateFile(new ByteArrayInputStream(docx));
+		TemplateContext<Object> context = new ValueContext("a & b <c> \"d\" 'e' ä€");
+
+		SegmentTemplate segmentTemplate = SegmentTemplate.compile(template);
+		assertNotNull(segmentTemplate);
+		ByteArrayOutputStream streamed = new ByteArrayOutputStream();
+		segmentTemplate.write(context, streamed);
+
+		WordTemplateFile workingCopy = template.createWorkingCopy();
+		workingCopy.updateDynamicContent(context);
+		ByteArrayOutputStream filled = new ByteArrayOutputStream();
+		workingCopy.writeAsOpenXML(filled);
+
+		Map<String, byte[]> expected = RawZipFileTest.unzip(filled.toByteArray());
+		Map<String, byte[]> actual = RawZipFileTest.unzip(streamed.toByteArray());
+		assertEquals(expected.keySet(), actual.keySet());
+		for (Map.Entry<String, byte[]> entry : expected.entrySet()) {
+			if (entry.getKey().endsWith(".xml")) {
+				assertEquals(entry.getKey(), withoutParagraphIds(entry.getValue()),
+						withoutParagraphIds(actual.get(entry.getKey())));
+			} else {
+				assertArrayEquals(entry.getKey(), entry.getValue(), actual.get(entry.getKey()));
+			}
+		}
+		String document = new String(actual.get("word/document.xml"), "UTF-8");
+		assertTrue(document.contains("a &amp; b &lt;c&gt;"));
+	}
+
+	/**
+	 * docx4j generates new paragraph ids each time a part is marshalled
+	 */
+	private static String withoutParagraphIds(byte[] xml) throws IOException {
+		return new String(xml, "UTF-8").replaceAll(" w14:(paraId|textId)=\"[0-9a-fA-F]*\"", "");
+	}
+
+	@Test
+	public void writtenDocumentCanBeRead() throws IOException {
+		WordTemplateFile template = new WordTemplateFile(new ByteArrayInputStream(docx));
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		template.writeDocument(new ValueContext("value"), out);
+
+		WordTemplateFile document = new WordTemplateFile(new ByteArrayInputStream(out.toByteArray()));
+		assertEquals(template.getPlainTextContent().size(), document.getPlainTextContent().size());
+		String documentXml = new String(RawZipFileTest.unzip(out.toByteArray()).get("word/document.xml"), "UTF-8");
+		assertTrue(documentXml.contains(">value<"));
+	}
+
+	@Test
+	public void invalidExpression() throws IOException {
+		WordTemplateFile template = new WordTemplateFile(new ByteArrayInputStream(docx));
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		try {
+			template.writeDocument(new ValueContext(null), out);
+			fail("InvalidTemplateException expected");
+		} catch (InvalidTemplateException e) {
+			assertFalse(e.getErrors().isEmpty());
+			assertEquals(0, out.size());
+		}
+	}
+
+	@Test
+	public void compileTemplateWithoutSource() {
+		assertEquals(null, SegmentTemplate.compile(new WordTemplateFile()));
+	}
+
+	@Test
+	public void escape() {
+		String value = "no special characters";
+		assertTrue(value == SegmentTemplate.escape(value));
+		assertEquals("&lt;a&gt; &amp; \"b\"", SegmentTemplate.escape("<a> & \"b\""));
+	}
+
+	/**
+	 * Resolves every expression to the same value or fails if the value is
+	 * <code>null</code>
+	 */
+	static class ValueContext implements TemplateContext<Object> {
+		private final String value;
+
+		ValueContext(String value) {
+			this.value = value;
+		}
+
+		@Override
+		public void bind(Object data) {
+		}
+
+		@Override
+		public String resolveValue(String expression) throws InvalidExpressionException {
+			if (value == null) {
+				throw new InvalidExpressionException(ExpressionError.ILLEGAL_CONTENT_KEY);
+			}
+			return value;
+		}
+
+		@Override
+		public ExpressionError validate(String expression) {
+			return null;
+		}
+	}
+}
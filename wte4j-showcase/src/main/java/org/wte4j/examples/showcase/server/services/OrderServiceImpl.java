@@ -27,8 +27,9 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.jdbc.core.RowMapper;
 import org.springframework.stereotype.Service;
-import org.wte4j.Template;
+import org.wte4j.PagedTemplateQuery;
 import org.wte4j.TemplateEngine;
+import org.wte4j.TemplateMetadata;
 import org.wte4j.TemplateQuery;
 import org.wte4j.examples.showcase.shared.OrderDataDto;
 import org.wte4j.examples.showcase.shared.service.OrderService;
@@ -62,10 +63,16 @@ public class OrderServiceImpl implements OrderService {
 
 	@Override
 	public List<String> listOrderTemplates() {
-		TemplateQuery queryTemplates = templateEngine.getTemplateRepository().queryTemplates();
-		List<Template<Object>> templates = queryTemplates.inputType(OrderDataDto.class).language("en").list();
+		TemplateQuery queryTemplates = templateEngine.getTemplateRepository().queryTemplates()
+				.inputType(OrderDataDto.class).language("en");
+		List<? extends TemplateMetadata> templates;
+		if (queryTemplates instanceof PagedTemplateQuery) {
+			templates = ((PagedTemplateQuery) queryTemplates).listMetadata();
+		} else {
+			templates = queryTemplates.list();
+		}
 		List<String> templateNames = new ArrayList<String>();
-		for (Template<Object> template : templates) {
+		for (TemplateMetadata template : templates) {
 			templateNames.add(template.getDocumentName());
 		}
 		return templateNames;